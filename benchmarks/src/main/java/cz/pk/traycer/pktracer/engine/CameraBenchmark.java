@@ -0,0 +1,59 @@
+package cz.pk.traycer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regeneration of cached primary ray directions after camera move, on all cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CameraBenchmark {
+    @Param({"320x180", "1280x720", "1920x1080"})
+    private String resolution;
+
+    private Camera camera;
+    private ForkJoinPool pool;
+    private Vector3D[] positions;
+    private int positionIndex;
+
+    @Setup
+    public void setup() {
+        String[] size = resolution.split("x");
+        camera = new Camera(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+        pool = new ForkJoinPool();
+        positions = new Vector3D[]{new Vector3D(-4.0, -3.5, 45.0), new Vector3D(-4.5, -3.5, 44.5)};
+        camera.updateRayDirections(pool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Camera updateRayDirections() {
+        positionIndex ^= 1;
+        camera.setPosition(positions[positionIndex]);
+        camera.updateRayDirections(pool);
+        return camera;
+    }
+}
@@ -0,0 +1,149 @@
+package cz.pk.traycer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.stats.RenderStats;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single path traced by {@link Renderer#perPixel} and whole frames at several resolutions and scene sizes.
+ * Frame benchmark counts rays traced by the frame in {@link Rays} counters taken from {@link Renderer#getStats()}:
+ * all rays (primary, bounce and shadow) and primary rays alone, their ops/us scores are Mrays/s. Throughput
+ * of all rays doesn't depend on average path length, which changes with depth, roulette and light sampling.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RendererBenchmark {
+
+    @State(Scope.Thread)
+    public static class PixelState {
+        private Renderer renderer;
+        private TraceContext context;
+        private int pixel;
+
+        @Setup
+        public void setup() {
+            renderer = createRenderer(320, 180, 0, Enums.Integrator.DEPTH_FIRST);
+            renderer.getCamera().updateRayDirections(renderer.getRenderPool());
+            context = new TraceContext(7L);
+        }
+
+        @TearDown
+        public void tearDown() {
+            renderer.getRenderPool().shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FrameState {
+        @Param({"320x180", "1280x720", "1920x1080"})
+        private String resolution;
+
+        /**
+         * Random spheres added to default scene of 5 spheres.
+         */
+        @Param({"0", "100", "1000"})
+        private int extraSpheres;
+
+        @Param({"DEPTH_FIRST", "WAVEFRONT"})
+        private Enums.Integrator integrator;
+
+        private Renderer renderer;
+
+        @Setup
+        public void setup() {
+            String[] size = resolution.split("x");
+            renderer = createRenderer(Integer.parseInt(size[0]), Integer.parseInt(size[1]), extraSpheres, integrator);
+        }
+
+        @TearDown
+        public void tearDown() {
+            renderer.getRenderPool().shutdown();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rays {
+        public long rays;
+        public long primaryRays;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rays = 0;
+            primaryRays = 0;
+        }
+    }
+
+    private static long tracedRays(final Renderer renderer) {
+        RenderStats stats = renderer.getStats();
+        return stats.getPrimaryRays() + stats.getSecondaryRays() + stats.getShadowRays();
+    }
+
+    private static Renderer createRenderer(final int width, final int height, final int extraSpheres,
+                                           final Enums.Integrator integrator) {
+        Renderer renderer = new Renderer(width, height);
+        renderer.setSeed(7L);
+        renderer.setNoiseThreshold(0.0);
+        renderer.setIntegratorType(integrator);
+        renderer.initialize();
+        renderer.onResize(width, height);
+
+        List<cz.pk.traycer.pktracer.engine.shapes.Hittable> models = renderer.getActiveScene().getModels();
+        Random random = new Random(11L);
+        for (int i = 0; i < extraSpheres; i++) {
+            Sphere sphere = new Sphere();
+            sphere.setPosition(new Vector3D(
+                    random.nextDouble(-15.0, 15.0), random.nextDouble(-1.0, 8.0), random.nextDouble(-30.0, 10.0)));
+            sphere.setRadius(random.nextDouble(0.2, 1.0));
+            sphere.setObjectIndex(models.size());
+            sphere.setMaterialIndex(random.nextInt(3));
+            models.add(sphere);
+        }
+        renderer.buildAccelerator();
+
+        return renderer;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Vector3D perPixel(final PixelState state) {
+        Renderer renderer = state.renderer;
+        int width = renderer.getViewportWidth();
+        state.pixel = (state.pixel + 1) % (width * renderer.getViewportHeight());
+        state.context.getSampler().startPixel(state.pixel, 1);
+        return renderer.perPixel(state.pixel % width, state.pixel / width, state.context);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean frame(final FrameState state, final Rays rays) {
+        Renderer renderer = state.renderer;
+        long tracedBefore = tracedRays(renderer);
+        long primaryBefore = renderer.getStats().getPrimaryRays();
+        boolean completed = renderer.render();
+        rays.rays += tracedRays(renderer) - tracedBefore;
+        rays.primaryRays += renderer.getStats().getPrimaryRays() - primaryBefore;
+        return completed;
+    }
+}
@@ -0,0 +1,104 @@
+package cz.pk.traycer.pktracer.engine.math;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vector and matrix operations, allocating variants against destination (Into) variants.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathBenchmark {
+    private Vector3D u;
+    private Vector3D v;
+    private Vector3D dst;
+    private Matrix4X4D m;
+    private Matrix4X4D n;
+    private Vector4D w;
+    private Vector4D dst4;
+
+    @Setup
+    public void setup() {
+        u = new Vector3D(0.3, -1.2, 2.5);
+        v = new Vector3D(-0.7, 0.4, 1.1);
+        dst = new Vector3D();
+        m = Matrix4X4D.perspectiveFov(Math.toRadians(45.0), 16.0 / 9.0, 0.1, 100.0);
+        n = Matrix4X4D.lookAt(new Vector3D(-4.0, -3.5, 45.0), new Vector3D(), new Vector3D(0.0, 1.0, 0.0));
+        w = new Vector4D(u, 1.0);
+        dst4 = new Vector4D();
+    }
+
+    @Benchmark
+    public Vector3D vectorAdd() {
+        return u.add(v);
+    }
+
+    @Benchmark
+    public Vector3D vectorAddInto() {
+        return Vector3D.addInto(u, v, dst);
+    }
+
+    @Benchmark
+    public Vector3D vectorMulAdd() {
+        return Vector3D.mulAdd(u, v, 0.5, dst);
+    }
+
+    @Benchmark
+    public Vector3D vectorCross() {
+        return Vector3D.cross(u, v);
+    }
+
+    @Benchmark
+    public Vector3D vectorCrossInto() {
+        return Vector3D.crossInto(u, v, dst);
+    }
+
+    @Benchmark
+    public Vector3D vectorNormalize() {
+        return Vector3D.normalize(u);
+    }
+
+    @Benchmark
+    public Vector3D vectorNormalizeInto() {
+        return Vector3D.normalizeInto(u, dst);
+    }
+
+    @Benchmark
+    public double vectorDot() {
+        return Vector3D.dot(u, v);
+    }
+
+    @Benchmark
+    public Matrix4X4D matrixMul() {
+        return m.mul(n);
+    }
+
+    @Benchmark
+    public Matrix4X4D matrixInverse() {
+        return Matrix4X4D.inverse(m);
+    }
+
+    @Benchmark
+    public Vector4D matrixMulVector() {
+        return m.mul(w);
+    }
+
+    @Benchmark
+    public Vector4D matrixMulVectorInto() {
+        return m.mulInto(w, dst4);
+    }
+}
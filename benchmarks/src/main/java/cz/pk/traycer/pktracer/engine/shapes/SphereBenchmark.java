@@ -0,0 +1,103 @@
+package cz.pk.traycer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.IntersectionManager;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ray against single sphere and against {@link SphereBatch} of given size, scalar loop and Vector API.
+ * One operation is one ray, rays are cycled from fixed random set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class SphereBenchmark {
+    private static final int RAY_COUNT = 1024;
+
+    private Ray[] rays;
+    private Sphere sphere;
+    private HitRecord hitRecord;
+    private int rayIndex;
+
+    @State(Scope.Thread)
+    public static class Batch {
+        @Param({"5", "64", "1024"})
+        private int sphereCount;
+
+        @Param({"false", "true"})
+        private boolean vectorized;
+
+        private SphereBatch batch;
+
+        @Setup
+        public void setup() {
+            batch = new SphereBatch(randomSpheres(sphereCount, new Random(11L)));
+            batch.setVectorized(vectorized);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7L);
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            rays[i] = new Ray(
+                    new Vector3D(random.nextDouble(-10.0, 10.0), random.nextDouble(-10.0, 10.0), 50.0),
+                    Vector3D.normalize(new Vector3D(random.nextDouble(-0.2, 0.2), random.nextDouble(-0.2, 0.2), -1.0)));
+        }
+        sphere = randomSpheres(1, random).get(0);
+        hitRecord = new HitRecord();
+    }
+
+    private static List<Sphere> randomSpheres(final int count, final Random random) {
+        List<Sphere> spheres = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Sphere sphere = new Sphere();
+            sphere.setPosition(new Vector3D(
+                    random.nextDouble(-20.0, 20.0), random.nextDouble(-20.0, 20.0), random.nextDouble(-20.0, 20.0)));
+            sphere.setRadius(random.nextDouble(0.2, 2.0));
+            sphere.setObjectIndex(i);
+            sphere.setMaterialIndex(0);
+            spheres.add(sphere);
+        }
+        return spheres;
+    }
+
+    private Ray nextRay() {
+        rayIndex = (rayIndex + 1) & (RAY_COUNT - 1);
+        return rays[rayIndex];
+    }
+
+    @Benchmark
+    public boolean raySphereIntersection() {
+        hitRecord.restart();
+        return IntersectionManager.raySphereIntersection(
+                nextRay(), sphere, HitRecord.MIN_DISTANCE_VALUE, Double.MAX_VALUE, hitRecord);
+    }
+
+    @Benchmark
+    public boolean sphereBatch(final Batch batch) {
+        hitRecord.restart();
+        return batch.batch.hit(nextRay(), HitRecord.MIN_DISTANCE_VALUE, Double.MAX_VALUE, hitRecord);
+    }
+}
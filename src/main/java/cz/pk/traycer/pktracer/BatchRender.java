@@ -0,0 +1,239 @@
+package cz.pk.traycer.pktracer;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Enums;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.distributed.RenderJob;
+import cz.pk.traycer.pktracer.engine.distributed.TileCoordinator;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.io.ImageWriter;
+import cz.pk.traycer.pktracer.engine.io.SceneCache;
+import cz.pk.traycer.pktracer.engine.io.SceneLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line entry point rendering image to file without display. Never touches JavaFX classes,
+ * so the toolkit is not started. <br>
+ * Usage: {@code BatchRender --output image.png [--scene scene.json|scene.pksc] [--width 1280] [--height 720] [--spp 64] [--threads N]
+ * [--seed S] [--integrator DEPTH_FIRST|WAVEFRONT] [--noise-threshold 0.0] [--max-depth 5] [--roulette-depth 3]
+ * [--nee true|false] [--denoise false|true] [--port P] [--checkpoint render.acc] [--checkpoint-every 16] [--merge a.acc,b.acc]}
+ *
+ * <p>
+ * Scene file is described by {@link SceneLoader}, scene bundled with application is rendered when it is missing.
+ * {@code BatchRender --scene scene.json --compile scene.pksc} doesn't render anything, it compiles the scene
+ * to {@link SceneCache} file, which is loaded without parsing and hierarchy build.
+ * Output format is given by file extension: png, ppm or pfm. Noise threshold is zero by default,
+ * so every pixel receives exactly spp samples. Russian roulette starts after roulette depth path segments,
+ * roulette depth not lower than max depth disables it. Next-event estimation is enabled by default.
+ * Denoise option filters the final image, checkpoint keeps raw samples.
+ *
+ * <p>
+ * With port option the frame is not rendered locally, it is distributed by {@link TileCoordinator}
+ * to {@link RenderWorker} processes connecting to the port. Workers have to load the same scene file.
+ *
+ * <p>
+ * With checkpoint option snapshot of samples is written to the file every given number of frames and after the last one.
+ * Existing checkpoint file is resumed up to spp, its seed is used when seed option is missing. Merge option
+ * doesn't render anything, it sums renders of checkpoint files with different seeds to the output image.
+ */
+public class BatchRender {
+    private int width = 1280;
+    private int height = 720;
+    private int samplesPerPixel = 64;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private Long seed;
+    private Enums.Integrator integrator = Enums.Integrator.DEPTH_FIRST;
+    private double noiseThreshold = 0.0;
+    private int maxDepth = Renderer.DEFAULT_MAX_DEPTH;
+    private int rouletteMinDepth = Renderer.DEFAULT_ROULETTE_MIN_DEPTH;
+    private boolean nextEventEstimation = true;
+    private boolean denoise;
+    private Path scene;
+    private Path compiledScene;
+    private Path output;
+    private int port = -1;
+    private Path checkpoint;
+    private int checkpointEvery = 16;
+    private List<Path> merged = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        BatchRender batchRender = new BatchRender();
+        batchRender.parse(args);
+        if (batchRender.compiledScene != null) {
+            batchRender.runCompile();
+        } else if (!batchRender.merged.isEmpty()) {
+            batchRender.runMerge();
+        } else if (batchRender.port >= 0) {
+            batchRender.runCoordinator();
+        } else {
+            batchRender.run();
+        }
+    }
+
+    private void parse(final String[] args) {
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Every option needs a value. Arguments count value=%d", args.length));
+        }
+
+        for (int i = 0; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--width" -> width = Integer.parseInt(value);
+                case "--height" -> height = Integer.parseInt(value);
+                case "--spp" -> samplesPerPixel = Integer.parseInt(value);
+                case "--threads" -> threadCount = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--integrator" -> integrator = Enums.Integrator.valueOf(value);
+                case "--noise-threshold" -> noiseThreshold = Double.parseDouble(value);
+                case "--max-depth" -> maxDepth = Integer.parseInt(value);
+                case "--roulette-depth" -> rouletteMinDepth = Integer.parseInt(value);
+                case "--nee" -> nextEventEstimation = Boolean.parseBoolean(value);
+                case "--denoise" -> denoise = Boolean.parseBoolean(value);
+                case "--scene" -> scene = Path.of(value);
+                case "--compile" -> compiledScene = Path.of(value);
+                case "--output" -> output = Path.of(value);
+                case "--port" -> port = Integer.parseInt(value);
+                case "--checkpoint" -> checkpoint = Path.of(value);
+                case "--checkpoint-every" -> checkpointEvery = Integer.parseInt(value);
+                case "--merge" -> Arrays.stream(value.split(",")).map(Path::of).forEach(merged::add);
+                default -> throw new IllegalArgumentException(
+                        String.format("Unknown option. Option value=%s", args[i]));
+            }
+        }
+
+        if (compiledScene != null) {
+            if (scene == null) {
+                throw new IllegalArgumentException("Compiled scene has to be set by --scene option.");
+            }
+            return;
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("Output file has to be set by --output option.");
+        }
+        if (width <= 0 || height <= 0 || samplesPerPixel <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Resolution and samples per pixel must be positive. Width value=%d, height value=%d, spp value=%d",
+                    width, height, samplesPerPixel));
+        }
+        // Fail before rendering, not after it
+        ImageWriter.formatOf(output);
+    }
+
+    private void run() throws IOException {
+        if (seed == null && checkpoint != null && Files.exists(checkpoint)) {
+            try (AccumulationBuffer checkpointData = AccumulationBuffer.open(checkpoint)) {
+                seed = checkpointData.getSeed();
+            }
+        }
+
+        Renderer renderer = new Renderer(width, height, threadCount);
+        renderer.setSeed(seed != null ? seed : System.currentTimeMillis());
+        renderer.setIntegratorType(integrator);
+        renderer.setNoiseThreshold(noiseThreshold);
+        renderer.setMaxDepth(maxDepth);
+        renderer.setRouletteMinDepth(rouletteMinDepth);
+        renderer.setNextEventEstimation(nextEventEstimation);
+        if (scene != null) {
+            long loadStart = System.nanoTime();
+            renderer.loadScene(scene);
+            System.out.printf("Loaded %d objects of %s in %d ms%n", renderer.getActiveScene().getModels().size(),
+                    scene, (System.nanoTime() - loadStart) / 1_000_000);
+        } else {
+            renderer.initialize();
+        }
+        renderer.onResize(width, height);
+        if (checkpoint != null) {
+            renderer.attachAccumulationFile(checkpoint);
+            System.out.printf("Checkpoint %s at frame %d%n", checkpoint, renderer.getFrameIndex());
+        }
+
+        long start = System.nanoTime();
+        boolean first = true;
+        while (renderer.getFrameIndex() <= samplesPerPixel) {
+            renderer.render();
+            if (first) {
+                System.out.printf("First sample after %d ms from JVM start%n", millisSinceStart());
+                first = false;
+            }
+            if (checkpoint != null && renderer.getFrameIndex() % checkpointEvery == 0) {
+                // Rendering stops here when previous checkpoint failed, rather than at the end
+                renderer.checkpoint().exceptionally(e -> {
+                    System.err.printf("Checkpoint to %s failed: %s%n", checkpoint, e.getCause());
+                    return null;
+                });
+            }
+        }
+        long renderMillis = (System.nanoTime() - start) / 1_000_000;
+        ImageWriter.write(denoise ? renderer.denoise() : renderer.getAccumulationData(), output);
+        if (checkpoint != null) {
+            renderer.checkpoint().join();
+        }
+        renderer.getRenderPool().shutdown();
+        renderer.releaseRetired();
+        renderer.getAccumulationData().close();
+        System.out.printf("Rendered %dx%d, %d spp, %d threads in %d ms to %s%n",
+                width, height, samplesPerPixel, threadCount, renderMillis, output);
+        System.out.printf("Stats: %s%n", renderer.getStats());
+    }
+
+    private void runCoordinator() throws IOException, InterruptedException {
+        long sceneHash;
+        if (scene != null && SceneCache.isCache(scene)) {
+            sceneHash = SceneCache.readSceneHash(scene);
+        } else {
+            try (Scene jobScene = scene != null ? SceneLoader.load(scene, null) : SceneLoader.loadDefault(null)) {
+                sceneHash = jobScene.contentHash();
+            }
+        }
+        RenderJob job = new RenderJob(width, height, samplesPerPixel,
+                seed != null ? seed : System.currentTimeMillis(), Renderer.DEFAULT_TILE_SIZE, maxDepth, rouletteMinDepth,
+                nextEventEstimation, sceneHash);
+        try (TileCoordinator coordinator = new TileCoordinator(job, port, System.out::println)) {
+            System.out.printf("Waiting for workers on port %d%n", coordinator.getPort());
+
+            long start = System.nanoTime();
+            AccumulationBuffer accumulationData = coordinator.await();
+            long renderMillis = (System.nanoTime() - start) / 1_000_000;
+
+            ImageWriter.write(accumulationData, output);
+            System.out.printf("Rendered %dx%d, %d spp by workers in %d ms (%d tiles reassigned) to %s%n",
+                    width, height, samplesPerPixel, renderMillis, coordinator.getReassignedTiles().get(), output);
+        }
+    }
+
+    private void runCompile() throws IOException {
+        long start = System.nanoTime();
+        long bytes = SceneCache.compile(scene, compiledScene);
+        System.out.printf("Compiled %s to %s (%d bytes) in %d ms%n",
+                scene, compiledScene, bytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void runMerge() throws IOException {
+        try (AccumulationBuffer first = AccumulationBuffer.open(merged.get(0));
+             AccumulationBuffer sum = first.copy()) {
+            for (Path file : merged.subList(1, merged.size())) {
+                try (AccumulationBuffer other = AccumulationBuffer.open(file)) {
+                    sum.merge(other);
+                }
+            }
+
+            ImageWriter.write(sum, output);
+            System.out.printf("Merged %d renders to %s%n", merged.size(), output);
+        }
+    }
+
+    private static long millisSinceStart() {
+        return ProcessHandle.current().info().startInstant()
+                .map(startInstant -> Duration.between(startInstant, Instant.now()).toMillis())
+                .orElse(-1L);
+    }
+}
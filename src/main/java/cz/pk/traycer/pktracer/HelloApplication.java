@@ -1,5 +1,6 @@
 package cz.pk.traycer.pktracer;
 
+import cz.pk.traycer.pktracer.engine.RenderLoop;
 import cz.pk.traycer.pktracer.engine.Renderer;
 import cz.pk.traycer.pktracer.gui.GuiService;
 import javafx.application.Application;
@@ -14,13 +15,10 @@ import javafx.stage.Stage;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class HelloApplication extends Application {
 
-    private Timer timer;
-    private final long period = 500;
+    private RenderLoop renderLoop;
 
     private Scene sceneFX;
     private Renderer renderer;
@@ -45,19 +43,20 @@ public class HelloApplication extends Application {
         sceneFX = new Scene(border, 1200, 800);
         sceneFX.getStylesheets().add("stylesheet.css");
 
-        renderer.initializeKeyboardAndMouse(sceneFX);
-
-        timer = new Timer();
-        TimerTask task = new TimerTask() {
-            public void run() {
-                guiService.getViewportIV().setImage(renderer.render());
-                System.out.println("FrameIndex= " + renderer.getFrameIndex());
-            }
-        };
-        timer.scheduleAtFixedRate(task, 0, period);
+        renderLoop = new RenderLoop(renderer);
+        guiService.registerCameraControls(sceneFX, renderLoop);
+        guiService.registerMouseControls(sceneFX);
 
         stage.setTitle("PK Tracer");
         stage.setScene(sceneFX);
         stage.show();
+
+        renderLoop.start();
+        guiService.startPresenting(renderLoop);
+    }
+
+    @Override
+    public void stop() {
+        renderLoop.close();
     }
 }
\ No newline at end of file
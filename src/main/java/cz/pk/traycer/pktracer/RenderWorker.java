@@ -0,0 +1,42 @@
+package cz.pk.traycer.pktracer;
+
+import cz.pk.traycer.pktracer.engine.distributed.TileWorker;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Command line entry point of distributed render worker, see {@link BatchRender} port option. <br>
+ * Usage: {@code RenderWorker --coordinator host:port [--threads N] [--scene scene.json]} <br>
+ * Scene has to be the same scene as scene of coordinator, default scene is used when missing.
+ */
+public class RenderWorker {
+
+    public static void main(String[] args) throws IOException {
+        String coordinator = null;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        Path scene = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--coordinator" -> coordinator = args[i + 1];
+                case "--threads" -> threadCount = Integer.parseInt(args[i + 1]);
+                case "--scene" -> scene = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException(
+                        String.format("Unknown option. Option value=%s", args[i]));
+            }
+        }
+        if (coordinator == null || coordinator.lastIndexOf(':') < 0) {
+            throw new IllegalArgumentException("Coordinator has to be set by --coordinator host:port option.");
+        }
+
+        int separator = coordinator.lastIndexOf(':');
+        TileWorker worker = new TileWorker(
+                coordinator.substring(0, separator),
+                Integer.parseInt(coordinator.substring(separator + 1)),
+                threadCount,
+                scene);
+        int renderedTiles = worker.run();
+        System.out.printf("Rendered %d tiles for %s%n", renderedTiles, coordinator);
+    }
+}
@@ -0,0 +1,466 @@
+package cz.pk.traycer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static cz.pk.traycer.pktracer.engine.Constants.MAX_RGB;
+
+/**
+ * Structure-of-arrays framebuffer with accumulated radiance of all rendered frames. <br>
+ * Every color channel is stored in its own off-heap plane indexed by {@code x + y * width},
+ * so accumulating a sample doesn't allocate anything.
+ *
+ * <p>
+ * Every pixel keeps its own number of samples and sum of squared sample luminance, so pixels may be
+ * sampled unevenly and the noise of their mean is estimated by {@link #relativeError(int, double)}.
+ *
+ * <p>
+ * Planes follow a small header (resolution, frame index, seed and scene hash) in one buffer. Buffer created
+ * by {@link #create(Path, int, int, long, long)} or {@link #open(Path)} belongs to a file, which is written
+ * only by {@link #checkpoint()} as a snapshot of the whole buffer taken between frames. File therefore always
+ * holds samples of complete frames with matching frame index, render of the file can be resumed after crash
+ * or merged with other render of the same scene.
+ */
+@Getter
+public class AccumulationBuffer implements AutoCloseable {
+    private static final long MAGIC = 0x314343414B50L; // "PKACC1" in little endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int VERSION_OFFSET = 8;
+    private static final int WIDTH_OFFSET = 12;
+    private static final int HEIGHT_OFFSET = 16;
+    private static final int FRAME_INDEX_OFFSET = 24;
+    private static final int SEED_OFFSET = 32;
+    private static final int SCENE_HASH_OFFSET = 40;
+    /**
+     * Bytes per pixel: red, green, blue and luminance squared doubles and sample count integer.
+     */
+    private static final int PIXEL_BYTES = 4 * Double.BYTES + Integer.BYTES;
+
+    private final int width;
+    private final int height;
+    private final DoubleBuffer red;
+    private final DoubleBuffer green;
+    private final DoubleBuffer blue;
+    private final DoubleBuffer luminanceSquared;
+    private final IntBuffer sampleCounts;
+    /**
+     * File written by checkpoints, null for buffer only in memory.
+     */
+    private final Path file;
+    @Getter(AccessLevel.NONE)
+    private final ByteBuffer storage;
+    @Getter(AccessLevel.NONE)
+    private final GeometryArena arena;
+    /**
+     * Two copies of storage written to file in background, new checkpoint is copied to the one not being written.
+     */
+    @Getter(AccessLevel.NONE)
+    private final ByteBuffer[] snapshots = new ByteBuffer[2];
+    /**
+     * Snapshot being written, or -1.
+     */
+    @Getter(AccessLevel.NONE)
+    private int writtenSnapshot = -1;
+    /**
+     * Snapshot waiting for write of the previous one, or -1. Newer checkpoint replaces its samples.
+     */
+    @Getter(AccessLevel.NONE)
+    private int queuedSnapshot = -1;
+    @Getter(AccessLevel.NONE)
+    private CompletableFuture<Void> pendingCheckpoint = CompletableFuture.completedFuture(null);
+    /**
+     * Failure of background write not thrown yet, see {@link #checkpoint()}.
+     */
+    @Getter(AccessLevel.NONE)
+    private UncheckedIOException failure;
+
+    public AccumulationBuffer(final int width, final int height) {
+        this(new GeometryArena(), width, height, null, null);
+    }
+
+    private AccumulationBuffer(final GeometryArena arena, final int width, final int height, ByteBuffer storage,
+                               final Path file) {
+        if (width <= 0 || height <= 0 || (long) width * height * PIXEL_BYTES + HEADER_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "Accumulation buffer resolution out of bounds. Width value=%d, height value=%d", width, height));
+        }
+
+        int pixels = width * height;
+        this.arena = arena;
+        this.width = width;
+        this.height = height;
+        this.file = file;
+        this.storage = (storage != null ? storage : arena.allocate(byteSize(width, height)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.red = plane(0, pixels).asDoubleBuffer();
+        this.green = plane(1, pixels).asDoubleBuffer();
+        this.blue = plane(2, pixels).asDoubleBuffer();
+        this.luminanceSquared = plane(3, pixels).asDoubleBuffer();
+        this.sampleCounts = plane(4, pixels).asIntBuffer();
+    }
+
+    private ByteBuffer plane(final int plane, final int pixels) {
+        return storage.slice(HEADER_BYTES + plane * pixels * Double.BYTES,
+                        plane < 4 ? pixels * Double.BYTES : pixels * Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long byteSize(final int width, final int height) {
+        return HEADER_BYTES + (long) width * height * PIXEL_BYTES;
+    }
+
+    /**
+     * Create empty accumulation file, existing file is overwritten.
+     *
+     * @param file      Accumulation file.
+     * @param seed      Seed of the render.
+     * @param sceneHash Hash of rendered scene, see {@link Scene#contentHash()}.
+     * @return Buffer of the file, frame index 1.
+     */
+    public static AccumulationBuffer create(final Path file, final int width, final int height,
+                                            final long seed, final long sceneHash) throws IOException {
+        AccumulationBuffer buffer = new AccumulationBuffer(new GeometryArena(), width, height, null, file);
+
+        buffer.storage.putLong(0, MAGIC);
+        buffer.storage.putInt(VERSION_OFFSET, VERSION);
+        buffer.storage.putInt(WIDTH_OFFSET, width);
+        buffer.storage.putInt(HEIGHT_OFFSET, height);
+        buffer.setFrameIndex(1);
+        buffer.storage.putLong(SEED_OFFSET, seed);
+        buffer.storage.putLong(SCENE_HASH_OFFSET, sceneHash);
+        try {
+            buffer.checkpoint().join();
+        } catch (CompletionException e) {
+            buffer.arena.close();
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+        return buffer;
+    }
+
+    /**
+     * Read existing accumulation file, changes of the buffer are written to the file by checkpoints.
+     *
+     * @param file Accumulation file created by {@link #create(Path, int, int, long, long)}.
+     * @return Buffer of the file.
+     */
+    public static AccumulationBuffer open(final Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+
+        int width = header.getInt(WIDTH_OFFSET);
+        int height = header.getInt(HEIGHT_OFFSET);
+        if (header.getLong(0) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IllegalArgumentException(String.format("Not an accumulation file. File value=%s", file));
+        }
+        if (width <= 0 || height <= 0 || Files.size(file) != byteSize(width, height)) {
+            throw new IllegalArgumentException(String.format(
+                    "Accumulation file is truncated. File value=%s, width value=%d, height value=%d",
+                    file, width, height));
+        }
+
+        GeometryArena arena = new GeometryArena();
+        ByteBuffer storage = arena.allocate(byteSize(width, height));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (storage.hasRemaining()) {
+                if (channel.read(storage, storage.position()) < 0) {
+                    throw new IllegalArgumentException(String.format(
+                            "Accumulation file is truncated. File value=%s", file));
+                }
+            }
+        }
+        return new AccumulationBuffer(arena, width, height, storage.clear(), file);
+    }
+
+    /**
+     * @return Buffer in memory with the same header and samples.
+     */
+    public AccumulationBuffer copy() {
+        AccumulationBuffer copy = new AccumulationBuffer(width, height);
+        copy.storage.put(0, storage, 0, storage.capacity());
+        return copy;
+    }
+
+    /**
+     * Index of next frame to render, updated by renderer after every completed frame.
+     */
+    public long getFrameIndex() {
+        return storage.getLong(FRAME_INDEX_OFFSET);
+    }
+
+    public void setFrameIndex(final long frameIndex) {
+        storage.putLong(FRAME_INDEX_OFFSET, frameIndex);
+    }
+
+    public long getSeed() {
+        return storage.getLong(SEED_OFFSET);
+    }
+
+    public long getSceneHash() {
+        return storage.getLong(SCENE_HASH_OFFSET);
+    }
+
+    public int size() {
+        return width * height;
+    }
+
+    public void clear() {
+        int offset = HEADER_BYTES;
+        for (; offset + Long.BYTES <= storage.capacity(); offset += Long.BYTES) {
+            storage.putLong(offset, 0L);
+        }
+        for (; offset < storage.capacity(); offset++) {
+            storage.put(offset, (byte) 0);
+        }
+    }
+
+    public void accumulate(final int index, final double r, final double g, final double b) {
+        double luminance = luminance(r, g, b);
+
+        red.put(index, red.get(index) + r);
+        green.put(index, green.get(index) + g);
+        blue.put(index, blue.get(index) + b);
+        luminanceSquared.put(index, luminanceSquared.get(index) + luminance * luminance);
+        sampleCounts.put(index, sampleCounts.get(index) + 1);
+    }
+
+    public void accumulate(final int index, final Vector3D color) {
+        accumulate(index, color.getX(), color.getY(), color.getZ());
+    }
+
+    /**
+     * Add samples accumulated elsewhere (other buffer, other process) to pixel.
+     *
+     * @param index            Pixel index.
+     * @param luminanceSquared Sum of squared luminance of added samples.
+     * @param samples          Number of added samples.
+     */
+    public void merge(final int index, final double r, final double g, final double b,
+                      final double luminanceSquared, final int samples) {
+        red.put(index, red.get(index) + r);
+        green.put(index, green.get(index) + g);
+        blue.put(index, blue.get(index) + b);
+        this.luminanceSquared.put(index, this.luminanceSquared.get(index) + luminanceSquared);
+        sampleCounts.put(index, sampleCounts.get(index) + samples);
+    }
+
+    /**
+     * Add all samples of other render of the same scene. Renders have to use different seeds,
+     * otherwise they contain the same samples. Frame index and seed of this buffer are kept.
+     *
+     * @param other Buffer of the same resolution and scene hash.
+     */
+    public void merge(final AccumulationBuffer other) {
+        if (width != other.width || height != other.height || getSceneHash() != other.getSceneHash()) {
+            throw new IllegalArgumentException(String.format(
+                    "Merged render has different resolution or scene. Resolution value=%dx%d, scene hash value=%d",
+                    other.width, other.height, other.getSceneHash()));
+        }
+        if (getSeed() == other.getSeed()) {
+            throw new IllegalArgumentException(String.format(
+                    "Merged renders have the same samples. Seed value=%d", other.getSeed()));
+        }
+
+        for (int index = 0; index < size(); index++) {
+            merge(index, other.red.get(index), other.green.get(index), other.blue.get(index),
+                    other.luminanceSquared.get(index), other.sampleCounts.get(index));
+        }
+    }
+
+    /**
+     * Clear pixels of given region only.
+     *
+     * @param region Region of the buffer.
+     */
+    public void clear(final Tile region) {
+        for (int y = region.getY(); y < region.getY() + region.getHeight(); y++) {
+            int from = region.getX() + y * width;
+            int to = from + region.getWidth();
+            for (int index = from; index < to; index++) {
+                red.put(index, 0.0);
+                green.put(index, 0.0);
+                blue.put(index, 0.0);
+                luminanceSquared.put(index, 0.0);
+                sampleCounts.put(index, 0);
+            }
+        }
+    }
+
+    /**
+     * Resolve mean of accumulated samples of pixel to displayable color.
+     *
+     * @param index Pixel index.
+     * @return Opaque color packed as 0xAARRGGBB, channels clamped to &lt;0, 1&gt;. Black without any sample.
+     */
+    public int resolve(final int index) {
+        int count = sampleCounts.get(index);
+        double scale = count == 0 ? 0.0 : 1.0 / count;
+
+        return toArgb(red.get(index) * scale, green.get(index) * scale, blue.get(index) * scale);
+    }
+
+    /**
+     * Estimate relative error of mean luminance of pixel, which is standard error of the mean
+     * divided by the mean. Mean is bounded from below by {@code minLuminance}, so dark pixels
+     * are compared to absolute error instead of being dominated by noise of almost zero.
+     *
+     * @param index        Pixel index.
+     * @param minLuminance Lower bound of mean luminance used as denominator, positive.
+     * @return Relative error, infinity for pixel with less than 2 samples.
+     */
+    public double relativeError(final int index, final double minLuminance) {
+        int count = sampleCounts.get(index);
+        if (count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double mean = luminance(red.get(index), green.get(index), blue.get(index)) / count;
+        double variance = Math.max(luminanceSquared.get(index) / count - mean * mean, 0.0) * count / (count - 1);
+
+        return Math.sqrt(variance / count) / Math.max(mean, minLuminance);
+    }
+
+    /**
+     * Copy samples and header to snapshot and write it to the file in background. Has to be called between
+     * frames, when samples match frame index, see {@link Renderer#checkpoint()}. Only the copy is made
+     * synchronously, it never waits for write of previous checkpoint: snapshot is copied to the other of two
+     * buffers and written after it. Checkpoint requested while such write still waits replaces its samples
+     * and shares its future. Snapshot is written next to the file and moved over it when complete, so crash
+     * during write keeps the previous checkpoint.
+     *
+     * @return Future completed when snapshot is in the file, completed future for buffer without file.
+     * @throws UncheckedIOException Write of previous checkpoint failed, so failure is noticed even when
+     *                              nobody waits for its future. Failure is thrown once.
+     */
+    public synchronized CompletableFuture<Void> checkpoint() {
+        if (file == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        throwFailure();
+
+        if (queuedSnapshot >= 0) {
+            snapshots[queuedSnapshot].put(0, storage, 0, storage.capacity());
+            return pendingCheckpoint;
+        }
+
+        int snapshot = writtenSnapshot == 0 ? 1 : 0;
+        if (snapshots[snapshot] == null) {
+            snapshots[snapshot] = arena.allocate(storage.capacity());
+        }
+        snapshots[snapshot].put(0, storage, 0, storage.capacity());
+        queuedSnapshot = snapshot;
+        pendingCheckpoint = pendingCheckpoint.handle((ignored, e) -> null).thenRunAsync(this::writeSnapshot);
+        return pendingCheckpoint;
+    }
+
+    private void writeSnapshot() {
+        ByteBuffer snapshot;
+        synchronized (this) {
+            writtenSnapshot = queuedSnapshot;
+            queuedSnapshot = -1;
+            snapshot = snapshots[writtenSnapshot];
+        }
+
+        try {
+            writeFile(snapshot);
+        } catch (UncheckedIOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                writtenSnapshot = -1;
+            }
+        }
+    }
+
+    private void writeFile(final ByteBuffer snapshot) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer data = snapshot.duplicate().clear();
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void throwFailure() {
+        if (failure != null) {
+            UncheckedIOException thrown = failure;
+            failure = null;
+            throw thrown;
+        }
+    }
+
+    /**
+     * Wait for pending checkpoint and release memory of the buffer. Samples accumulated after the last
+     * checkpoint are not written to the file.
+     *
+     * @throws UncheckedIOException Write of a checkpoint failed and it wasn't thrown by {@link #checkpoint()}.
+     */
+    @Override
+    public void close() {
+        CompletableFuture<Void> pending;
+        synchronized (this) {
+            pending = pendingCheckpoint;
+        }
+        pending.handle((ignored, e) -> null).join();
+        arena.close();
+        throwFailure();
+    }
+
+    /**
+     * Relative luminance of linear color, Rec. 709 weights.
+     */
+    public static double luminance(final double r, final double g, final double b) {
+        return 0.2126 * r + 0.7152 * g + 0.0722 * b;
+    }
+
+    /**
+     * Pack color to 0xAARRGGBB integer with full alpha.
+     *
+     * @param r Red channel, clamped to &lt;0, 1&gt;.
+     * @param g Green channel, clamped to &lt;0, 1&gt;.
+     * @param b Blue channel, clamped to &lt;0, 1&gt;.
+     * @return Packed color.
+     */
+    public static int toArgb(final double r, final double g, final double b) {
+        return 0xFF000000
+                | toByte(r) << 16
+                | toByte(g) << 8
+                | toByte(b);
+    }
+
+    private static int toByte(final double value) {
+        return (int) (Math.min(Math.max(value, 0.0), 1.0) * MAX_RGB);
+    }
+}
@@ -3,15 +3,11 @@ package cz.pk.traycer.pktracer.engine;
 import cz.pk.traycer.pktracer.engine.math.Matrix4X4D;
 import cz.pk.traycer.pktracer.engine.math.Vector2D;
 import cz.pk.traycer.pktracer.engine.math.Vector3D;
-import cz.pk.traycer.pktracer.engine.math.Vector4D;
-import cz.pk.traycer.pktracer.gui.GuiService;
-import javafx.event.EventHandler;
-import javafx.scene.input.KeyCode;
-import javafx.scene.input.MouseEvent;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
-import static cz.pk.traycer.pktracer.gui.GuiService.TOP_PANEL_HEIGHT;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 @Data
 @AllArgsConstructor
@@ -22,12 +18,18 @@ public class Camera {
     private Matrix4X4D inverseView;
 
     private boolean moved;
-    private boolean upIsPressed;
-    private boolean downIsPressed;
-    private boolean leftIsPressed;
-    private boolean rightIsPressed;
 
-    private Vector3D[] rayDirections;
+    /**
+     * Cached ray directions, x, y, z per pixel. Used in {@link Enums.RayGeneration#CACHED} mode.
+     */
+    private float[] rayDirections;
+    private Enums.RayGeneration rayGeneration;
+    private boolean viewDirty;
+    private boolean projectionDirty;
+    private boolean rayDirectionsDirty;
+    /**
+     * Mouse position in viewport coordinates, set by GUI.
+     */
     private Vector2D lastMousePosition;
     private Vector2D currentMousePosition;
     private Vector3D position;
@@ -39,8 +41,6 @@ public class Camera {
     private double nearClip;
     private double farClip;
 
-    private javafx.scene.Scene sceneFX;
-
     public Camera(int viewportWidth, int viewportHeight) {
         position = new Vector3D(0.0, 0.0, 2.0);
         forwardDirection = new Vector3D(0.0, 0.0, -1.0);
@@ -52,16 +52,16 @@ public class Camera {
         this.viewportHeight = viewportHeight;
 
         moved = false;
-        upIsPressed = false;
-        downIsPressed = false;
-        leftIsPressed = false;
-        rightIsPressed = false;
         lastMousePosition = new Vector2D(
                 this.viewportWidth / 2.0,
                 this.viewportHeight / 2.0);
         currentMousePosition = lastMousePosition;
 
-        rayDirections = new Vector3D[viewportHeight * viewportWidth];
+        rayDirections = new float[0];
+        rayGeneration = Enums.RayGeneration.CACHED;
+        viewDirty = true;
+        projectionDirty = true;
+        rayDirectionsDirty = true;
 
         projection = new Matrix4X4D();
         projection.setIdentity();
@@ -73,29 +73,37 @@ public class Camera {
         inverseView.setIdentity();
     }
 
+    /**
+     * Recalculate matrices changed since last update. Ray directions are only marked dirty,
+     * they are regenerated by {@link #updateRayDirections(ForkJoinPool)} before next frame.
+     *
+     * @return True when view or projection changed.
+     */
     boolean onUpdate(float ts) {
 
         Vector2D delta = currentMousePosition.sub(lastMousePosition);
         lastMousePosition = currentMousePosition;
 
+        boolean changed = viewDirty || projectionDirty;
+        if (projectionDirty) {
+            recalculateProjection();
+        }
+        if (viewDirty) {
+            recalculateView();
+        }
 
-
-        recalculateView();
-        recalculateRayDirections();
-
-        return true;
+        return changed;
     }
 
     void onResize(final int width, final int height) {
-//        if (viewportWidth == width && viewportHeight == height) {
-//            return;
-//        }
+        if (viewportWidth == width && viewportHeight == height && !projectionDirty) {
+            return;
+        }
 
         viewportWidth = width;
         viewportHeight = height;
 
         recalculateProjection();
-        recalculateRayDirections();
     }
 
     public void recalculateProjection() {
@@ -104,6 +112,8 @@ public class Camera {
                 (double)viewportWidth / (double)viewportHeight,
                 nearClip, farClip);
         inverseProjection = Matrix4X4D.inverse(projection);
+        projectionDirty = false;
+        rayDirectionsDirty = true;
     }
 
     public void recalculateView() {
@@ -112,91 +122,129 @@ public class Camera {
                 position.add(forwardDirection),
                 new Vector3D(0.0, 1.0, 0.0));
         inverseView = Matrix4X4D.inverse(view);
+        viewDirty = false;
+        rayDirectionsDirty = true;
     }
 
-    public void recalculateRayDirections() {
-        rayDirections = new Vector3D[viewportWidth * viewportHeight];
-
-        for (int y = 0; y < viewportHeight; y++) {
-            for (int x = 0; x < viewportWidth; x++) {
-                Vector2D coord = new Vector2D(
-                        (double) x / (double)viewportWidth,
-                        (double) y / (double)viewportHeight);
-                coord = coord.mul(2.0);
-                coord = coord.sub(1.0);
-
-                Vector4D target = inverseProjection.mul(coord.getX(), coord.getY(), 1.0, 1.0);
-                Vector3D rayDirection = new Vector3D(inverseView.mul(
-                        new Vector4D(
-                                Vector3D.normalize(
-                                        new Vector3D(target).div(target.getW())),
-                                0.0)));
-                rayDirections[x + y * viewportWidth] = rayDirection;
-            }
+    /**
+     * Regenerate cached ray directions when view or projection changed since last regeneration.
+     * Rows of viewport are computed in parallel by given pool. Does nothing in
+     * {@link Enums.RayGeneration#ON_THE_FLY} mode.
+     *
+     * @param pool Pool computing rows of ray directions.
+     */
+    public void updateRayDirections(final ForkJoinPool pool) {
+        if (viewDirty || projectionDirty) {
+            onUpdate(0.0f);
+        }
+        if (!rayDirectionsDirty || Enums.RayGeneration.ON_THE_FLY.equals(rayGeneration)) {
+            return;
         }
-    }
 
-    public void registerKeysPressedEvent(javafx.scene.Scene scene) {
-        scene.setOnKeyPressed(e -> {
-            if (e.getCode() == KeyCode.W) {
-                upIsPressed = true;
-                System.out.println("The 'W' key was pressed");
-            }
+        int pixelCount = viewportWidth * viewportHeight;
+        if (rayDirections.length != pixelCount * 3) {
+            rayDirections = new float[pixelCount * 3];
+        }
 
-            if (e.getCode() == KeyCode.S) {
-                downIsPressed = true;
-                System.out.println("The 'S' key was pressed");
+        pool.submit(() -> IntStream.range(0, viewportHeight).parallel().forEach(y -> {
+            Vector3D direction = new Vector3D();
+            for (int x = 0; x < viewportWidth; x++) {
+                int offset = (x + y * viewportWidth) * 3;
+                computeRayDirection(x, y, direction);
+                rayDirections[offset] = (float) direction.getX();
+                rayDirections[offset + 1] = (float) direction.getY();
+                rayDirections[offset + 2] = (float) direction.getZ();
             }
+        })).join();
 
-            if (e.getCode() == KeyCode.A) {
-                leftIsPressed = true;
-                System.out.println("The 'A' key was pressed");
-            }
+        rayDirectionsDirty = false;
+    }
 
-            if (e.getCode() == KeyCode.D) {
-                rightIsPressed = true;
-                System.out.println("The 'D' key was pressed");
-            }
+    /**
+     * Direction of primary ray through pixel. Read from cache or computed from inverse matrices
+     * according to ray generation mode.
+     *
+     * @param pixelIndex Index of pixel (x + y * width).
+     * @param direction  Result vector.
+     * @return direction.
+     */
+    public Vector3D getRayDirection(final int pixelIndex, Vector3D direction) {
+        if (Enums.RayGeneration.ON_THE_FLY.equals(rayGeneration)) {
+            return computeRayDirection(pixelIndex % viewportWidth, pixelIndex / viewportWidth, direction);
+        }
 
-            if (e.getCode() == KeyCode.UP) {
-                upIsPressed = true;
-                System.out.println("The 'Up' key was pressed");
-            }
+        int offset = pixelIndex * 3;
+        return direction.set(rayDirections[offset], rayDirections[offset + 1], rayDirections[offset + 2]);
+    }
 
-            if (e.getCode() == KeyCode.DOWN) {
-                downIsPressed = true;
-                System.out.println("The 'Down' key was pressed");
-            }
+    /**
+     * Unproject pixel by inverse projection and rotate it to world space by inverse view.
+     * Reads matrix elements directly, so it can run in render workers without allocation.
+     */
+    private Vector3D computeRayDirection(final int x, final int y, Vector3D direction) {
+        double coordX = (double) x / (double) viewportWidth * 2.0 - 1.0;
+        double coordY = (double) y / (double) viewportHeight * 2.0 - 1.0;
+
+        double targetX = inverseProjection.getElement(0, 0) * coordX + inverseProjection.getElement(0, 1) * coordY
+                + inverseProjection.getElement(0, 2) + inverseProjection.getElement(0, 3);
+        double targetY = inverseProjection.getElement(1, 0) * coordX + inverseProjection.getElement(1, 1) * coordY
+                + inverseProjection.getElement(1, 2) + inverseProjection.getElement(1, 3);
+        double targetZ = inverseProjection.getElement(2, 0) * coordX + inverseProjection.getElement(2, 1) * coordY
+                + inverseProjection.getElement(2, 2) + inverseProjection.getElement(2, 3);
+        double targetW = inverseProjection.getElement(3, 0) * coordX + inverseProjection.getElement(3, 1) * coordY
+                + inverseProjection.getElement(3, 2) + inverseProjection.getElement(3, 3);
+
+        direction.set(targetX / targetW, targetY / targetW, targetZ / targetW);
+        Vector3D.normalizeInto(direction, direction);
+
+        double dx = direction.getX();
+        double dy = direction.getY();
+        double dz = direction.getZ();
+        return direction.set(
+                inverseView.getElement(0, 0) * dx + inverseView.getElement(0, 1) * dy + inverseView.getElement(0, 2) * dz,
+                inverseView.getElement(1, 0) * dx + inverseView.getElement(1, 1) * dy + inverseView.getElement(1, 2) * dz,
+                inverseView.getElement(2, 0) * dx + inverseView.getElement(2, 1) * dy + inverseView.getElement(2, 2) * dz);
+    }
 
-            if (e.getCode() == KeyCode.LEFT) {
-                leftIsPressed = true;
-                System.out.println("The 'Left' key was pressed");
-            }
+    /**
+     * Move camera along its forward direction and to the right of it.
+     *
+     * @param forwardDistance Distance to move forward, negative moves backward.
+     * @param rightDistance   Distance to move right, negative moves left.
+     */
+    public void move(final double forwardDistance, final double rightDistance) {
+        Vector3D forward = Vector3D.normalize(forwardDirection);
+        Vector3D right = Vector3D.normalize(Vector3D.cross(forward, new Vector3D(0.0, 1.0, 0.0)));
+        setPosition(position.add(forward.mul(forwardDistance)).add(right.mul(rightDistance)));
+    }
 
-            if (e.getCode() == KeyCode.RIGHT) {
-                rightIsPressed = true;
-                System.out.println("The 'Right' key was pressed");
-            }
-        });
+    public void setPosition(final Vector3D position) {
+        this.position = position;
+        viewDirty = true;
     }
 
-    public void registerMouseKeysPressedEvent(javafx.scene.Scene scene) {
-        scene.addEventFilter(MouseEvent.MOUSE_PRESSED, new EventHandler<>() {
+    public void setForwardDirection(final Vector3D forwardDirection) {
+        this.forwardDirection = forwardDirection;
+        viewDirty = true;
+    }
 
-            @Override
-            public void handle(MouseEvent mouseEvent) {
+    public void setVerticalFOV(final double verticalFOV) {
+        this.verticalFOV = verticalFOV;
+        projectionDirty = true;
+    }
 
-                currentMousePosition.setX(mouseEvent.getX() - GuiService.VIEWPORT_PADDING.getLeft());
-                currentMousePosition.setY(mouseEvent.getY() - TOP_PANEL_HEIGHT - GuiService.VIEWPORT_PADDING.getTop());
+    public void setNearClip(final double nearClip) {
+        this.nearClip = nearClip;
+        projectionDirty = true;
+    }
 
-                String msg =
-                        "(x: " + mouseEvent.getX() + ", y: " + mouseEvent.getY() + ") -- " +
-                        "(sceneX: " + mouseEvent.getSceneX() + ", sceneY: " + mouseEvent.getSceneY() + ") -- " +
-                        "(screenX: " + mouseEvent.getScreenX() + ", screenY: " + mouseEvent.getScreenY() + ") -- " +
-                        "(currentMousePositionX: " + currentMousePosition.getX() + ", currentMousePositionY: " + currentMousePosition.getY() + ")";
+    public void setFarClip(final double farClip) {
+        this.farClip = farClip;
+        projectionDirty = true;
+    }
 
-                System.out.println(msg);
-            }
-        });
+    public void setRayGeneration(final Enums.RayGeneration rayGeneration) {
+        this.rayGeneration = rayGeneration;
+        rayDirectionsDirty = true;
     }
 }
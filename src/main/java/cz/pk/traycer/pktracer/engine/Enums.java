@@ -4,6 +4,28 @@ public class Enums {
     public enum Shape {
         EMPTY,
         SPHERE,
-        TRIANGLE
+        TRIANGLE,
+        INSTANCE
+    }
+
+    public enum Accelerator {
+        BRUTE_FORCE,
+        BVH
+    }
+
+    public enum Integrator {
+        DEPTH_FIRST,
+        WAVEFRONT
+    }
+
+    public enum RayGeneration {
+        CACHED,
+        ON_THE_FLY
+    }
+
+    public enum ImageFormat {
+        PNG,
+        PPM,
+        PFM
     }
 }
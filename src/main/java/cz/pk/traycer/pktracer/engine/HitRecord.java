@@ -10,11 +10,27 @@ public class HitRecord {
 
     public static final int EMPTY_OBJECT_INDEX = -1;
     public static final int EMPTY_MATERIAL_INDEX = -1;
+    public static final int EMPTY_PRIMITIVE_INDEX = -1;
+    public static final double MIN_DISTANCE_VALUE = Constants.EPSILON;
     public static final double MAX_DISTANCE_VALUE = Double.MAX_VALUE;
 
     private int objectIndex;
     private int materialIndex;
     private double distance;
+    /**
+     * Index of primitive inside hit model (triangle of mesh), empty for simple shapes.
+     */
+    private int primitiveIndex;
+    /**
+     * Barycentric coordinates of hit point inside triangle.
+     */
+    private double barycentricU;
+    private double barycentricV;
+    /**
+     * Ray-primitive intersection tests made by accelerators with this record. Kept by {@link #restart()},
+     * collected to render statistics by owning {@link TraceContext}.
+     */
+    private long intersectionTests;
     Vector3D worldPosition;
     Vector3D worldNormal;
 
@@ -22,11 +38,22 @@ public class HitRecord {
         objectIndex = EMPTY_OBJECT_INDEX;
         materialIndex = EMPTY_MATERIAL_INDEX;
         distance = MAX_DISTANCE_VALUE;
+        primitiveIndex = EMPTY_PRIMITIVE_INDEX;
         worldPosition = new Vector3D();
         worldNormal = new Vector3D();
     }
 
+    /**
+     * Reset hit record to empty state in place, so one record can be reused for many rays.
+     */
     public void restart() {
-        new HitRecord();
+        objectIndex = EMPTY_OBJECT_INDEX;
+        materialIndex = EMPTY_MATERIAL_INDEX;
+        distance = MAX_DISTANCE_VALUE;
+        primitiveIndex = EMPTY_PRIMITIVE_INDEX;
+        barycentricU = 0.0;
+        barycentricV = 0.0;
+        worldPosition.set(0.0, 0.0, 0.0);
+        worldNormal.set(0.0, 0.0, 0.0);
     }
 }
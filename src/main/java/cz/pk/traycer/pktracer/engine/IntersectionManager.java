@@ -2,6 +2,9 @@ package cz.pk.traycer.pktracer.engine;
 
 import cz.pk.traycer.pktracer.engine.math.Vector3D;
 import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.shapes.TriangleMesh;
+
+import static cz.pk.traycer.pktracer.engine.Constants.EPSILON;
 
 public class IntersectionManager {
 
@@ -18,32 +21,158 @@ public class IntersectionManager {
      *
      * @param ray
      * @param sphere
+     * @param rayTMin
+     * @param rayTMax
      * @param hitRecord
+     * @return True when hit record was updated.
      */
-    static void raySphereIntersection(final Ray ray, final Sphere sphere, HitRecord hitRecord) {
-        Vector3D rayOrigin = ray.getOrigin().add(sphere.getPosition());
-        Vector3D rayDirection = ray.getDirection();
+    public static boolean raySphereIntersection(final Ray ray, final Sphere sphere,
+                                                final double rayTMin, final double rayTMax, HitRecord hitRecord) {
+        // Ray origin relative to the sphere, computed in scalars to keep intersection allocation free
+        Vector3D origin = ray.getOrigin();
+        Vector3D position = sphere.getPosition();
+        Vector3D direction = ray.getDirection();
+
+        double t = raySphereDistance(
+                origin.getX() + position.getX(),
+                origin.getY() + position.getY(),
+                origin.getZ() + position.getZ(),
+                direction.getX(), direction.getY(), direction.getZ(),
+                sphere.getRadius() * sphere.getRadius(),
+                rayTMin, Math.min(rayTMax, hitRecord.getDistance()));
+
+        if (t == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+
+        hitRecord.setDistance(t);
+        hitRecord.setObjectIndex(sphere.getObjectIndex());
+        hitRecord.setMaterialIndex(sphere.getMaterialIndex());
+        hitRecord.setPrimitiveIndex(HitRecord.EMPTY_PRIMITIVE_INDEX);
+        return true;
+    }
 
-        double a = Vector3D.dot(rayDirection, rayDirection);
-        double b = 2.0 * Vector3D.dot(rayOrigin, rayDirection);
-        double c = Vector3D.dot(rayOrigin, rayOrigin)
-                -sphere.getRadius() * sphere.getRadius();
+    /**
+     * Distance of ray - sphere hit inside open interval (rayTMin, rayTMax). Near root is preferred,
+     * far root is used when near one is out of interval (ray starts inside sphere).
+     *
+     * @param ox            Ray origin relative to sphere center, x.
+     * @param oy            Ray origin relative to sphere center, y.
+     * @param oz            Ray origin relative to sphere center, z.
+     * @param dx            Ray direction x.
+     * @param dy            Ray direction y.
+     * @param dz            Ray direction z.
+     * @param radiusSquared Squared sphere radius.
+     * @param rayTMin       Minimal hit distance.
+     * @param rayTMax       Maximal hit distance.
+     * @return Hit distance or positive infinity on miss.
+     */
+    public static double raySphereDistance(final double ox, final double oy, final double oz,
+                                           final double dx, final double dy, final double dz,
+                                           final double radiusSquared,
+                                           final double rayTMin, final double rayTMax) {
+        double a = dx * dx + dy * dy + dz * dz;
+        double b = 2.0 * (ox * dx + oy * dy + oz * dz);
+        double c = ox * ox + oy * oy + oz * oz - radiusSquared;
 
         // Quadratic formula discriminant: b^2 - 4ac
         double discriminant = b * b - 4.0 * a * c;
-
         if (discriminant < 0.0) {
-            return;
+            return Double.POSITIVE_INFINITY;
         }
 
         // -b +- sqrt(discriminant) / 2a
-        double t0 = (-b + Math.sqrt(discriminant)) / 2.0f * a;
-        double closestT = (-b - Math.sqrt(discriminant)) / 2.0f * a;
+        double root = Math.sqrt(discriminant);
+        double t = (-b - root) / (2.0 * a);
+        if (t <= rayTMin || t >= rayTMax) {
+            t = (-b + root) / (2.0 * a);
+            if (t <= rayTMin || t >= rayTMax) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return t;
+    }
+
+    /**
+     * Möller–Trumbore ray - triangle intersection. Based on: <br>
+     * <a href="https://en.wikipedia.org/wiki/M%C3%B6ller%E2%80%93Trumbore_intersection_algorithm">
+     * https://en.wikipedia.org/wiki/M%C3%B6ller%E2%80%93Trumbore_intersection_algorithm</a>
+     *
+     * <p>
+     * Reads vertices directly from mesh arrays. On closer hit stores distance, mesh indices,
+     * triangle index and barycentric coordinates u, v of the hit point to hit record.
+     *
+     * @param ray
+     * @param mesh
+     * @param triangle
+     * @param hitRecord
+     */
+    public static void rayTriangleIntersection(final Ray ray, final TriangleMesh mesh,
+                                               final int triangle, HitRecord hitRecord) {
+        rayTriangleIntersection(ray, mesh, triangle, HitRecord.MIN_DISTANCE_VALUE, hitRecord);
+    }
+
+    /**
+     * Möller–Trumbore ray - triangle intersection accepting only hits farther than rayTMin.
+     *
+     * @see #rayTriangleIntersection(Ray, TriangleMesh, int, HitRecord)
+     */
+    public static void rayTriangleIntersection(final Ray ray, final TriangleMesh mesh, final int triangle,
+                                               final double rayTMin, HitRecord hitRecord) {
+        double v0x = mesh.getVertex(triangle, 0, 0);
+        double v0y = mesh.getVertex(triangle, 0, 1);
+        double v0z = mesh.getVertex(triangle, 0, 2);
+        double edge1x = mesh.getVertex(triangle, 1, 0) - v0x;
+        double edge1y = mesh.getVertex(triangle, 1, 1) - v0y;
+        double edge1z = mesh.getVertex(triangle, 1, 2) - v0z;
+        double edge2x = mesh.getVertex(triangle, 2, 0) - v0x;
+        double edge2y = mesh.getVertex(triangle, 2, 1) - v0y;
+        double edge2z = mesh.getVertex(triangle, 2, 2) - v0z;
+
+        Vector3D direction = ray.getDirection();
+        double dx = direction.getX();
+        double dy = direction.getY();
+        double dz = direction.getZ();
+
+        // p = d x edge2
+        double px = dy * edge2z - dz * edge2y;
+        double py = dz * edge2x - dx * edge2z;
+        double pz = dx * edge2y - dy * edge2x;
+
+        double determinant = edge1x * px + edge1y * py + edge1z * pz;
+        if (Math.abs(determinant) < EPSILON * EPSILON) {
+            return;
+        }
+        double inverseDeterminant = 1.0 / determinant;
+
+        Vector3D origin = ray.getOrigin();
+        double sx = origin.getX() - v0x;
+        double sy = origin.getY() - v0y;
+        double sz = origin.getZ() - v0z;
+
+        double u = (sx * px + sy * py + sz * pz) * inverseDeterminant;
+        if (u < 0.0 || u > 1.0) {
+            return;
+        }
+
+        // q = s x edge1
+        double qx = sy * edge1z - sz * edge1y;
+        double qy = sz * edge1x - sx * edge1z;
+        double qz = sx * edge1y - sy * edge1x;
+
+        double v = (dx * qx + dy * qy + dz * qz) * inverseDeterminant;
+        if (v < 0.0 || u + v > 1.0) {
+            return;
+        }
 
-        if(closestT > 0.0 && closestT < hitRecord.getDistance()) {
-            hitRecord.setDistance(closestT);
-            hitRecord.setObjectIndex(sphere.getObjectIndex());
-            hitRecord.setMaterialIndex(sphere.getMaterialIndex());
+        double t = (edge2x * qx + edge2y * qy + edge2z * qz) * inverseDeterminant;
+        if (t > rayTMin && t < hitRecord.getDistance()) {
+            hitRecord.setDistance(t);
+            hitRecord.setObjectIndex(mesh.getObjectIndex());
+            hitRecord.setMaterialIndex(mesh.getMaterialIndex());
+            hitRecord.setPrimitiveIndex(triangle);
+            hitRecord.setBarycentricU(u);
+            hitRecord.setBarycentricV(v);
         }
     }
 }
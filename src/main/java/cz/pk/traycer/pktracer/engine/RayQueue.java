@@ -0,0 +1,100 @@
+package cz.pk.traycer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Rays of active paths of {@link WavefrontIntegrator} stored as structure of arrays. <br>
+ * Slot holds pixel index of the path, ray and result of its closest-hit query. Every stage
+ * reads and writes only slots of its own range, so ranges can be processed in parallel.
+ */
+@Getter
+class RayQueue {
+    private final int capacity;
+    @Setter
+    private int size;
+
+    private final int[] pixelIndices;
+    private final double[] originX;
+    private final double[] originY;
+    private final double[] originZ;
+    private final double[] directionX;
+    private final double[] directionY;
+    private final double[] directionZ;
+
+    private final int[] objectIndices;
+    private final int[] materialIndices;
+    private final int[] primitiveIndices;
+    private final double[] distances;
+    private final double[] barycentricU;
+    private final double[] barycentricV;
+    /**
+     * Path continues with ray extended by shade stage.
+     */
+    private final boolean[] alive;
+
+    RayQueue(final int capacity) {
+        this.capacity = capacity;
+        pixelIndices = new int[capacity];
+        originX = new double[capacity];
+        originY = new double[capacity];
+        originZ = new double[capacity];
+        directionX = new double[capacity];
+        directionY = new double[capacity];
+        directionZ = new double[capacity];
+        objectIndices = new int[capacity];
+        materialIndices = new int[capacity];
+        primitiveIndices = new int[capacity];
+        distances = new double[capacity];
+        barycentricU = new double[capacity];
+        barycentricV = new double[capacity];
+        alive = new boolean[capacity];
+    }
+
+    void storeRay(final int slot, final Vector3D origin, final Vector3D direction) {
+        originX[slot] = origin.getX();
+        originY[slot] = origin.getY();
+        originZ[slot] = origin.getZ();
+        directionX[slot] = direction.getX();
+        directionY[slot] = direction.getY();
+        directionZ[slot] = direction.getZ();
+    }
+
+    void loadRay(final int slot, Ray ray) {
+        ray.getOrigin().set(originX[slot], originY[slot], originZ[slot]);
+        ray.getDirection().set(directionX[slot], directionY[slot], directionZ[slot]);
+    }
+
+    void storeHit(final int slot, final HitRecord hitRecord) {
+        objectIndices[slot] = hitRecord.getObjectIndex();
+        materialIndices[slot] = hitRecord.getMaterialIndex();
+        primitiveIndices[slot] = hitRecord.getPrimitiveIndex();
+        distances[slot] = hitRecord.getDistance();
+        barycentricU[slot] = hitRecord.getBarycentricU();
+        barycentricV[slot] = hitRecord.getBarycentricV();
+    }
+
+    void loadHit(final int slot, HitRecord hitRecord) {
+        hitRecord.restart();
+        hitRecord.setObjectIndex(objectIndices[slot]);
+        hitRecord.setMaterialIndex(materialIndices[slot]);
+        hitRecord.setPrimitiveIndex(primitiveIndices[slot]);
+        hitRecord.setDistance(distances[slot]);
+        hitRecord.setBarycentricU(barycentricU[slot]);
+        hitRecord.setBarycentricV(barycentricV[slot]);
+    }
+
+    /**
+     * Copy pixel index and ray of slot to slot of another queue.
+     */
+    void moveRay(final int slot, RayQueue target, final int targetSlot) {
+        target.pixelIndices[targetSlot] = pixelIndices[slot];
+        target.originX[targetSlot] = originX[slot];
+        target.originY[targetSlot] = originY[slot];
+        target.originZ[targetSlot] = originZ[slot];
+        target.directionX[targetSlot] = directionX[slot];
+        target.directionY[targetSlot] = directionY[slot];
+        target.directionZ[targetSlot] = directionZ[slot];
+    }
+}
@@ -0,0 +1,107 @@
+package cz.pk.traycer.pktracer.engine;
+
+import lombok.Getter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Renders frames continuously on its own thread. <br>
+ * Completed frames are published through renderer {@link TripleBuffer}, so GUI picks them up
+ * whenever it is ready without blocking the loop. Changes of renderer state (camera, scene) are
+ * passed by {@link #update(Consumer)}: frame in flight is cancelled immediately, the change is
+ * applied on the render thread between frames and accumulation starts again. Failure of a frame or an update
+ * stops the loop, it is kept in {@link #getFailure()}.
+ */
+public class RenderLoop implements AutoCloseable {
+    private final Renderer renderer;
+    private final ExecutorService executor;
+    private final Queue<Consumer<Renderer>> updates = new ConcurrentLinkedQueue<>();
+    @Getter
+    private volatile boolean running;
+    @Getter
+    private volatile long completedFrames;
+    /**
+     * Exception which stopped the loop, null while it runs or when it was closed.
+     */
+    @Getter
+    private volatile RuntimeException failure;
+
+    public RenderLoop(final Renderer renderer) {
+        this.renderer = renderer;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "render-loop");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        running = true;
+        executor.execute(this::loop);
+    }
+
+    /**
+     * Change renderer state from any thread. Frame in flight is cancelled and discarded.
+     *
+     * @param update Change applied on render thread before next frame.
+     */
+    public void update(final Consumer<Renderer> update) {
+        updates.add(update);
+        renderer.cancel();
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                if (applyUpdates()) {
+                    renderer.resetAccumulation();
+                }
+                if (renderer.render()) {
+                    completedFrames++;
+                }
+            }
+        } catch (RuntimeException e) {
+            running = false;
+            failure = e;
+        }
+    }
+
+    /**
+     * @return True when any update was applied.
+     */
+    private boolean applyUpdates() {
+        // Cancel requested after this point belongs to the next frame
+        renderer.setCancelled(false);
+
+        boolean applied = false;
+        Consumer<Renderer> update;
+        while ((update = updates.poll()) != null) {
+            update.accept(renderer);
+            applied = true;
+        }
+        return applied;
+    }
+
+    /**
+     * Stop the loop and wait until frame in flight is cancelled. Resources retired by renderer are closed
+     * once the loop ends.
+     */
+    @Override
+    public void close() {
+        running = false;
+        renderer.cancel();
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                renderer.releaseRetired();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,60 +1,383 @@
 package cz.pk.traycer.pktracer.engine;
 
-import cz.pk.traycer.pktracer.engine.math.MathUtility;
+import cz.pk.traycer.pktracer.engine.accel.Accelerator;
+import cz.pk.traycer.pktracer.engine.accel.BVHAccelerator;
+import cz.pk.traycer.pktracer.engine.accel.BruteForceAccelerator;
+import cz.pk.traycer.pktracer.engine.denoise.ATrousDenoiser;
+import cz.pk.traycer.pktracer.engine.denoise.FeatureBuffer;
+import cz.pk.traycer.pktracer.engine.io.SceneLoader;
 import cz.pk.traycer.pktracer.engine.math.Vector3D;
-import cz.pk.traycer.pktracer.engine.math.Vector4D;
-import cz.pk.traycer.pktracer.engine.shapes.Hittable;
-import cz.pk.traycer.pktracer.engine.shapes.Sphere;
-import javafx.event.EventHandler;
-import javafx.scene.image.PixelWriter;
-import javafx.scene.image.WritableImage;
-import javafx.scene.input.KeyCode;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.paint.Color;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.sampling.LightSampler;
+import cz.pk.traycer.pktracer.engine.sampling.Sampler;
+import cz.pk.traycer.pktracer.engine.stats.FrameEvent;
+import cz.pk.traycer.pktracer.engine.stats.RenderStats;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.Setter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import static cz.pk.traycer.pktracer.engine.Enums.Shape.SPHERE;
-import static cz.pk.traycer.pktracer.engine.Enums.Shape.TRIANGLE;
 import static cz.pk.traycer.pktracer.engine.HitRecord.EMPTY_OBJECT_INDEX;
 import static cz.pk.traycer.pktracer.engine.Constants.EPSILON;
 
 @Data
 @NoArgsConstructor
 public class Renderer {
-    private @NonNull Vector4D[] accumulationData;
-    private @NonNull Vector4D[] viewportData;
+    public static final int DEFAULT_TILE_SIZE = 32;
+    public static final int DEFAULT_MAX_DEPTH = 5;
+    public static final int DEFAULT_ROULETTE_MIN_DEPTH = 3;
+    public static final double DEFAULT_NOISE_THRESHOLD = 0.02;
+    public static final int DEFAULT_MIN_ADAPTIVE_SAMPLES = 16;
+    /**
+     * Lower bound of mean luminance in relative error estimate, see {@link AccumulationBuffer#relativeError}.
+     */
+    public static final double MIN_ERROR_LUMINANCE = 0.05;
+
+    private @NonNull AccumulationBuffer accumulationData;
+    /**
+     * Resolved frames handed over to GUI. Frame is resolved to back buffer and published when completed.
+     */
+    private @NonNull TripleBuffer frameBuffers;
+    private @NonNull IntBuffer viewportData;
+    /**
+     * First-hit features written by integrators, guide of denoiser.
+     */
+    private @NonNull FeatureBuffer features;
+    /**
+     * Viewport shows denoised accumulation when set. Can be switched from any thread, applies from next frame.
+     */
+    private volatile boolean denoise;
+    private ATrousDenoiser denoiser;
+    private AccumulationBuffer denoisedData;
     private int viewportWidth;
     private int viewportHeight;
 
     private Camera camera;
 
     private Scene activeScene;
+    private Enums.Accelerator acceleratorType;
+    private Accelerator accelerator;
+    private GeometryArena acceleratorArena;
+    private LightSampler lights;
+    /**
+     * At every diffuse hit trace shadow ray toward sampled light and combine it with light found by scattered
+     * ray using multiple importance sampling.
+     */
+    private boolean nextEventEstimation;
+    private Enums.Integrator integratorType;
+    private WavefrontIntegrator wavefrontIntegrator;
     private long frameIndex;
+    private long seed;
+    /**
+     * Set from any thread to stop frame in flight.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Adaptive sampling: tile stops being sampled when relative error of all its pixels is below noise threshold
+     * and all of them have at least min adaptive samples. Zero threshold samples every pixel in every frame.
+     */
+    private double noiseThreshold;
+    private int minAdaptiveSamples;
+
+    /**
+     * Path is traced through at most max depth segments. Path longer than roulette min depth segments
+     * is terminated by Russian roulette with probability given by its throughput, surviving path
+     * is weighted by inverse of survival probability, so the image stays unbiased.
+     * Min depth not lower than max depth disables Russian roulette.
+     */
+    private int maxDepth;
+    private int rouletteMinDepth;
+
+    private int threadCount;
+    private int tileSize;
+    private List<Tile> tiles;
+    private boolean[] convergedTiles;
+    /**
+     * Tiles resolved to viewport data by current frame, see {@link #selectResolvedTiles(boolean)}.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean[] resolvedTiles;
+    /**
+     * Version of the last frame which changed pixels of each tile, and of the last frame written to each
+     * of frame buffers. Tile is resolved to back buffer only when it changed since the buffer was written.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long[] tileVersions;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final long[] bufferVersions = new long[3];
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long frameVersion;
+    /**
+     * Last published frame was denoised.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean denoisedFrame;
+    private ForkJoinPool renderPool;
+    /**
+     * Work traced since renderer creation, frames are also reported as {@link FrameEvent} to flight recorder.
+     */
+    private final RenderStats stats = new RenderStats();
+    /**
+     * Guards frame in flight and checkpoint requested during it, see {@link #checkpoint()}.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Object checkpointLock = new Object();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean frameInProgress;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CompletableFuture<Void> requestedCheckpoint;
+    /**
+     * Snapshots copied between frames by other threads, next frame starts when they are copied.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int snapshotsInProgress;
+    /**
+     * Replaced scenes, arenas and buffers, which a frame in flight may still use. Closed at frame boundary.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private final Queue<Runnable> retired = new ConcurrentLinkedQueue<>();
 
     public Renderer(int width, int height) {
+        this(width, height, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Renderer(int width, int height, int threadCount) {
         viewportWidth = width;
         viewportHeight = height;
         camera = new Camera(viewportWidth, viewportHeight);
 
-        accumulationData = new Vector4D[viewportHeight * viewportWidth];
+        accumulationData = new AccumulationBuffer(viewportWidth, viewportHeight);
+        features = new FeatureBuffer(viewportWidth, viewportHeight);
+        frameBuffers = new TripleBuffer(viewportWidth, viewportHeight);
+        viewportData = frameBuffers.getBack();
         activeScene = new Scene(new ArrayList<>(), new ArrayList<>());
+        acceleratorType = Enums.Accelerator.BVH;
+        accelerator = new BruteForceAccelerator(activeScene.getModels());
+        lights = new LightSampler(activeScene);
+        nextEventEstimation = true;
+        integratorType = Enums.Integrator.DEPTH_FIRST;
+        wavefrontIntegrator = new WavefrontIntegrator(this);
         frameIndex = 1;
+        seed = System.currentTimeMillis();
+
+        noiseThreshold = DEFAULT_NOISE_THRESHOLD;
+        minAdaptiveSamples = DEFAULT_MIN_ADAPTIVE_SAMPLES;
+        maxDepth = DEFAULT_MAX_DEPTH;
+        rouletteMinDepth = DEFAULT_ROULETTE_MIN_DEPTH;
+
+        setTileSize(DEFAULT_TILE_SIZE);
+        setThreadCount(threadCount);
     }
 
+    /**
+     * Load scene bundled with application, see {@link SceneLoader#loadDefault(Camera)}.
+     */
     public void initialize() {
-        loadScene();
+        setScene(SceneLoader.loadDefault(camera));
+    }
+
+    /**
+     * Replace active scene by scene file and set camera by the file. Accumulation starts again,
+     * previous scene is retired, see {@link #retire(Runnable)}.
+     *
+     * @param file Scene file or compiled scene cache, see {@link SceneLoader} for format.
+     */
+    public void loadScene(final Path file) throws IOException {
+        setScene(SceneLoader.load(file, camera));
+    }
+
+    private void setScene(final Scene scene) {
+        Scene previousScene = activeScene;
+        activeScene = scene;
+        buildAccelerator();
+        resetAccumulation();
+        retire(previousScene::close);
+    }
+
+    /**
+     * Build acceleration structure of selected type and light sampler over current scene models.
+     * Hierarchy loaded with the scene is used instead of building a new one. Has to be called after any change
+     * of scene models. Arena of previous structure is retired, see {@link #retire(Runnable)}.
+     */
+    public void buildAccelerator() {
+        GeometryArena previousArena = acceleratorArena;
+
+        lights = new LightSampler(activeScene);
+
+        acceleratorArena = new GeometryArena();
+        accelerator = switch (acceleratorType) {
+            case BRUTE_FORCE -> new BruteForceAccelerator(activeScene.getModels());
+            case BVH -> activeScene.getModelHierarchy() != null
+                    ? new BVHAccelerator(activeScene.getModels(), activeScene.getModelHierarchy())
+                    : new BVHAccelerator(activeScene.getModels(), acceleratorArena);
+        };
+
+        if (previousArena != null) {
+            retire(previousArena::close);
+        }
+    }
+
+    /**
+     * Close replaced resource once no frame can use it. Can be called from any thread: resource is closed
+     * when the next frame starts, or by {@link #releaseRetired()}, so frame in flight finishes with it first.
+     *
+     * @param close Closing of the resource.
+     */
+    public void retire(final Runnable close) {
+        retired.add(close);
+    }
+
+    /**
+     * Close all retired resources. Has to be called between frames by the thread rendering them.
+     */
+    public void releaseRetired() {
+        Runnable close;
+        while ((close = retired.poll()) != null) {
+            close.run();
+        }
+    }
+
+    public void setAcceleratorType(final Enums.Accelerator acceleratorType) {
+        this.acceleratorType = acceleratorType;
+        buildAccelerator();
     }
 
-    //todo: Move it to initialize method and dont separate it. Problem with
-    // initCenterPanel method call and sceneFX object creation.
-    public void initializeKeyboardAndMouse(javafx.scene.Scene sceneFX) {
+    /**
+     * Back accumulation by file written by {@link #checkpoint()}, so render survives crash and can be merged
+     * with other renders.
+     * Existing file of the same resolution, seed and scene resumes its render from stored frame index,
+     * missing file starts new render. Has to be called after scene is loaded.
+     *
+     * @param file Accumulation file.
+     * @throws IllegalArgumentException Existing file belongs to other render.
+     */
+    public void attachAccumulationFile(final Path file) throws IOException {
+        AccumulationBuffer fileData;
+        if (Files.exists(file)) {
+            fileData = AccumulationBuffer.open(file);
+            if (fileData.getWidth() != viewportWidth || fileData.getHeight() != viewportHeight
+                    || fileData.getSeed() != seed || fileData.getSceneHash() != activeScene.contentHash()) {
+                fileData.close();
+                throw new IllegalArgumentException(String.format(
+                        "Accumulation file belongs to other render. File value=%s", file));
+            }
+            frameIndex = fileData.getFrameIndex();
+        } else {
+            fileData = AccumulationBuffer.create(file, viewportWidth, viewportHeight, seed, activeScene.contentHash());
+            frameIndex = 1;
+        }
+
+        retire(accumulationData::close);
+        accumulationData = fileData;
+    }
+
+    /**
+     * Write accumulation file in background, rendering continues meanwhile. Can be called from any thread:
+     * file gets snapshot of accumulation at frame boundary, so checkpoint requested during a frame, or after
+     * a cancelled one, is taken by render thread when the next frame completes. Only copy of the samples is
+     * made at frame boundary, see {@link AccumulationBuffer#checkpoint()}.
+     *
+     * @return Future completed when snapshot is in the file.
+     * @throws UncheckedIOException Write of previous checkpoint failed.
+     */
+    public CompletableFuture<Void> checkpoint() {
+        synchronized (checkpointLock) {
+            if (frameInProgress || frameIndex != accumulationData.getFrameIndex()) {
+                if (requestedCheckpoint == null) {
+                    requestedCheckpoint = new CompletableFuture<>();
+                }
+                return requestedCheckpoint;
+            }
+            snapshotsInProgress++;
+        }
+
+        try {
+            return accumulationData.checkpoint();
+        } finally {
+            synchronized (checkpointLock) {
+                snapshotsInProgress--;
+                checkpointLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until snapshots copied by other threads between frames are complete, samples change from now on.
+     */
+    private void startFrame() {
+        boolean interrupted = false;
+        synchronized (checkpointLock) {
+            while (snapshotsInProgress > 0) {
+                try {
+                    checkpointLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            frameInProgress = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Take checkpoint requested during the frame, unless frame was cancelled and samples don't match
+     * frame index. Snapshot is copied outside of the lock, so threads requesting other checkpoints don't wait.
+     */
+    private void finishFrame() {
+        CompletableFuture<Void> requested;
+        synchronized (checkpointLock) {
+            frameInProgress = false;
+            if (requestedCheckpoint == null || frameIndex != accumulationData.getFrameIndex()) {
+                return;
+            }
+            requested = requestedCheckpoint;
+            requestedCheckpoint = null;
+        }
 
-        camera.registerKeysPressedEvent(sceneFX);
-        camera.registerMouseKeysPressedEvent(sceneFX);
+        CompletableFuture<Void> snapshot;
+        try {
+            snapshot = accumulationData.checkpoint();
+        } catch (UncheckedIOException e) {
+            // Failed write of previous checkpoint is reported to requester, not to the frame
+            requested.completeExceptionally(e);
+            return;
+        }
+        snapshot.whenComplete((ignored, e) -> {
+            if (e == null) {
+                requested.complete(null);
+            } else {
+                requested.completeExceptionally(e);
+            }
+        });
     }
 
     public void onResize(final int newWidth, final int newHeight) {
@@ -67,198 +390,588 @@ public class Renderer {
 //            camera.onResize(imageWidth, imageHeight);
 //        }
 
-        accumulationData = new Vector4D[viewportHeight * viewportWidth];
+        if (accumulationData.getWidth() != viewportWidth || accumulationData.getHeight() != viewportHeight) {
+            retire(accumulationData::close);
+            accumulationData = new AccumulationBuffer(viewportWidth, viewportHeight);
+        }
+        if (features.getWidth() != viewportWidth || features.getHeight() != viewportHeight) {
+            features = new FeatureBuffer(viewportWidth, viewportHeight);
+        }
+        frameBuffers = new TripleBuffer(viewportWidth, viewportHeight);
+        viewportData = frameBuffers.getBack();
+        setTileSize(tileSize);
 
         camera.onResize(viewportWidth, viewportHeight);
         camera.onUpdate(0.0f);
     }
 
-    public WritableImage render() {
-        WritableImage writableImage = new WritableImage(viewportWidth, viewportHeight);
+    /**
+     * Render one frame and resolve it to viewport data, which is published through frame buffers
+     * when the frame completes, together with region of viewport data changed by this frame. Converged tiles
+     * are resolved only to frame buffers which don't hold their final pixels yet. Paths are traced depth-first per tile or by {@link WavefrontIntegrator},
+     * according to integrator type.
+     *
+     * @return True when frame completed, false when it was cancelled.
+     */
+    public boolean render() {
+        FrameEvent event = new FrameEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (event.isEnabled()) {
+            event.primaryRays = -stats.getPrimaryRays();
+            event.secondaryRays = -stats.getSecondaryRays();
+            event.shadowRays = -stats.getShadowRays();
+            event.intersectionTests = -stats.getIntersectionTests();
+            event.bounces = -stats.getBounces();
+        }
+
+        // Previous frame is finished, nothing uses retired resources anymore
+        releaseRetired();
+        startFrame();
+        boolean completed;
+        try {
+            completed = renderFrame();
+        } finally {
+            finishFrame();
+        }
+
+        stats.addFrame(System.nanoTime() - start, completed);
+        if (event.shouldCommit()) {
+            event.frameIndex = completed ? frameIndex - 1 : frameIndex;
+            event.integrator = integratorType.name();
+            event.width = viewportWidth;
+            event.height = viewportHeight;
+            event.completed = completed;
+            event.primaryRays += stats.getPrimaryRays();
+            event.secondaryRays += stats.getSecondaryRays();
+            event.shadowRays += stats.getShadowRays();
+            event.intersectionTests += stats.getIntersectionTests();
+            event.bounces += stats.getBounces();
+            event.convergedTiles = getConvergedTileCount();
+            event.commit();
+        }
+        return completed;
+    }
 
+    private boolean renderFrame() {
         if(frameIndex == 1) {
-            for (int y = 0; y < viewportHeight; y++) {
-                for (int x = 0; x < viewportWidth; x++) {
-                    accumulationData[x + y * viewportWidth] = new Vector4D();
+            accumulationData.clear();
+            Arrays.fill(convergedTiles, false);
+        }
+        camera.updateRayDirections(renderPool);
+        boolean denoiseFrame = denoise;
+        Tile region = selectResolvedTiles(denoiseFrame);
+
+        if (Enums.Integrator.WAVEFRONT.equals(integratorType)) {
+            wavefrontIntegrator.render();
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(tiles.size());
+            for (int i = 0; i < tiles.size(); i++) {
+                int tileIndex = i;
+                if (!convergedTiles[i] || resolvedTiles[i]) {
+                    tasks.add(renderPool.submit(() -> renderTile(tileIndex)));
                 }
             }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
         }
 
-        PixelWriter pw = writableImage.getPixelWriter();
+        if (cancelled) {
+            // Frame is accumulated only partially, start accumulation again
+            resetAccumulation();
+            return false;
+        }
+
+        if (denoiseFrame) {
+            resolveDenoised(denoise());
+        }
 
-        for (int y = 0; y < viewportHeight; y++) {
-            for (int x = 0; x < viewportWidth; x++) {
-                Vector4D color = perPixel(x, y);
+        frameVersion++;
+        bufferVersions[frameBuffers.getBackIndex()] = frameVersion;
+        denoisedFrame = denoiseFrame;
+        frameBuffers.publish(region);
+        viewportData = frameBuffers.getBack();
+        frameIndex++;
+        accumulationData.setFrameIndex(frameIndex);
+        return true;
+    }
 
-                accumulationData[x + y * viewportWidth] = accumulationData[x + y * viewportWidth].add(color);
+    /**
+     * Filter samples accumulated so far by {@link ATrousDenoiser} guided by first-hit features.
+     * Accumulation itself is not changed.
+     *
+     * @return Buffer holding denoised color as one sample per pixel, reused by next call.
+     */
+    public AccumulationBuffer denoise() {
+        if (denoiser == null || denoiser.getWidth() != viewportWidth || denoiser.getHeight() != viewportHeight) {
+            denoiser = new ATrousDenoiser(viewportWidth, viewportHeight);
+            if (denoisedData != null) {
+                retire(denoisedData::close);
+            }
+            denoisedData = new AccumulationBuffer(viewportWidth, viewportHeight);
+        }
 
-                Vector4D accumulatedColor = accumulationData[x + y * viewportWidth];
-                accumulatedColor = accumulatedColor.div(frameIndex);
-                Vector4D finalColor = Vector4D.clamp(accumulatedColor, Vector4D.ZERO, Vector4D.ONE);
+        denoiser.denoise(accumulationData, features, tiles, renderPool, denoisedData);
+        return denoisedData;
+    }
 
-                pw.setColor(x, y, new Color(finalColor.getX(), finalColor.getY(), finalColor.getZ(), 1.0));
+    /**
+     * Select tiles resolved to back buffer by this frame: tiles sampled by it and tiles changed since the back buffer
+     * was written last time. All tiles change when any of them is sampled by denoised frame, since denoiser spreads
+     * samples to neighbouring tiles, or when denoising is switched.
+     *
+     * @param denoiseFrame Frame is denoised.
+     * @return Region covering selected tiles, null when none is selected.
+     */
+    private Tile selectResolvedTiles(final boolean denoiseFrame) {
+        long version = frameVersion + 1;
+        boolean sampled = getConvergedTileCount() < tiles.size();
+        boolean allChanged = denoiseFrame ? sampled || !denoisedFrame : denoisedFrame;
+        long bufferVersion = bufferVersions[frameBuffers.getBackIndex()];
+
+        Tile region = null;
+        for (int i = 0; i < tiles.size(); i++) {
+            if (allChanged || !convergedTiles[i]) {
+                tileVersions[i] = version;
+            }
+            resolvedTiles[i] = tileVersions[i] > bufferVersion;
+            if (resolvedTiles[i]) {
+                region = region == null ? tiles.get(i) : region.union(tiles.get(i));
             }
         }
+        return region;
+    }
 
-        frameIndex++;
+    /**
+     * @param pixelIndex Pixel index {@code x + y * width}.
+     * @return True when tile containing the pixel is resolved to viewport data by current frame.
+     */
+    public boolean isResolved(final int pixelIndex) {
+        return resolvedTiles[tileIndexOf(pixelIndex)];
+    }
+
+    private void resolveDenoised(final AccumulationBuffer denoised) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(tiles.size());
+        for (int i = 0; i < tiles.size(); i++) {
+            if (!resolvedTiles[i]) {
+                continue;
+            }
+            Tile tile = tiles.get(i);
+            tasks.add(renderPool.submit(() -> {
+                for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+                    for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                        int index = x + y * viewportWidth;
+                        viewportData.put(index, denoised.resolve(index));
+                    }
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Stop frame in flight as soon as possible. Called from any thread. Frames keep being
+     * cancelled until the flag is cleared by {@code setCancelled(false)}, {@link RenderLoop}
+     * clears it before applying its updates.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Discard accumulated frames and convergence of tiles, next frame starts new accumulation.
+     */
+    public void resetAccumulation() {
+        frameIndex = 1;
+    }
+
+    /**
+     * Trace and accumulate all pixels of given tile, converged tile is only resolved. Tile not selected
+     * by {@link #selectResolvedTiles(boolean)} is accumulated without resolving. Called concurrently
+     * from render pool workers, each worker touches only indices of its own tile.
+     *
+     * @param tileIndex Index of tile to render.
+     */
+    private void renderTile(final int tileIndex) {
+        Tile tile = tiles.get(tileIndex);
+        boolean converged = convergedTiles[tileIndex];
+        boolean resolved = resolvedTiles[tileIndex];
+        TraceContext context = new TraceContext(seed);
+        Sampler sampler = context.getSampler();
+
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight() && !cancelled; y++) {
+            for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                int index = x + y * viewportWidth;
+                if (!converged) {
+                    sampler.startPixel(index, frameIndex);
+                    accumulationData.accumulate(index, perPixel(x, y, context));
+                }
+                if (resolved) {
+                    viewportData.put(index, accumulationData.resolve(index));
+                }
+            }
+        }
+
+        context.flushStats(stats);
+        updateConvergence(tileIndex);
+    }
+
+    /**
+     * Trace frames [fromFrame, toFrame] of every pixel of given region at once and accumulate them
+     * to accumulation buffer, which is cleared in the region first. Rows of the region are split
+     * between render pool workers. Pixels receive the same samples as from {@link #render()} calls
+     * of the same frames by depth-first integrator, adaptive sampling is not applied and viewport
+     * data is not resolved. Used by distributed rendering, where region is rendered by other process.
+     *
+     * @param region    Region of viewport.
+     * @param fromFrame First frame index, frames are counted from 1.
+     * @param toFrame   Last frame index, inclusive.
+     */
+    public void renderRegion(final Tile region, final long fromFrame, final long toFrame) {
+        if (fromFrame < 1 || toFrame < fromFrame) {
+            throw new IllegalArgumentException(String.format(
+                    "Frames out of bounds. Fill 1 <= from <= to. From value=%d, to value=%d", fromFrame, toFrame));
+        }
+
+        releaseRetired();
+        camera.updateRayDirections(renderPool);
+        accumulationData.clear(region);
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(region.getHeight());
+        for (int y = region.getY(); y < region.getY() + region.getHeight(); y++) {
+            int row = y;
+            tasks.add(renderPool.submit(() -> {
+                TraceContext context = new TraceContext(seed);
+                for (int x = region.getX(); x < region.getX() + region.getWidth(); x++) {
+                    int index = x + row * viewportWidth;
+                    for (long frame = fromFrame; frame <= toFrame; frame++) {
+                        context.getSampler().startPixel(index, frame);
+                        accumulationData.accumulate(index, perPixel(x, row, context));
+                    }
+                }
+                context.flushStats(stats);
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Mark tile as converged when adaptive sampling is enabled and relative error of all its pixels
+     * dropped below noise threshold.
+     *
+     * @param tileIndex Index of tile.
+     */
+    void updateConvergence(final int tileIndex) {
+        if (noiseThreshold <= 0.0 || convergedTiles[tileIndex] || cancelled) {
+            return;
+        }
+
+        Tile tile = tiles.get(tileIndex);
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                int index = x + y * viewportWidth;
+                if (accumulationData.getSampleCounts().get(index) < minAdaptiveSamples
+                        || accumulationData.relativeError(index, MIN_ERROR_LUMINANCE) > noiseThreshold) {
+                    return;
+                }
+            }
+        }
+
+        convergedTiles[tileIndex] = true;
+    }
+
+    /**
+     * @param pixelIndex Pixel index {@code x + y * width}.
+     * @return True when tile containing the pixel is not sampled anymore.
+     */
+    public boolean isConverged(final int pixelIndex) {
+        return convergedTiles[tileIndexOf(pixelIndex)];
+    }
+
+    private int tileIndexOf(final int pixelIndex) {
+        int tilesPerRow = (viewportWidth + tileSize - 1) / tileSize;
+        int x = pixelIndex % viewportWidth;
+        int y = pixelIndex / viewportWidth;
+
+        return x / tileSize + (y / tileSize) * tilesPerRow;
+    }
+
+    /**
+     * @return Number of tiles not sampled anymore.
+     */
+    public int getConvergedTileCount() {
+        int count = 0;
+        for (boolean converged : convergedTiles) {
+            if (converged) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Set number of render pool workers. Current pool is shut down and replaced by new one.
+     *
+     * @param threadCount Number of worker threads, at least 1.
+     */
+    public void setThreadCount(final int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Thread count must be positive. Thread count value=%d", threadCount));
+        }
+
+        if (renderPool != null) {
+            renderPool.shutdown();
+        }
+
+        this.threadCount = threadCount;
+        renderPool = new ForkJoinPool(threadCount);
+    }
+
+    /**
+     * @param maxDepth Maximal number of path segments including camera ray, at least 1.
+     */
+    public void setMaxDepth(final int maxDepth) {
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Max depth must be positive. Max depth value=%d", maxDepth));
+        }
+
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param rouletteMinDepth Number of path segments always traced before Russian roulette, at least 1.
+     */
+    public void setRouletteMinDepth(final int rouletteMinDepth) {
+        if (rouletteMinDepth <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Roulette min depth must be positive. Roulette min depth value=%d", rouletteMinDepth));
+        }
+
+        this.rouletteMinDepth = rouletteMinDepth;
+    }
+
+    /**
+     * Probability that path continues by segment of given depth, 1 before Russian roulette starts.
+     * Equals to maximal component of path throughput, clamped to 1.
+     *
+     * @param depth       Index of next segment, camera ray has index 0.
+     * @param throughputR Red component of path throughput.
+     * @param throughputG Green component of path throughput.
+     * @param throughputB Blue component of path throughput.
+     * @return Survival probability.
+     */
+    double survivalProbability(final int depth, final double throughputR, final double throughputG,
+                               final double throughputB) {
+        if (depth < rouletteMinDepth) {
+            return 1.0;
+        }
 
-        return writableImage;
+        return Math.min(1.0, Math.max(throughputR, Math.max(throughputG, throughputB)));
     }
 
-    private Vector4D perPixel(int x, int y) {
-        Ray ray = new Ray();
-        ray.setOrigin(camera.getPosition());
-        ray.setDirection(camera.getRayDirections()[x + y * viewportWidth]);
+    /**
+     * Set maximal tile size used to split viewport between render pool workers.
+     *
+     * @param tileSize Tile width and height in pixels.
+     */
+    public void setTileSize(final int tileSize) {
+        tiles = Tile.split(viewportWidth, viewportHeight, tileSize);
+        convergedTiles = new boolean[tiles.size()];
+        resolvedTiles = new boolean[tiles.size()];
+        tileVersions = new long[tiles.size()];
+        // Frame buffers may be new too, all tiles are written to every buffer again
+        Arrays.fill(bufferVersions, 0);
+        this.tileSize = tileSize;
+        resetAccumulation();
+    }
 
-        int bounces = 5;
-        Vector3D contribution = new Vector3D(1.0);
-        Vector3D light = new Vector3D(0.0);
+    /**
+     * Trace one path through given pixel. Uses only preallocated vectors of the context.
+     *
+     * @return Light of the path, vector owned by the context.
+     */
+    Vector3D perPixel(int x, int y, TraceContext context) {
+        Sampler sampler = context.getSampler();
+        Ray ray = context.getRay();
+        HitRecord hitRecord = context.getHitRecord();
+        ray.getOrigin().set(camera.getPosition());
+        camera.getRayDirection(x + y * viewportWidth, ray.getDirection());
+
+        Vector3D contribution = context.getContribution().set(1.0, 1.0, 1.0);
+        Vector3D light = context.getLight().set(0.0, 0.0, 0.0);
 
         Material material;
 
-        for(int i = 0; i < bounces; i++) {
-            HitRecord hitRecord = traceRay(ray);
+        // Solid angle density of current ray direction, 0 for camera ray
+        double scatterPdf = 0.0;
+
+        for(int i = 0; i < maxDepth; i++) {
+            context.countRays(i, 1);
+            traceRay(ray, hitRecord);
             if(EMPTY_OBJECT_INDEX == hitRecord.getObjectIndex()) {
+                if (i == 0) {
+                    features.writeMiss(x + y * viewportWidth);
+                }
                 break;
             }
+            context.countBounce();
 
             material = activeScene.getMaterials().get(hitRecord.getMaterialIndex());
+            if (i == 0) {
+                features.write(x + y * viewportWidth, material.getAlbedo(), hitRecord.getWorldNormal(),
+                        hitRecord.getDistance());
+            }
+
+            Vector3D.mulInto(contribution, material.getAlbedo(), contribution);
+            Vector3D emission = material.getEmission();
+            double emissionWeight = emissionWeight(hitRecord.getObjectIndex(), ray.getOrigin(), scatterPdf);
+            light.set(
+                    light.getX() + emission.getX() * contribution.getX() * emissionWeight,
+                    light.getY() + emission.getY() * contribution.getY() * emissionWeight,
+                    light.getZ() + emission.getZ() * contribution.getZ() * emissionWeight);
 
-            contribution = contribution.mul(material.getAlbedo());
-            light = light.add(material.getEmission().mul(contribution));
+            if (i + 1 == maxDepth) {
+                break;
+            }
+
+            Vector3D.mulAdd(hitRecord.getWorldPosition(), hitRecord.getWorldNormal(), EPSILON, ray.getOrigin());
 
-            ray.setOrigin(hitRecord.getWorldPosition().add(
-                    hitRecord.getWorldNormal().mul(EPSILON)));
+            sampler.startBounce(i + 1);
+            Vector3D direction = ray.getDirection();
+            Vector3D.normalizeInto(sampler.randomInUnitSphere(direction), direction);
+            Vector3D.addInto(hitRecord.getWorldNormal(), direction, direction);
+            Vector3D.normalizeInto(direction, direction);
+            scatterPdf = scatterPdf(hitRecord.getWorldNormal(), direction);
 
-            ray.setDirection(Vector3D.normalize(
-                    hitRecord.getWorldNormal().add(Vector3D.normalize(MathUtility.randomInUnitSphere2()))));
+            Vector3D.addInto(light, sampleLight(ray.getOrigin(), hitRecord.getWorldNormal(),
+                    contribution.getX(), contribution.getY(), contribution.getZ(), context), light);
+
+            double survival = survivalProbability(i + 1, contribution.getX(), contribution.getY(), contribution.getZ());
+            if (survival < 1.0) {
+                if (sampler.nextDouble() >= survival) {
+                    break;
+                }
+                Vector3D.mulInto(contribution, 1.0 / survival, contribution);
+            }
         }
 
-        return new Vector4D(light, 1.0);
+        return light;
     }
 
-    private HitRecord traceRay(final Ray ray) {
-        HitRecord hitRecord = new HitRecord();
+    /**
+     * Solid angle density of cosine weighted diffuse scattering, direction {@code normalize(normal + random unit vector)}.
+     */
+    static double scatterPdf(final Vector3D normal, final Vector3D direction) {
+        return Math.max(0.0, Vector3D.dot(normal, direction)) / Math.PI;
+    }
 
-        for(Hittable model : activeScene.getModels()) {
-            if(SPHERE.equals(model.getShape())) {
-                Sphere sphere = (Sphere) model;
-                IntersectionManager.raySphereIntersection(ray, sphere, hitRecord);
-            }
+    /**
+     * Power heuristic of multiple importance sampling, weight of strategy with density {@code pdf}.
+     */
+    static double powerHeuristic(final double pdf, final double otherPdf) {
+        double squared = pdf * pdf;
+        return squared / (squared + otherPdf * otherPdf);
+    }
+
+    /**
+     * MIS weight of emission found by scattered ray. Light which could have been sampled by next-event
+     * estimation from ray origin shares its contribution with the shadow ray, other emission is taken whole.
+     *
+     * @param objectIndex Hit model.
+     * @param origin      Origin of scattered ray, shading point of previous hit.
+     * @param scatterPdf  Density of scattered ray direction, 0 for camera ray.
+     * @return Weight of emission.
+     */
+    double emissionWeight(final int objectIndex, final Vector3D origin, final double scatterPdf) {
+        if (!nextEventEstimation || scatterPdf == 0.0) {
+            return 1.0;
         }
 
-        if(EMPTY_OBJECT_INDEX == hitRecord.getObjectIndex()) {
-            return new HitRecord();
+        int light = lights.lightIndexOf(objectIndex);
+        if (light == LightSampler.NO_LIGHT) {
+            return 1.0;
         }
 
-        return closestHit(ray, hitRecord);
+        return powerHeuristic(scatterPdf, lights.pdf(light, origin));
     }
 
-    private HitRecord closestHit(final Ray ray, HitRecord hitRecord) {
-        Hittable model = activeScene.getModels().get(hitRecord.getObjectIndex());
-        if (SPHERE.equals(model.getShape())) {
-            Sphere closestSphere = (Sphere) model;
+    /**
+     * Next-event estimation: light reaching shading point directly from one sampled light, weighted by MIS
+     * against scattered rays. Takes three random numbers from current bounce of the sampler whenever there
+     * is a light, so both integrators consume the same numbers.
+     *
+     * @param origin      Shading point offset above the surface.
+     * @param normal      Surface normal.
+     * @param throughputR Red component of path throughput including albedo of the surface.
+     * @param throughputG Green component of path throughput.
+     * @param throughputB Blue component of path throughput.
+     * @return Direct light, vector owned by the context.
+     */
+    Vector3D sampleLight(final Vector3D origin, final Vector3D normal, final double throughputR,
+                         final double throughputG, final double throughputB, TraceContext context) {
+        Vector3D directLight = context.getDirectLight().set(0.0, 0.0, 0.0);
+        if (!nextEventEstimation || lights.isEmpty()) {
+            return directLight;
+        }
 
-            Vector3D origin = ray.getOrigin().add(closestSphere.getPosition());
-            Vector3D worldPosition = origin.add(ray.getDirection().mul(hitRecord.getDistance()));
-            hitRecord.setWorldNormal(Vector3D.normalize(worldPosition));
-            hitRecord.setWorldPosition(worldPosition.sub(closestSphere.getPosition()));
-        } else if (TRIANGLE.equals(model.getShape())) {
+        Sampler sampler = context.getSampler();
+        int light = lights.pick(sampler.nextDouble());
+        double u1 = sampler.nextDouble();
+        double u2 = sampler.nextDouble();
 
+        double lightPdf = lights.pdf(light, origin);
+        if (lightPdf == 0.0) {
+            return directLight;
         }
 
-        return hitRecord;
+        Ray shadowRay = context.getShadowRay();
+        shadowRay.getOrigin().set(origin);
+        lights.sampleDirection(light, origin, u1, u2, shadowRay.getDirection());
+        double cosine = Vector3D.dot(normal, shadowRay.getDirection());
+        if (cosine <= 0.0) {
+            return directLight;
+        }
+
+        context.countShadowRay();
+        HitRecord shadowHitRecord = context.getShadowHitRecord();
+        shadowHitRecord.restart();
+        accelerator.intersect(shadowRay, shadowHitRecord);
+        if (shadowHitRecord.getObjectIndex() != lights.getObjectIndex(light)) {
+            return directLight;
+        }
+
+        // Diffuse BRDF albedo / PI, albedo is already part of throughput
+        double scatterPdf = cosine / Math.PI;
+        double weight = scatterPdf * powerHeuristic(lightPdf, scatterPdf) / lightPdf;
+        Vector3D radiance = lights.getRadiance(light);
+        return directLight.set(
+                throughputR * radiance.getX() * weight,
+                throughputG * radiance.getY() * weight,
+                throughputB * radiance.getZ() * weight);
     }
 
-    private void loadScene() {
-        camera.setVerticalFOV(45.0);
-        camera.setPosition(new Vector3D(-4.0, -3.5, 45.0));
-        camera.setForwardDirection(new Vector3D(-0.08, -0.0461, -0.998));  // new Vector3D(0.0, 0.0, -1.0)
-        camera.setNearClip(0.1);
-        camera.setFarClip(100.0);
-
-        Sphere sphere0 = new Sphere();
-        sphere0.setPosition(new Vector3D(-1.5, 0.0, 0.0));
-        sphere0.setRadius(2.0);
-        sphere0.setObjectIndex(0);
-        sphere0.setMaterialIndex(0);
-
-        Sphere sphere1 = new Sphere();
-        sphere1.setPosition(new Vector3D(0.0, -101.0, 0.0));
-        sphere1.setRadius(100.0);
-        sphere1.setObjectIndex(1);
-        sphere1.setMaterialIndex(1);
-
-        Sphere sphere2 = new Sphere();
-        sphere2.setPosition(new Vector3D(2.0, 0.0, 0.0));
-        sphere2.setRadius(0.78);
-        sphere2.setObjectIndex(2);
-        sphere2.setMaterialIndex(2);
-
-        Sphere light1 = new Sphere();
-        light1.setPosition(new Vector3D(3.3, 4.0, 4));
-        light1.setRadius(3.5);
-        light1.setObjectIndex(3);
-        light1.setMaterialIndex(3);
-
-        Sphere light2 = new Sphere();
-        light2.setPosition(new Vector3D(-10.0, 5.0, -50));
-        light2.setRadius(1.5);
-        light2.setObjectIndex(4);
-        light2.setMaterialIndex(4);
-
-        Material limeMaterial = new Material(
-                new Vector3D(0.1953125, 0.80078125, 0.1953125),
-                0.0f,
-                0.0f,
-                new Vector3D(0.0, 0.0, 0.0),
-                0.0f
-        );
-
-        Material redMaterial = new Material(
-                new Vector3D(0.850, 0.0, 0.0),
-                0.1f,
-                0.1f,
-                new Vector3D(0.350, 0.0, 0.0),
-                0.0f
-        );
-
-        Material blueMaterial = new Material(
-                new Vector3D(0.0, 0.0, 0.850),
-                0.1f,
-                0.1f,
-                new Vector3D(0.0, 0.0, 0.0),
-                0.0f
-        );
-
-        Material lightMaterial0 = new Material(
-                new Vector3D(0.8, 0.8, 0.8),
-                0.1f,
-                0.1f,
-                new Vector3D(0.8, 0.8, 0.8),
-                5.0f
-        );
-
-        Material lightMaterial1 = new Material(
-                new Vector3D(0.4, 0.4, 0.4),
-                0.1f,
-                0.1f,
-                new Vector3D(0.4, 0.4, 0.4),
-                3.0f
-        );
-
-        activeScene.getModels().clear();
-        activeScene.getModels().add(sphere0);
-        activeScene.getModels().add(sphere1);
-        activeScene.getModels().add(sphere2);
-        activeScene.getModels().add(light1);
-        activeScene.getModels().add(light2);
-
-        activeScene.getMaterials().clear();
-        activeScene.getMaterials().add(limeMaterial);
-        activeScene.getMaterials().add(redMaterial);
-        activeScene.getMaterials().add(blueMaterial);
-        activeScene.getMaterials().add(lightMaterial0);
-        activeScene.getMaterials().add(lightMaterial1);
+    private HitRecord traceRay(final Ray ray, HitRecord hitRecord) {
+        hitRecord.restart();
+        accelerator.intersect(ray, hitRecord);
+
+        if(EMPTY_OBJECT_INDEX == hitRecord.getObjectIndex()) {
+            return hitRecord;
+        }
+
+        return closestHit(ray, hitRecord);
+    }
+
+    private HitRecord closestHit(final Ray ray, HitRecord hitRecord) {
+        activeScene.getModels().get(hitRecord.getObjectIndex()).closestHit(ray, hitRecord);
+
+        return hitRecord;
     }
 }
@@ -1,14 +1,74 @@
 package cz.pk.traycer.pktracer.engine;
 
+import cz.pk.traycer.pktracer.engine.accel.BVH;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
 import cz.pk.traycer.pktracer.engine.shapes.Hittable;
-import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Scene models and materials. Off-heap geometry of models is owned by scene {@link GeometryArena}
+ * and released by {@link #close()} once no model uses it anymore.
+ */
 @Data
-@AllArgsConstructor
-public class Scene {
+public class Scene implements AutoCloseable {
     private List<Hittable> models;
     private List<Material> materials;
+    private GeometryArena arena;
+    /**
+     * Geometry shared by {@link cz.pk.traycer.pktracer.engine.shapes.Instance} models. Not traced by itself,
+     * it is in object space of instances.
+     */
+    private List<Hittable> geometries = new ArrayList<>();
+    /**
+     * Hierarchy over models loaded with the scene, or null when it has to be built. Has to be set to null
+     * when models change.
+     */
+    private BVH modelHierarchy;
+
+    public Scene(List<Hittable> models, List<Material> materials) {
+        this(models, materials, new GeometryArena());
+    }
+
+    public Scene(List<Hittable> models, List<Material> materials, GeometryArena arena) {
+        this.models = models;
+        this.materials = materials;
+        this.arena = arena;
+    }
+
+    /**
+     * @return Models with material of positive emission power, in order of model list.
+     */
+    public List<Hittable> emissiveModels() {
+        return models.stream()
+                .filter(model -> materials.get(model.getMaterialIndex()).getEmissionPower() > 0.0f)
+                .toList();
+    }
+
+    /**
+     * Hash of models, materials and shared geometries, stable between processes. Unlike {@link #hashCode()}
+     * it doesn't depend on identity of scene arena.
+     *
+     * @return Content hash of the scene.
+     */
+    public long contentHash() {
+        long hash = 1;
+        for (Hittable model : models) {
+            hash = 31 * hash + model.hashCode();
+        }
+        for (Material material : materials) {
+            hash = 31 * hash + material.hashCode();
+        }
+        for (Hittable geometry : geometries) {
+            hash = 31 * hash + geometry.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
 }
@@ -0,0 +1,65 @@
+package cz.pk.traycer.pktracer.engine;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rectangular part of the viewport rendered by one worker. Tiles produced by
+ * {@link #split(int, int, int)} never overlap, so every worker writes its own
+ * disjoint slice of the accumulation data.
+ */
+@Data
+@AllArgsConstructor
+public class Tile {
+    private int x;
+    private int y;
+    private int width;
+    private int height;
+
+    /**
+     * Smallest tile containing this and given tile.
+     *
+     * @param tile Other tile.
+     * @return Bounding tile of both tiles.
+     */
+    public Tile union(final Tile tile) {
+        int minX = Math.min(x, tile.getX());
+        int minY = Math.min(y, tile.getY());
+        int maxX = Math.max(x + width, tile.getX() + tile.getWidth());
+        int maxY = Math.max(y + height, tile.getY() + tile.getHeight());
+
+        return new Tile(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Split viewport to tiles of given size. Tiles on the right and bottom edge
+     * are cropped to viewport size.
+     *
+     * @param viewportWidth  Viewport width in pixels.
+     * @param viewportHeight Viewport height in pixels.
+     * @param tileSize       Maximal tile width and height in pixels.
+     * @return Tiles covering whole viewport in row-major order.
+     */
+    public static List<Tile> split(final int viewportWidth, final int viewportHeight, final int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Tile size must be positive. Tile size value=%d", tileSize));
+        }
+
+        List<Tile> tiles = new ArrayList<>();
+        for (int y = 0; y < viewportHeight; y += tileSize) {
+            for (int x = 0; x < viewportWidth; x += tileSize) {
+                tiles.add(new Tile(
+                        x,
+                        y,
+                        Math.min(tileSize, viewportWidth - x),
+                        Math.min(tileSize, viewportHeight - y)));
+            }
+        }
+
+        return tiles;
+    }
+}
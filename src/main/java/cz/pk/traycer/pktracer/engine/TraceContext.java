@@ -0,0 +1,87 @@
+package cz.pk.traycer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.sampling.Sampler;
+import cz.pk.traycer.pktracer.engine.stats.RenderStats;
+import lombok.Getter;
+
+/**
+ * Preallocated state of one render worker. <br>
+ * Ray, hit record and path vectors are reused for every sample the worker traces, so the hot path
+ * works only with destination variants of vector operations and doesn't allocate per ray or bounce.
+ * Context is never shared between threads.
+ */
+@Getter
+public class TraceContext {
+    private final Sampler sampler;
+    private final Ray ray;
+    private final HitRecord hitRecord;
+    /**
+     * Product of albedos along the path.
+     */
+    private final Vector3D contribution;
+    /**
+     * Light gathered by the path.
+     */
+    private final Vector3D light;
+    /**
+     * Shadow ray of next-event estimation with its own hit record, so the path hit record stays untouched.
+     */
+    private final Ray shadowRay;
+    private final HitRecord shadowHitRecord;
+    /**
+     * Light reaching shading point directly from sampled light.
+     */
+    private final Vector3D directLight;
+    /**
+     * Work traced since last {@link #flushStats(RenderStats)}.
+     */
+    private long primaryRays;
+    private long secondaryRays;
+    private long shadowRays;
+    private long bounces;
+
+    public TraceContext(final long seed) {
+        sampler = new Sampler(seed);
+        ray = new Ray();
+        hitRecord = new HitRecord();
+        contribution = new Vector3D();
+        light = new Vector3D();
+        shadowRay = new Ray();
+        shadowHitRecord = new HitRecord();
+        directLight = new Vector3D();
+    }
+
+    /**
+     * Count rays traced at given bounce, bounce 0 are primary rays.
+     */
+    public void countRays(final int bounce, final int rays) {
+        if (bounce == 0) {
+            primaryRays += rays;
+        } else {
+            secondaryRays += rays;
+        }
+    }
+
+    public void countShadowRay() {
+        shadowRays++;
+    }
+
+    public void countBounce() {
+        bounces++;
+    }
+
+    /**
+     * Add work counted by this context to render statistics and start counting from zero.
+     */
+    public void flushStats(final RenderStats stats) {
+        stats.addWork(primaryRays, secondaryRays, shadowRays,
+                hitRecord.getIntersectionTests() + shadowHitRecord.getIntersectionTests(), bounces);
+        primaryRays = 0;
+        secondaryRays = 0;
+        shadowRays = 0;
+        bounces = 0;
+        hitRecord.setIntersectionTests(0);
+        shadowHitRecord.setIntersectionTests(0);
+    }
+}
@@ -0,0 +1,124 @@
+package cz.pk.traycer.pktracer.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of resolved frames from render thread to GUI. <br>
+ * Three frame buffers rotate between back (written by renderer), ready (last published frame)
+ * and front (shown by GUI). Producer and consumer exchange their buffer with the ready one by
+ * a single atomic swap, so neither of them ever waits and the consumer always gets the newest
+ * complete frame. Only one producer thread and one consumer thread may use the buffer. Region of viewport changed
+ * by the frame is published together with its buffer, so consumer always gets region of the buffer it acquired.
+ * Region of a buffer collects all frames written to it since consumer acquired it last time, frames skipped
+ * by consumer are not lost.
+ *
+ * <p>
+ * Buffers are direct and in native byte order, every pixel is one 0xAARRGGBB integer,
+ * so they can be shared with JavaFX without copying.
+ */
+public class TripleBuffer {
+    private static final int INDEX_MASK = 0b011;
+    private static final int FRESH = 0b100;
+
+    private final int width;
+    private final int height;
+    private final IntBuffer[] buffers = new IntBuffer[3];
+    /**
+     * Region changed in each buffer since consumer acquired it, owned together with the buffer. Published
+     * by the same atomic swap.
+     */
+    private final Tile[] regions = new Tile[3];
+    private Tile frontRegion;
+    /**
+     * Index of ready buffer and flag whether it holds frame not yet taken by consumer.
+     */
+    private final AtomicInteger ready = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    public TripleBuffer(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(width * height * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public IntBuffer getBuffer(final int index) {
+        return buffers[index];
+    }
+
+    /**
+     * Index of buffer owned by producer.
+     */
+    public int getBackIndex() {
+        return back;
+    }
+
+    /**
+     * Buffer owned by producer.
+     */
+    public IntBuffer getBack() {
+        return buffers[back];
+    }
+
+    /**
+     * Publish back buffer as the newest frame. Producer continues with another buffer.
+     *
+     * @param region Region of back buffer changed by the frame, null when frame didn't change it.
+     */
+    public void publish(final Tile region) {
+        if (regions[back] == null) {
+            regions[back] = region;
+        } else if (region != null) {
+            regions[back] = regions[back].union(region);
+        }
+        back = ready.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Take the newest published frame as front buffer.
+     *
+     * @return True when new frame was published since last acquire.
+     */
+    public boolean acquire() {
+        if ((ready.get() & FRESH) == 0) {
+            return false;
+        }
+        front = ready.getAndSet(front) & INDEX_MASK;
+        frontRegion = regions[front];
+        regions[front] = null;
+        return true;
+    }
+
+    /**
+     * Index of buffer owned by consumer.
+     */
+    public int getFrontIndex() {
+        return front;
+    }
+
+    public IntBuffer getFront() {
+        return buffers[front];
+    }
+
+    /**
+     * Region of front buffer changed since it was acquired last time, null when nothing changed.
+     */
+    public Tile getFrontRegion() {
+        return frontRegion;
+    }
+}
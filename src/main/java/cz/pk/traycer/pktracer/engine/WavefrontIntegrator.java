@@ -0,0 +1,348 @@
+package cz.pk.traycer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.sampling.Sampler;
+import cz.pk.traycer.pktracer.engine.stats.StageEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import static cz.pk.traycer.pktracer.engine.Constants.EPSILON;
+import static cz.pk.traycer.pktracer.engine.HitRecord.EMPTY_OBJECT_INDEX;
+
+/**
+ * Wavefront path tracing. Based on: <br>
+ * <a href="https://research.nvidia.com/publication/2013-07_megakernels-considered-harmful-wavefront-path-tracing-gpus">
+ * Megakernels Considered Harmful: Wavefront Path Tracing on GPUs</a>
+ *
+ * <p>
+ * Instead of tracing every path through all bounces, one frame runs separate stages over whole
+ * {@link RayQueue}: primary rays of all pixels are generated, then intersect, shade and compact
+ * stages repeat for every bounce until no path is alive, finally light of paths is accumulated.
+ * Every stage is split to chunks processed by render pool, its time is kept in {@link #getStageNanos},
+ * added to renderer statistics and reported as {@link StageEvent} to flight recorder.
+ * Pixels of tiles converged by adaptive sampling are compacted out of the queue right after generation.
+ * Shadow rays of next-event estimation are traced directly by the shade stage.
+ * Random numbers are taken per pixel, frame and bounce as in depth-first integrator, so both
+ * integrators produce the same image.
+ */
+public class WavefrontIntegrator {
+    /**
+     * Number of queue slots processed by one render pool task.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    public enum Stage {
+        GENERATE,
+        INTERSECT,
+        SHADE,
+        COMPACT,
+        ACCUMULATE
+    }
+
+    private final Renderer renderer;
+    private final long[] stageNanos = new long[Stage.values().length];
+
+    private RayQueue queue;
+    private RayQueue nextQueue;
+    /**
+     * Path state per pixel: product of albedos and gathered light.
+     */
+    private double[] contributionR;
+    private double[] contributionG;
+    private double[] contributionB;
+    private double[] lightR;
+    private double[] lightG;
+    private double[] lightB;
+    /**
+     * Solid angle density of direction of path ray, 0 for camera ray. Used for MIS weight of light it hits.
+     */
+    private double[] scatterPdfs;
+
+    public WavefrontIntegrator(final Renderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Time spent in given stage during last rendered frame.
+     *
+     * @param stage Integrator stage.
+     * @return Time in nanoseconds.
+     */
+    public long getStageNanos(final Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * Trace one sample of every pixel and accumulate it to renderer accumulation buffer.
+     */
+    public void render() {
+        ensureCapacity(renderer.getViewportWidth() * renderer.getViewportHeight());
+        for (Stage stage : Stage.values()) {
+            stageNanos[stage.ordinal()] = 0;
+        }
+
+        runStage(Stage.GENERATE, -1, this::generate);
+
+        if (renderer.getConvergedTileCount() > 0) {
+            runStage(Stage.COMPACT, -1, this::compact);
+        }
+
+        for (int bounce = 0; bounce < renderer.getMaxDepth() && queue.getSize() > 0 && !renderer.isCancelled(); bounce++) {
+            final int currentBounce = bounce;
+
+            runStage(Stage.INTERSECT, bounce, () -> forEachChunk(queue.getSize(),
+                    (from, to, context) -> intersect(from, to, currentBounce, context)));
+            runStage(Stage.SHADE, bounce, () -> forEachChunk(queue.getSize(),
+                    (from, to, context) -> shade(from, to, currentBounce, context)));
+            runStage(Stage.COMPACT, bounce, this::compact);
+        }
+
+        runStage(Stage.ACCUMULATE, -1, () -> {
+            forEachChunk(contributionR.length, (from, to, context) -> accumulate(from, to));
+            updateConvergence();
+        });
+    }
+
+    private void runStage(final Stage stage, final int bounce, final Runnable body) {
+        StageEvent event = new StageEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        body.run();
+
+        long nanos = System.nanoTime() - start;
+        stageNanos[stage.ordinal()] += nanos;
+        renderer.getStats().addStageNanos(stage, nanos);
+        if (event.shouldCommit()) {
+            event.stage = stage.name();
+            event.frameIndex = renderer.getFrameIndex();
+            event.bounce = bounce;
+            event.queueSize = queue.getSize();
+            event.commit();
+        }
+    }
+
+    private void ensureCapacity(final int pixelCount) {
+        if (queue != null && queue.getCapacity() == pixelCount) {
+            return;
+        }
+
+        queue = new RayQueue(pixelCount);
+        nextQueue = new RayQueue(pixelCount);
+        contributionR = new double[pixelCount];
+        contributionG = new double[pixelCount];
+        contributionB = new double[pixelCount];
+        lightR = new double[pixelCount];
+        lightG = new double[pixelCount];
+        lightB = new double[pixelCount];
+        scatterPdfs = new double[pixelCount];
+    }
+
+    /**
+     * Primary ray of every pixel, paths of converged pixels are generated dead.
+     */
+    private void generate() {
+        Camera camera = renderer.getCamera();
+        int pixelCount = queue.getCapacity();
+
+        forEachChunk(pixelCount, (from, to, context) -> {
+            Vector3D direction = context.getRay().getDirection();
+            for (int pixel = from; pixel < to; pixel++) {
+                queue.getPixelIndices()[pixel] = pixel;
+                queue.getAlive()[pixel] = !renderer.isConverged(pixel);
+                queue.storeRay(pixel, camera.getPosition(), camera.getRayDirection(pixel, direction));
+                contributionR[pixel] = 1.0;
+                contributionG[pixel] = 1.0;
+                contributionB[pixel] = 1.0;
+                lightR[pixel] = 0.0;
+                lightG[pixel] = 0.0;
+                lightB[pixel] = 0.0;
+                scatterPdfs[pixel] = 0.0;
+            }
+        });
+        queue.setSize(pixelCount);
+    }
+
+    private void intersect(final int from, final int to, final int bounce, TraceContext context) {
+        Ray ray = context.getRay();
+        HitRecord hitRecord = context.getHitRecord();
+        context.countRays(bounce, to - from);
+
+        for (int slot = from; slot < to; slot++) {
+            queue.loadRay(slot, ray);
+            hitRecord.restart();
+            renderer.getAccelerator().intersect(ray, hitRecord);
+            queue.storeHit(slot, hitRecord);
+        }
+    }
+
+    /**
+     * Apply material of hit and extend path by next ray written to the same slot.
+     */
+    private void shade(final int from, final int to, final int bounce, TraceContext context) {
+        Scene scene = renderer.getActiveScene();
+        Sampler sampler = context.getSampler();
+        Ray ray = context.getRay();
+        HitRecord hitRecord = context.getHitRecord();
+        boolean[] alive = queue.getAlive();
+
+        for (int slot = from; slot < to; slot++) {
+            if (EMPTY_OBJECT_INDEX == queue.getObjectIndices()[slot]) {
+                alive[slot] = false;
+                if (bounce == 0) {
+                    renderer.getFeatures().writeMiss(queue.getPixelIndices()[slot]);
+                }
+                continue;
+            }
+
+            queue.loadRay(slot, ray);
+            queue.loadHit(slot, hitRecord);
+            context.countBounce();
+            scene.getModels().get(hitRecord.getObjectIndex()).closestHit(ray, hitRecord);
+
+            int pixel = queue.getPixelIndices()[slot];
+            Material material = scene.getMaterials().get(hitRecord.getMaterialIndex());
+            Vector3D albedo = material.getAlbedo();
+            Vector3D emission = material.getEmission();
+            if (bounce == 0) {
+                renderer.getFeatures().write(pixel, albedo, hitRecord.getWorldNormal(), hitRecord.getDistance());
+            }
+
+            contributionR[pixel] *= albedo.getX();
+            contributionG[pixel] *= albedo.getY();
+            contributionB[pixel] *= albedo.getZ();
+            double emissionWeight = renderer.emissionWeight(
+                    hitRecord.getObjectIndex(), ray.getOrigin(), scatterPdfs[pixel]);
+            lightR[pixel] += emission.getX() * contributionR[pixel] * emissionWeight;
+            lightG[pixel] += emission.getY() * contributionG[pixel] * emissionWeight;
+            lightB[pixel] += emission.getZ() * contributionB[pixel] * emissionWeight;
+
+            alive[slot] = bounce + 1 < renderer.getMaxDepth();
+            if (!alive[slot]) {
+                continue;
+            }
+
+            Vector3D.mulAdd(hitRecord.getWorldPosition(), hitRecord.getWorldNormal(), EPSILON, ray.getOrigin());
+
+            sampler.startPixel(pixel, renderer.getFrameIndex());
+            sampler.startBounce(bounce + 1);
+            Vector3D direction = ray.getDirection();
+            Vector3D.normalizeInto(sampler.randomInUnitSphere(direction), direction);
+            Vector3D.addInto(hitRecord.getWorldNormal(), direction, direction);
+            Vector3D.normalizeInto(direction, direction);
+            scatterPdfs[pixel] = Renderer.scatterPdf(hitRecord.getWorldNormal(), direction);
+
+            Vector3D directLight = renderer.sampleLight(ray.getOrigin(), hitRecord.getWorldNormal(),
+                    contributionR[pixel], contributionG[pixel], contributionB[pixel], context);
+            lightR[pixel] += directLight.getX();
+            lightG[pixel] += directLight.getY();
+            lightB[pixel] += directLight.getZ();
+
+            double survival = renderer.survivalProbability(
+                    bounce + 1, contributionR[pixel], contributionG[pixel], contributionB[pixel]);
+            if (survival < 1.0) {
+                if (sampler.nextDouble() >= survival) {
+                    alive[slot] = false;
+                    continue;
+                }
+                double weight = 1.0 / survival;
+                contributionR[pixel] *= weight;
+                contributionG[pixel] *= weight;
+                contributionB[pixel] *= weight;
+            }
+
+            queue.storeRay(slot, ray.getOrigin(), direction);
+        }
+    }
+
+    /**
+     * Move rays of alive paths to the front of next queue, keeping their order. Chunks count alive
+     * paths first, then copy them in parallel from offsets given by prefix sum of counts.
+     */
+    private void compact() {
+        int size = queue.getSize();
+        int chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int[] offsets = new int[chunkCount + 1];
+        boolean[] alive = queue.getAlive();
+
+        forEachChunk(size, (from, to, context) -> {
+            int count = 0;
+            for (int slot = from; slot < to; slot++) {
+                if (alive[slot]) {
+                    count++;
+                }
+            }
+            offsets[from / CHUNK_SIZE + 1] = count;
+        });
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            offsets[chunk + 1] += offsets[chunk];
+        }
+
+        forEachChunk(size, (from, to, context) -> {
+            int target = offsets[from / CHUNK_SIZE];
+            for (int slot = from; slot < to; slot++) {
+                if (alive[slot]) {
+                    queue.moveRay(slot, nextQueue, target++);
+                }
+            }
+        });
+
+        nextQueue.setSize(offsets[chunkCount]);
+        RayQueue swap = queue;
+        queue = nextQueue;
+        nextQueue = swap;
+    }
+
+    private void accumulate(final int from, final int to) {
+        AccumulationBuffer accumulationData = renderer.getAccumulationData();
+
+        for (int pixel = from; pixel < to; pixel++) {
+            if (!renderer.isConverged(pixel)) {
+                accumulationData.accumulate(pixel, lightR[pixel], lightG[pixel], lightB[pixel]);
+            }
+            if (renderer.isResolved(pixel)) {
+                renderer.getViewportData().put(pixel, accumulationData.resolve(pixel));
+            }
+        }
+    }
+
+    private void updateConvergence() {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(renderer.getTiles().size());
+        for (int i = 0; i < renderer.getTiles().size(); i++) {
+            int tileIndex = i;
+            tasks.add(renderer.getRenderPool().submit(() -> renderer.updateConvergence(tileIndex)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        void run(int from, int to, TraceContext context);
+    }
+
+    /**
+     * Run task over range [0, size) split to {@link #CHUNK_SIZE} chunks on render pool and wait for all.
+     * Chunks not started before renderer is cancelled are skipped.
+     */
+    private void forEachChunk(final int size, final ChunkTask task) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        for (int from = 0; from < size; from += CHUNK_SIZE) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(size, from + CHUNK_SIZE);
+            tasks.add(renderer.getRenderPool().submit(() -> {
+                if (!renderer.isCancelled()) {
+                    TraceContext context = new TraceContext(renderer.getSeed());
+                    task.run(chunkFrom, chunkTo, context);
+                    context.flushStats(renderer.getStats());
+                }
+            }));
+        }
+        for (ForkJoinTask<?> chunk : tasks) {
+            chunk.join();
+        }
+    }
+}
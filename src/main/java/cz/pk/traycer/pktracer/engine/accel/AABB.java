@@ -0,0 +1,78 @@
+package cz.pk.traycer.pktracer.engine.accel;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Axis-aligned bounding box.
+ */
+@Data
+@AllArgsConstructor
+public class AABB {
+    private double minX;
+    private double minY;
+    private double minZ;
+    private double maxX;
+    private double maxY;
+    private double maxZ;
+
+    /**
+     * Construct empty box. Expanding it by any point or box gives that point or box.
+     */
+    public AABB() {
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        minZ = Double.POSITIVE_INFINITY;
+        maxX = Double.NEGATIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+        maxZ = Double.NEGATIVE_INFINITY;
+    }
+
+    public void expand(final double x, final double y, final double z) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
+    }
+
+    public void expand(final AABB box) {
+        minX = Math.min(minX, box.getMinX());
+        minY = Math.min(minY, box.getMinY());
+        minZ = Math.min(minZ, box.getMinZ());
+        maxX = Math.max(maxX, box.getMaxX());
+        maxY = Math.max(maxY, box.getMaxY());
+        maxZ = Math.max(maxZ, box.getMaxZ());
+    }
+
+    public double getMin(final int axis) {
+        return switch (axis) {
+            case 0 -> minX;
+            case 1 -> minY;
+            case 2 -> minZ;
+            default -> throw new IllegalArgumentException(
+                    String.format("Axis out of bounds. Fill 0 to 2 as axis value. Axis value=%d", axis));
+        };
+    }
+
+    public double getMax(final int axis) {
+        return switch (axis) {
+            case 0 -> maxX;
+            case 1 -> maxY;
+            case 2 -> maxZ;
+            default -> throw new IllegalArgumentException(
+                    String.format("Axis out of bounds. Fill 0 to 2 as axis value. Axis value=%d", axis));
+        };
+    }
+
+    public double surfaceArea() {
+        double dx = maxX - minX;
+        double dy = maxY - minY;
+        double dz = maxZ - minZ;
+        if (dx < 0.0 || dy < 0.0 || dz < 0.0) {
+            return 0.0;
+        }
+        return 2.0 * (dx * dy + dy * dz + dz * dx);
+    }
+}
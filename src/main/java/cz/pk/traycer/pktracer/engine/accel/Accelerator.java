@@ -0,0 +1,20 @@
+package cz.pk.traycer.pktracer.engine.accel;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+
+/**
+ * Closest-hit query over all models of a scene.
+ */
+public interface Accelerator {
+
+    /**
+     * Find closest intersection of ray with scene models. Distance, object index
+     * and material index of given hit record are updated only when a hit closer
+     * than current hit record distance is found.
+     *
+     * @param ray       Ray to intersect.
+     * @param hitRecord Hit record with current closest distance.
+     */
+    void intersect(final Ray ray, HitRecord hitRecord);
+}
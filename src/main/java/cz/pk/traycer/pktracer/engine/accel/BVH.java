@@ -0,0 +1,439 @@
+package cz.pk.traycer.pktracer.engine.accel;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Bounding volume hierarchy built with binned surface area heuristic. Based on: <br>
+ * <a href="https://jacco.ompf2.com/2022/04/18/how-to-build-a-bvh-part-3-quick-builds/">
+ * https://jacco.ompf2.com/2022/04/18/how-to-build-a-bvh-part-3-quick-builds/</a>
+ *
+ * <p>
+ * Hierarchy knows only bounds of primitives. Nodes are stored off-heap in one buffer of
+ * {@link #NODE_BYTES} byte records (6 float bounds, left child or first primitive, primitive count),
+ * children of inner node are always next to each other, root is node 0. Primitive itself is tested by
+ * {@link PrimitiveIntersector} given to {@link #intersect(Ray, double, HitRecord, PrimitiveIntersector)},
+ * so the same hierarchy serves scene models as well as triangles of one mesh.
+ */
+public class BVH {
+    /**
+     * Number of floats describing one box: minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    public static final int BOUNDS_STRIDE = 6;
+    /**
+     * Size of one node record in bytes.
+     */
+    public static final int NODE_BYTES = 32;
+
+    private static final int LEFT_FIRST_OFFSET = 24;
+    private static final int PRIMITIVE_COUNT_OFFSET = 28;
+
+    private static final int BIN_COUNT = 16;
+    private static final int MAX_LEAF_SIZE = 4;
+    private static final int MAX_DEPTH = 64;
+
+    @Getter
+    private final int primitiveCount;
+    @Getter
+    private final int nodeCount;
+    /**
+     * Node records. Left first is index of left child for inner node and index of first primitive
+     * for leaf; primitive count is 0 for inner node.
+     */
+    @Getter
+    private final ByteBuffer nodes;
+    @Getter
+    private final IntBuffer primitiveIndices;
+    /**
+     * Traversal stack reused by all rays of one thread. Nested hierarchies (mesh inside scene)
+     * are different instances, so they never share a stack.
+     */
+    private final ThreadLocal<int[]> traversalStack = ThreadLocal.withInitial(() -> new int[MAX_DEPTH]);
+
+    /**
+     * Wrap already built hierarchy.
+     *
+     * @param nodes            Node records, {@link #NODE_BYTES} bytes per node, native byte order.
+     * @param nodeCount        Number of nodes.
+     * @param primitiveIndices Primitive indices referenced from leaves.
+     * @param primitiveCount   Number of primitives.
+     */
+    public BVH(final ByteBuffer nodes, final int nodeCount, final IntBuffer primitiveIndices, final int primitiveCount) {
+        this.nodes = nodes;
+        this.nodeCount = nodeCount;
+        this.primitiveIndices = primitiveIndices;
+        this.primitiveCount = primitiveCount;
+    }
+
+    /**
+     * Store box to bounds array. Box is rounded outwards to float precision, so it still encloses
+     * the primitive.
+     */
+    public static void setBounds(float[] bounds, final int index, final AABB box) {
+        int offset = index * BOUNDS_STRIDE;
+        bounds[offset] = roundDown(box.getMinX());
+        bounds[offset + 1] = roundDown(box.getMinY());
+        bounds[offset + 2] = roundDown(box.getMinZ());
+        bounds[offset + 3] = roundUp(box.getMaxX());
+        bounds[offset + 4] = roundUp(box.getMaxY());
+        bounds[offset + 5] = roundUp(box.getMaxZ());
+    }
+
+    private static float roundDown(final double value) {
+        float result = (float) value;
+        return result > value ? Math.nextDown(result) : result;
+    }
+
+    private static float roundUp(final double value) {
+        float result = (float) value;
+        return result < value ? Math.nextUp(result) : result;
+    }
+
+    /**
+     * Build hierarchy over primitives with given bounds. Nodes are copied to buffers of given arena,
+     * build arrays are released when the build finishes.
+     *
+     * @param primitiveBounds Bounds of primitives, {@link #BOUNDS_STRIDE} floats per primitive.
+     * @param primitiveCount  Number of primitives.
+     * @param arena           Owner of node memory.
+     * @return Built hierarchy.
+     */
+    public static BVH build(final float[] primitiveBounds, final int primitiveCount, final GeometryArena arena) {
+        Builder builder = new Builder(primitiveBounds, primitiveCount);
+        builder.build();
+
+        ByteBuffer nodes = arena.allocate((long) builder.nodeCount * NODE_BYTES);
+        for (int node = 0; node < builder.nodeCount; node++) {
+            int offset = node * NODE_BYTES;
+            for (int i = 0; i < BOUNDS_STRIDE; i++) {
+                nodes.putFloat(offset + i * Float.BYTES, builder.nodeBounds[node * BOUNDS_STRIDE + i]);
+            }
+            nodes.putInt(offset + LEFT_FIRST_OFFSET, builder.nodeLeftFirst[node]);
+            nodes.putInt(offset + PRIMITIVE_COUNT_OFFSET, builder.nodePrimitiveCount[node]);
+        }
+
+        return new BVH(nodes, builder.nodeCount, arena.copyOf(builder.primitiveIndices), primitiveCount);
+    }
+
+    /**
+     * Bounds of whole hierarchy.
+     *
+     * @return Bounds of root node.
+     */
+    public AABB getBounds() {
+        return new AABB(
+                nodes.getFloat(0), nodes.getFloat(4), nodes.getFloat(8),
+                nodes.getFloat(12), nodes.getFloat(16), nodes.getFloat(20));
+    }
+
+    /**
+     * Find closest primitive hit. Nodes farther than current hit record distance are skipped,
+     * near child is visited first.
+     *
+     * @param ray         Ray to intersect.
+     * @param rayTMin     Minimal hit distance passed to primitive intersection.
+     * @param hitRecord   Hit record with current closest distance.
+     * @param intersector Intersection of ray with primitive stored in leaf.
+     */
+    public void intersect(final Ray ray, final double rayTMin, HitRecord hitRecord,
+                          final PrimitiveIntersector intersector) {
+        if (primitiveCount == 0) {
+            return;
+        }
+
+        Vector3D origin = ray.getOrigin();
+        Vector3D direction = ray.getDirection();
+        double originX = origin.getX();
+        double originY = origin.getY();
+        double originZ = origin.getZ();
+        double inverseX = 1.0 / direction.getX();
+        double inverseY = 1.0 / direction.getY();
+        double inverseZ = 1.0 / direction.getZ();
+
+        int[] stack = traversalStack.get();
+        int stackSize = 0;
+        int node = 0;
+
+        if (slab(node, originX, originY, originZ, inverseX, inverseY, inverseZ) >= hitRecord.getDistance()) {
+            return;
+        }
+
+        while (true) {
+            int offset = node * NODE_BYTES;
+            int count = nodes.getInt(offset + PRIMITIVE_COUNT_OFFSET);
+            if (count > 0) {
+                int first = nodes.getInt(offset + LEFT_FIRST_OFFSET);
+                hitRecord.setIntersectionTests(hitRecord.getIntersectionTests() + count);
+                for (int i = first; i < first + count; i++) {
+                    intersector.intersect(primitiveIndices.get(i), ray, rayTMin, hitRecord);
+                }
+            } else {
+                int near = nodes.getInt(offset + LEFT_FIRST_OFFSET);
+                int far = near + 1;
+                double nearDistance = slab(near, originX, originY, originZ, inverseX, inverseY, inverseZ);
+                double farDistance = slab(far, originX, originY, originZ, inverseX, inverseY, inverseZ);
+                if (farDistance < nearDistance) {
+                    int swapNode = near;
+                    near = far;
+                    far = swapNode;
+                    double swapDistance = nearDistance;
+                    nearDistance = farDistance;
+                    farDistance = swapDistance;
+                }
+
+                if (nearDistance < hitRecord.getDistance()) {
+                    if (farDistance < hitRecord.getDistance()) {
+                        stack[stackSize++] = far;
+                    }
+                    node = near;
+                    continue;
+                }
+            }
+
+            // Pop next node which may still contain closer hit
+            node = -1;
+            while (stackSize > 0) {
+                int candidate = stack[--stackSize];
+                if (slab(candidate, originX, originY, originZ, inverseX, inverseY, inverseZ) < hitRecord.getDistance()) {
+                    node = candidate;
+                    break;
+                }
+            }
+            if (node < 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ray - box slab test.
+     *
+     * @return Entry distance of ray to node box (0 when origin is inside) or positive infinity on miss.
+     */
+    private double slab(final int node,
+                        final double originX, final double originY, final double originZ,
+                        final double inverseX, final double inverseY, final double inverseZ) {
+        int offset = node * NODE_BYTES;
+
+        double tx1 = (nodes.getFloat(offset) - originX) * inverseX;
+        double tx2 = (nodes.getFloat(offset + 12) - originX) * inverseX;
+        double tMin = Math.min(tx1, tx2);
+        double tMax = Math.max(tx1, tx2);
+
+        double ty1 = (nodes.getFloat(offset + 4) - originY) * inverseY;
+        double ty2 = (nodes.getFloat(offset + 16) - originY) * inverseY;
+        tMin = Math.max(tMin, Math.min(ty1, ty2));
+        tMax = Math.min(tMax, Math.max(ty1, ty2));
+
+        double tz1 = (nodes.getFloat(offset + 8) - originZ) * inverseZ;
+        double tz2 = (nodes.getFloat(offset + 20) - originZ) * inverseZ;
+        tMin = Math.max(tMin, Math.min(tz1, tz2));
+        tMax = Math.min(tMax, Math.max(tz1, tz2));
+
+        if (tMax >= Math.max(tMin, 0.0)) {
+            return Math.max(tMin, 0.0);
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Heap build state. Lives only during {@link #build(float[], int, GeometryArena)}.
+     */
+    private static class Builder {
+        private final float[] primitiveBounds;
+        private final float[] centroids;
+        private final float[] nodeBounds;
+        private final int[] nodeLeftFirst;
+        private final int[] nodePrimitiveCount;
+        private final int[] primitiveIndices;
+        private int nodeCount;
+
+        private Builder(final float[] primitiveBounds, final int primitiveCount) {
+            int maxNodes = Math.max(1, 2 * primitiveCount - 1);
+
+            this.primitiveBounds = primitiveBounds;
+            this.centroids = new float[primitiveCount * 3];
+            this.nodeBounds = new float[maxNodes * BOUNDS_STRIDE];
+            this.nodeLeftFirst = new int[maxNodes];
+            this.nodePrimitiveCount = new int[maxNodes];
+            this.primitiveIndices = new int[primitiveCount];
+
+            for (int i = 0; i < primitiveCount; i++) {
+                int offset = i * BOUNDS_STRIDE;
+                centroids[i * 3] = 0.5f * (primitiveBounds[offset] + primitiveBounds[offset + 3]);
+                centroids[i * 3 + 1] = 0.5f * (primitiveBounds[offset + 1] + primitiveBounds[offset + 4]);
+                centroids[i * 3 + 2] = 0.5f * (primitiveBounds[offset + 2] + primitiveBounds[offset + 5]);
+                primitiveIndices[i] = i;
+            }
+        }
+
+        private void build() {
+            nodeCount = 1;
+            nodeLeftFirst[0] = 0;
+            nodePrimitiveCount[0] = primitiveIndices.length;
+            updateNodeBounds(0);
+            subdivide(0, 1);
+        }
+
+        private void updateNodeBounds(final int node) {
+            int offset = node * BOUNDS_STRIDE;
+            nodeBounds[offset] = Float.POSITIVE_INFINITY;
+            nodeBounds[offset + 1] = Float.POSITIVE_INFINITY;
+            nodeBounds[offset + 2] = Float.POSITIVE_INFINITY;
+            nodeBounds[offset + 3] = Float.NEGATIVE_INFINITY;
+            nodeBounds[offset + 4] = Float.NEGATIVE_INFINITY;
+            nodeBounds[offset + 5] = Float.NEGATIVE_INFINITY;
+
+            int first = nodeLeftFirst[node];
+            for (int i = first; i < first + nodePrimitiveCount[node]; i++) {
+                int primitiveOffset = primitiveIndices[i] * BOUNDS_STRIDE;
+                for (int axis = 0; axis < 3; axis++) {
+                    nodeBounds[offset + axis] = Math.min(nodeBounds[offset + axis],
+                            primitiveBounds[primitiveOffset + axis]);
+                    nodeBounds[offset + 3 + axis] = Math.max(nodeBounds[offset + 3 + axis],
+                            primitiveBounds[primitiveOffset + 3 + axis]);
+                }
+            }
+        }
+
+        private void subdivide(final int node, final int depth) {
+            int first = nodeLeftFirst[node];
+            int count = nodePrimitiveCount[node];
+            if (count <= MAX_LEAF_SIZE || depth >= MAX_DEPTH) {
+                return;
+            }
+
+            float[] centroidMin = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+            float[] centroidMax = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            for (int i = first; i < first + count; i++) {
+                int primitive = primitiveIndices[i];
+                for (int axis = 0; axis < 3; axis++) {
+                    centroidMin[axis] = Math.min(centroidMin[axis], centroids[primitive * 3 + axis]);
+                    centroidMax[axis] = Math.max(centroidMax[axis], centroids[primitive * 3 + axis]);
+                }
+            }
+
+            // Find cheapest split plane between bins on all three axes
+            int bestAxis = -1;
+            int bestSplit = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+
+            int[] binCount = new int[BIN_COUNT];
+            AABB[] binBounds = new AABB[BIN_COUNT];
+            double[] leftArea = new double[BIN_COUNT - 1];
+            int[] leftCount = new int[BIN_COUNT - 1];
+
+            for (int axis = 0; axis < 3; axis++) {
+                double extent = centroidMax[axis] - centroidMin[axis];
+                if (extent <= 0.0) {
+                    continue;
+                }
+                double scale = BIN_COUNT / extent;
+
+                for (int bin = 0; bin < BIN_COUNT; bin++) {
+                    binCount[bin] = 0;
+                    binBounds[bin] = new AABB();
+                }
+                for (int i = first; i < first + count; i++) {
+                    int primitive = primitiveIndices[i];
+                    int bin = binIndex(centroids[primitive * 3 + axis], centroidMin[axis], scale);
+                    binCount[bin]++;
+                    expand(binBounds[bin], primitive);
+                }
+
+                AABB sweep = new AABB();
+                int sweepCount = 0;
+                for (int split = 0; split < BIN_COUNT - 1; split++) {
+                    sweepCount += binCount[split];
+                    sweep.expand(binBounds[split]);
+                    leftCount[split] = sweepCount;
+                    leftArea[split] = sweep.surfaceArea();
+                }
+
+                sweep = new AABB();
+                sweepCount = 0;
+                for (int split = BIN_COUNT - 2; split >= 0; split--) {
+                    sweepCount += binCount[split + 1];
+                    sweep.expand(binBounds[split + 1]);
+                    if (leftCount[split] == 0 || sweepCount == 0) {
+                        continue;
+                    }
+                    double cost = leftCount[split] * leftArea[split] + sweepCount * sweep.surfaceArea();
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = axis;
+                        bestSplit = split;
+                    }
+                }
+            }
+
+            int middle;
+            if (bestAxis < 0) {
+                // All centroids are in one point, split primitives by count
+                middle = first + count / 2;
+            } else {
+                double leafCost = count * nodeSurfaceArea(node);
+                if (bestCost >= leafCost && count <= 2 * MAX_LEAF_SIZE) {
+                    return;
+                }
+
+                double scale = BIN_COUNT / (double) (centroidMax[bestAxis] - centroidMin[bestAxis]);
+                int i = first;
+                int j = first + count - 1;
+                while (i <= j) {
+                    int primitive = primitiveIndices[i];
+                    if (binIndex(centroids[primitive * 3 + bestAxis], centroidMin[bestAxis], scale) <= bestSplit) {
+                        i++;
+                    } else {
+                        primitiveIndices[i] = primitiveIndices[j];
+                        primitiveIndices[j--] = primitive;
+                    }
+                }
+                middle = i;
+            }
+
+            int leftCountTotal = middle - first;
+            if (leftCountTotal == 0 || leftCountTotal == count) {
+                return;
+            }
+
+            int left = nodeCount;
+            nodeCount += 2;
+
+            nodeLeftFirst[left] = first;
+            nodePrimitiveCount[left] = leftCountTotal;
+            nodeLeftFirst[left + 1] = middle;
+            nodePrimitiveCount[left + 1] = count - leftCountTotal;
+            nodeLeftFirst[node] = left;
+            nodePrimitiveCount[node] = 0;
+
+            updateNodeBounds(left);
+            updateNodeBounds(left + 1);
+            subdivide(left, depth + 1);
+            subdivide(left + 1, depth + 1);
+        }
+
+        private static int binIndex(final double centroid, final double min, final double scale) {
+            return Math.min(BIN_COUNT - 1, (int) ((centroid - min) * scale));
+        }
+
+        private void expand(AABB box, final int primitive) {
+            int offset = primitive * BOUNDS_STRIDE;
+            box.expand(primitiveBounds[offset], primitiveBounds[offset + 1], primitiveBounds[offset + 2]);
+            box.expand(primitiveBounds[offset + 3], primitiveBounds[offset + 4], primitiveBounds[offset + 5]);
+        }
+
+        private double nodeSurfaceArea(final int node) {
+            int offset = node * BOUNDS_STRIDE;
+            return new AABB(
+                    nodeBounds[offset], nodeBounds[offset + 1], nodeBounds[offset + 2],
+                    nodeBounds[offset + 3], nodeBounds[offset + 4], nodeBounds[offset + 5]).surfaceArea();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cz.pk.traycer.pktracer.engine.accel;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.shapes.Hittable;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Bounding volume hierarchy over scene models.
+ */
+public class BVHAccelerator implements Accelerator {
+    private final List<Hittable> models;
+    @Getter
+    private final BVH bvh;
+    private final PrimitiveIntersector modelIntersector;
+
+    public BVHAccelerator(final List<Hittable> models, GeometryArena arena) {
+        this(models, build(models, arena));
+    }
+
+    /**
+     * Use already built hierarchy, e.g. loaded from scene cache.
+     *
+     * @param models Scene models.
+     * @param bvh    Hierarchy over bounds of models, primitive index is index of model.
+     */
+    public BVHAccelerator(final List<Hittable> models, final BVH bvh) {
+        if (bvh.getPrimitiveCount() != models.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Hierarchy doesn't match models. Primitive count=%d, models count=%d",
+                    bvh.getPrimitiveCount(), models.size()));
+        }
+        this.models = models;
+        this.bvh = bvh;
+        this.modelIntersector = (primitiveIndex, ray, rayTMin, hitRecord) ->
+                this.models.get(primitiveIndex).hit(ray, rayTMin, hitRecord.getDistance(), hitRecord);
+    }
+
+    /**
+     * Build hierarchy over bounds of scene models.
+     *
+     * @param models Scene models.
+     * @param arena  Owner of node memory.
+     * @return Built hierarchy.
+     */
+    public static BVH build(final List<Hittable> models, GeometryArena arena) {
+        float[] bounds = new float[models.size() * BVH.BOUNDS_STRIDE];
+        for (int i = 0; i < models.size(); i++) {
+            BVH.setBounds(bounds, i, models.get(i).getBounds());
+        }
+        return BVH.build(bounds, models.size(), arena);
+    }
+
+    @Override
+    public void intersect(final Ray ray, HitRecord hitRecord) {
+        bvh.intersect(ray, HitRecord.MIN_DISTANCE_VALUE, hitRecord, modelIntersector);
+    }
+}
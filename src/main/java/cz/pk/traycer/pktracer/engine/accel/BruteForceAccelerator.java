@@ -0,0 +1,41 @@
+package cz.pk.traycer.pktracer.engine.accel;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.shapes.Hittable;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.shapes.SphereBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests ray against every model. Reference implementation and fallback for tiny scenes. <br>
+ * Spheres are tested together in one {@link SphereBatch}, other models through {@link Hittable#hit}.
+ */
+public class BruteForceAccelerator implements Accelerator {
+    private final SphereBatch spheres;
+    private final List<Hittable> otherModels;
+
+    public BruteForceAccelerator(final List<Hittable> models) {
+        List<Sphere> sphereModels = new ArrayList<>();
+        otherModels = new ArrayList<>();
+        for (Hittable model : models) {
+            if (model instanceof Sphere sphere) {
+                sphereModels.add(sphere);
+            } else {
+                otherModels.add(model);
+            }
+        }
+        spheres = new SphereBatch(sphereModels);
+    }
+
+    @Override
+    public void intersect(final Ray ray, HitRecord hitRecord) {
+        hitRecord.setIntersectionTests(hitRecord.getIntersectionTests() + spheres.getSize() + otherModels.size());
+        spheres.hit(ray, HitRecord.MIN_DISTANCE_VALUE, hitRecord.getDistance(), hitRecord);
+        for (Hittable model : otherModels) {
+            model.hit(ray, HitRecord.MIN_DISTANCE_VALUE, hitRecord.getDistance(), hitRecord);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package cz.pk.traycer.pktracer.engine.accel;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+
+/**
+ * Intersection of ray with one primitive referenced from {@link BVH} leaf.
+ */
+@FunctionalInterface
+public interface PrimitiveIntersector {
+    void intersect(final int primitiveIndex, final Ray ray, final double rayTMin, HitRecord hitRecord);
+}
@@ -0,0 +1,250 @@
+package cz.pk.traycer.pktracer.engine.denoise;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Tile;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Edge-avoiding a-trous wavelet filter. Based on: <br>
+ * <a href="https://jo.dreggn.org/home/2010_atrous.pdf">
+ * Dammertz et al.: Edge-Avoiding A-Trous Wavelet Transform for fast Global Illumination Filtering</a>
+ *
+ * <p>
+ * Mean color of accumulation buffer is divided by first-hit albedo, so the filter blurs only illumination and
+ * keeps color edges of materials. Every iteration applies 5x5 B3 spline kernel with holes of doubled size,
+ * weights of neighbours fall off with difference of illumination, normal, depth and albedo from the center pixel.
+ * Iterations run over tiles in parallel, every tile reads previous iteration and writes only its own pixels.
+ */
+public class ATrousDenoiser {
+    public static final int DEFAULT_ITERATIONS = 5;
+    public static final double DEFAULT_COLOR_SIGMA = 0.6;
+    public static final double DEFAULT_NORMAL_SIGMA = 0.3;
+    public static final double DEFAULT_DEPTH_SIGMA = 0.05;
+    public static final double DEFAULT_ALBEDO_SIGMA = 0.1;
+    private static final double[] KERNEL = {1.0 / 16.0, 1.0 / 4.0, 3.0 / 8.0, 1.0 / 4.0, 1.0 / 16.0};
+    /**
+     * Albedo below this value is not divided out, illumination of nearly black surfaces would explode.
+     */
+    private static final double MIN_ALBEDO = 0.01;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    @Setter
+    private int iterations;
+    /**
+     * Widths of edge-stopping functions. Color sigma is halved in every iteration, as coarse levels see
+     * already smoothed illumination.
+     */
+    @Getter
+    @Setter
+    private double colorSigma;
+    @Getter
+    @Setter
+    private double normalSigma;
+    @Getter
+    @Setter
+    private double depthSigma;
+    @Getter
+    @Setter
+    private double albedoSigma;
+
+    /**
+     * Illumination ping-pong buffers, index 0 or 1 selects iteration input.
+     */
+    private final double[][] red;
+    private final double[][] green;
+    private final double[][] blue;
+    private final double[] modulationR;
+    private final double[] modulationG;
+    private final double[] modulationB;
+
+    public ATrousDenoiser(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        iterations = DEFAULT_ITERATIONS;
+        colorSigma = DEFAULT_COLOR_SIGMA;
+        normalSigma = DEFAULT_NORMAL_SIGMA;
+        depthSigma = DEFAULT_DEPTH_SIGMA;
+        albedoSigma = DEFAULT_ALBEDO_SIGMA;
+
+        int pixelCount = width * height;
+        red = new double[2][pixelCount];
+        green = new double[2][pixelCount];
+        blue = new double[2][pixelCount];
+        modulationR = new double[pixelCount];
+        modulationG = new double[pixelCount];
+        modulationB = new double[pixelCount];
+    }
+
+    /**
+     * Filter mean color of input and store it to output as one sample per pixel.
+     *
+     * @param input    Accumulated samples.
+     * @param features First-hit features of the same viewport.
+     * @param tiles    Tiles covering the viewport, processed in parallel.
+     * @param pool     Pool processing tiles.
+     * @param output   Buffer of the same size receiving filtered color, its samples are replaced.
+     */
+    public void denoise(final AccumulationBuffer input, final FeatureBuffer features, final List<Tile> tiles,
+                        final ForkJoinPool pool, AccumulationBuffer output) {
+        if (input.getWidth() != width || input.getHeight() != height
+                || features.getWidth() != width || features.getHeight() != height
+                || output.getWidth() != width || output.getHeight() != height) {
+            throw new IllegalArgumentException(String.format(
+                    "Buffers differ from denoiser size. Denoiser width value=%d, height value=%d", width, height));
+        }
+
+        forEachTile(tiles, pool, tile -> demodulate(input, features, tile));
+        int source = 0;
+        for (int i = 0; i < iterations; i++) {
+            int from = source;
+            int step = 1 << i;
+            double iterationColorSigma = colorSigma / step;
+            forEachTile(tiles, pool, tile -> filter(features, tile, from, step, iterationColorSigma));
+            source = 1 - source;
+        }
+        int result = source;
+        forEachTile(tiles, pool, tile -> modulate(tile, result, output));
+    }
+
+    private void demodulate(final AccumulationBuffer input, final FeatureBuffer features, final Tile tile) {
+        DoubleBuffer inputRed = input.getRed();
+        DoubleBuffer inputGreen = input.getGreen();
+        DoubleBuffer inputBlue = input.getBlue();
+        IntBuffer sampleCounts = input.getSampleCounts();
+        float[] albedo = features.getAlbedo();
+
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                int index = x + y * width;
+                int count = sampleCounts.get(index);
+                double scale = count == 0 ? 0.0 : 1.0 / count;
+
+                modulationR[index] = albedo[index * 3] < MIN_ALBEDO ? 1.0 : albedo[index * 3];
+                modulationG[index] = albedo[index * 3 + 1] < MIN_ALBEDO ? 1.0 : albedo[index * 3 + 1];
+                modulationB[index] = albedo[index * 3 + 2] < MIN_ALBEDO ? 1.0 : albedo[index * 3 + 2];
+                red[0][index] = inputRed.get(index) * scale / modulationR[index];
+                green[0][index] = inputGreen.get(index) * scale / modulationG[index];
+                blue[0][index] = inputBlue.get(index) * scale / modulationB[index];
+            }
+        }
+    }
+
+    private void filter(final FeatureBuffer features, final Tile tile, final int source, final int step,
+                        final double iterationColorSigma) {
+        double[] sourceRed = red[source];
+        double[] sourceGreen = green[source];
+        double[] sourceBlue = blue[source];
+        double[] targetRed = red[1 - source];
+        double[] targetGreen = green[1 - source];
+        double[] targetBlue = blue[1 - source];
+        float[] albedo = features.getAlbedo();
+        float[] normal = features.getNormal();
+        float[] depth = features.getDepth();
+        double colorFactor = -1.0 / (iterationColorSigma * iterationColorSigma);
+        double normalFactor = -1.0 / (normalSigma * normalSigma);
+        double depthFactor = -1.0 / (depthSigma * depthSigma);
+        double albedoFactor = -1.0 / (albedoSigma * albedoSigma);
+
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                int center = x + y * width;
+                double centerR = sourceRed[center];
+                double centerG = sourceGreen[center];
+                double centerB = sourceBlue[center];
+                double centerDepth = depth[center];
+
+                double sumR = 0.0;
+                double sumG = 0.0;
+                double sumB = 0.0;
+                double sumWeight = 0.0;
+                for (int ky = 0; ky < KERNEL.length; ky++) {
+                    int sampleY = y + (ky - 2) * step;
+                    if (sampleY < 0 || sampleY >= height) {
+                        continue;
+                    }
+                    for (int kx = 0; kx < KERNEL.length; kx++) {
+                        int sampleX = x + (kx - 2) * step;
+                        if (sampleX < 0 || sampleX >= width) {
+                            continue;
+                        }
+
+                        int sample = sampleX + sampleY * width;
+                        double colorDistance = squared(sourceRed[sample] - centerR)
+                                + squared(sourceGreen[sample] - centerG)
+                                + squared(sourceBlue[sample] - centerB);
+                        double normalDistance = squaredDistance(normal, sample, center);
+                        double albedoDistance = squaredDistance(albedo, sample, center);
+                        double depthScale = Math.max(Math.max(centerDepth, depth[sample]), 1.0e-6);
+                        double depthDistance = squared((depth[sample] - centerDepth) / depthScale);
+
+                        double weight = KERNEL[kx] * KERNEL[ky] * Math.exp(colorDistance * colorFactor
+                                + normalDistance * normalFactor
+                                + depthDistance * depthFactor
+                                + albedoDistance * albedoFactor);
+                        sumR += sourceRed[sample] * weight;
+                        sumG += sourceGreen[sample] * weight;
+                        sumB += sourceBlue[sample] * weight;
+                        sumWeight += weight;
+                    }
+                }
+
+                // Center pixel has weight of its kernel value, sum is never zero
+                targetRed[center] = sumR / sumWeight;
+                targetGreen[center] = sumG / sumWeight;
+                targetBlue[center] = sumB / sumWeight;
+            }
+        }
+    }
+
+    private void modulate(final Tile tile, final int source, AccumulationBuffer output) {
+        output.clear(tile);
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                int index = x + y * width;
+                double r = red[source][index] * modulationR[index];
+                double g = green[source][index] * modulationG[index];
+                double b = blue[source][index] * modulationB[index];
+                output.merge(index, r, g, b, squared(AccumulationBuffer.luminance(r, g, b)), 1);
+            }
+        }
+    }
+
+    private static double squared(final double value) {
+        return value * value;
+    }
+
+    private static double squaredDistance(final float[] values, final int index, final int otherIndex) {
+        int offset = index * 3;
+        int otherOffset = otherIndex * 3;
+        return squared(values[offset] - values[otherOffset])
+                + squared(values[offset + 1] - values[otherOffset + 1])
+                + squared(values[offset + 2] - values[otherOffset + 2]);
+    }
+
+    @FunctionalInterface
+    private interface TileTask {
+        void run(Tile tile);
+    }
+
+    private static void forEachTile(final List<Tile> tiles, final ForkJoinPool pool, final TileTask task) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(tiles.size());
+        for (Tile tile : tiles) {
+            tasks.add(pool.submit(() -> task.run(tile)));
+        }
+        for (ForkJoinTask<?> tileTask : tasks) {
+            tileTask.join();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cz.pk.traycer.pktracer.engine.denoise;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import lombok.Getter;
+
+/**
+ * Albedo, normal and depth of first hit of every pixel, written by integrators and guiding {@link ATrousDenoiser}.
+ * Camera rays are not jittered, so features of a pixel are the same in every frame and are simply overwritten.
+ * Pixel whose camera ray missed the scene has zero albedo, normal and depth.
+ */
+@Getter
+public class FeatureBuffer {
+    private final int width;
+    private final int height;
+    /**
+     * Components x, y, z per pixel.
+     */
+    private final float[] albedo;
+    private final float[] normal;
+    /**
+     * Distance of first hit along camera ray.
+     */
+    private final float[] depth;
+
+    public FeatureBuffer(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        albedo = new float[width * height * 3];
+        normal = new float[width * height * 3];
+        depth = new float[width * height];
+    }
+
+    public void write(final int index, final Vector3D albedo, final Vector3D normal, final double depth) {
+        int offset = index * 3;
+        this.albedo[offset] = (float) albedo.getX();
+        this.albedo[offset + 1] = (float) albedo.getY();
+        this.albedo[offset + 2] = (float) albedo.getZ();
+        this.normal[offset] = (float) normal.getX();
+        this.normal[offset + 1] = (float) normal.getY();
+        this.normal[offset + 2] = (float) normal.getZ();
+        this.depth[index] = (float) depth;
+    }
+
+    public void writeMiss(final int index) {
+        int offset = index * 3;
+        for (int i = offset; i < offset + 3; i++) {
+            albedo[i] = 0.0f;
+            normal[i] = 0.0f;
+        }
+        depth[index] = 0.0f;
+    }
+}
@@ -0,0 +1,45 @@
+package cz.pk.traycer.pktracer.engine.distributed;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Frame rendered by {@link TileCoordinator}, sent to every worker when it connects.
+ */
+@Data
+@AllArgsConstructor
+public class RenderJob {
+    private int width;
+    private int height;
+    private int samplesPerPixel;
+    private long seed;
+    private int tileSize;
+    private int maxDepth;
+    private int rouletteMinDepth;
+    private boolean nextEventEstimation;
+    /**
+     * {@link cz.pk.traycer.pktracer.engine.Scene#contentHash()} of rendered scene, worker refuses other scene.
+     */
+    private long sceneHash;
+
+    public void write(final DataOutputStream output) throws IOException {
+        output.writeInt(width);
+        output.writeInt(height);
+        output.writeInt(samplesPerPixel);
+        output.writeLong(seed);
+        output.writeInt(tileSize);
+        output.writeInt(maxDepth);
+        output.writeInt(rouletteMinDepth);
+        output.writeBoolean(nextEventEstimation);
+        output.writeLong(sceneHash);
+    }
+
+    public static RenderJob read(final DataInputStream input) throws IOException {
+        return new RenderJob(input.readInt(), input.readInt(), input.readInt(), input.readLong(), input.readInt(),
+                input.readInt(), input.readInt(), input.readBoolean(), input.readLong());
+    }
+}
@@ -0,0 +1,218 @@
+package cz.pk.traycer.pktracer.engine.distributed;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Tile;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Render frame by {@link TileWorker} processes connected over TCP. <br>
+ * Frame is split to tiles, every worker takes the next pending tile, traces all samples of its pixels
+ * and sends back accumulated values, which are merged to accumulation buffer of the coordinator.
+ * Work unit is a whole tile with all samples, so pixels are accumulated in the same order as in
+ * a single process and merged image equals single process render of the same seed.
+ *
+ * <p>
+ * Worker which disconnects, fails or doesn't answer within worker timeout loses its tile, which returns
+ * to pending tiles for other workers. Workers may connect at any time until the frame is complete.
+ *
+ * <p>
+ * Protocol: coordinator sends {@link RenderJob}, then {@link #TILE} messages (tile index, x, y, width, height),
+ * each answered by tile index and red, green, blue, luminance squared and sample count of every pixel
+ * of the tile in row order. {@link #DONE} ends the connection.
+ *
+ * <p>
+ * Lost workers and other connection failures are reported to events consumer, coordinator itself doesn't print.
+ */
+public class TileCoordinator implements AutoCloseable {
+    public static final byte TILE = 1;
+    public static final byte DONE = 2;
+    public static final int DEFAULT_WORKER_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final long POLL_MILLIS = 100;
+
+    private final RenderJob job;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final List<Tile> tiles;
+    private final BlockingQueue<Integer> pendingTiles = new LinkedBlockingQueue<>();
+    private final CountDownLatch remainingTiles;
+    private final Consumer<String> events;
+    @Getter
+    private final AccumulationBuffer accumulationData;
+    @Getter
+    private final AtomicInteger reassignedTiles = new AtomicInteger();
+    @Getter
+    @Setter
+    private int workerTimeoutMillis = DEFAULT_WORKER_TIMEOUT_MILLIS;
+
+    /**
+     * @param job  Rendered frame.
+     * @param port Listening port, 0 picks free port, see {@link #getPort()}.
+     */
+    public TileCoordinator(final RenderJob job, final int port) throws IOException {
+        this(job, port, message -> {
+        });
+    }
+
+    /**
+     * @param job    Rendered frame.
+     * @param port   Listening port, 0 picks free port, see {@link #getPort()}.
+     * @param events Consumer of messages about failed and lost workers, called from connection threads.
+     */
+    public TileCoordinator(final RenderJob job, final int port, final Consumer<String> events) throws IOException {
+        this.job = job;
+        this.events = events;
+        this.serverSocket = new ServerSocket(port);
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "tile-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.tiles = Tile.split(job.getWidth(), job.getHeight(), job.getTileSize());
+        this.remainingTiles = new CountDownLatch(tiles.size());
+        this.accumulationData = new AccumulationBuffer(job.getWidth(), job.getHeight());
+
+        for (int i = 0; i < tiles.size(); i++) {
+            pendingTiles.add(i);
+        }
+        connections.execute(this::acceptWorkers);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Wait until all tiles are rendered by workers and merged.
+     *
+     * @return Accumulated samples of the whole frame.
+     */
+    public AccumulationBuffer await() throws InterruptedException {
+        remainingTiles.await();
+        return accumulationData;
+    }
+
+    private void acceptWorkers() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serveWorker(socket));
+            } catch (SocketException e) {
+                // Server socket closed
+                return;
+            } catch (IOException e) {
+                events.accept("Worker connection failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void serveWorker(final Socket socket) {
+        Integer tileIndex = null;
+
+        try (socket) {
+            socket.setSoTimeout(workerTimeoutMillis);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            job.write(output);
+            output.flush();
+
+            while (remainingTiles.getCount() > 0) {
+                tileIndex = pendingTiles.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (tileIndex == null) {
+                    continue;
+                }
+
+                Tile tile = tiles.get(tileIndex);
+                output.writeByte(TILE);
+                output.writeInt(tileIndex);
+                output.writeInt(tile.getX());
+                output.writeInt(tile.getY());
+                output.writeInt(tile.getWidth());
+                output.writeInt(tile.getHeight());
+                output.flush();
+
+                double[] values = readTile(input, tileIndex, tile);
+                mergeTile(tile, values);
+                tileIndex = null;
+                remainingTiles.countDown();
+            }
+
+            output.writeByte(DONE);
+            output.flush();
+        } catch (IOException e) {
+            events.accept("Worker " + socket.getRemoteSocketAddress() + " lost: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (tileIndex != null) {
+                reassignedTiles.incrementAndGet();
+                pendingTiles.add(tileIndex);
+            }
+        }
+    }
+
+    /**
+     * Read whole answer before merging, so tile of failed worker leaves no partial samples.
+     *
+     * @return Red, green, blue, luminance squared and sample count per pixel.
+     */
+    private double[] readTile(final DataInputStream input, final int tileIndex, final Tile tile) throws IOException {
+        int answeredTile = input.readInt();
+        if (answeredTile != tileIndex) {
+            throw new IOException(String.format(
+                    "Worker answered different tile. Expected tile value=%d, tile value=%d", tileIndex, answeredTile));
+        }
+
+        double[] values = new double[tile.getWidth() * tile.getHeight() * 5];
+        for (int i = 0; i < values.length; i += 5) {
+            values[i] = input.readDouble();
+            values[i + 1] = input.readDouble();
+            values[i + 2] = input.readDouble();
+            values[i + 3] = input.readDouble();
+            values[i + 4] = input.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Tiles are disjoint, so workers merge concurrently without locking.
+     */
+    private void mergeTile(final Tile tile, final double[] values) {
+        int i = 0;
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                accumulationData.merge(
+                        x + y * job.getWidth(), values[i], values[i + 1], values[i + 2], values[i + 3], (int) values[i + 4]);
+                i += 5;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            events.accept("Closing coordinator socket failed: " + e.getMessage());
+        }
+        connections.shutdownNow();
+    }
+}
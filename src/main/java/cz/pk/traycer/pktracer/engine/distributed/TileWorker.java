@@ -0,0 +1,104 @@
+package cz.pk.traycer.pktracer.engine.distributed;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.Tile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+
+/**
+ * Render tiles assigned by {@link TileCoordinator} with all cores of this process, see coordinator for protocol.
+ */
+public class TileWorker {
+    private final String host;
+    private final int port;
+    private final int threadCount;
+    private final Path scene;
+
+    public TileWorker(final String host, final int port, final int threadCount) {
+        this(host, port, threadCount, null);
+    }
+
+    /**
+     * @param scene Scene file of coordinator job, or null for default scene.
+     */
+    public TileWorker(final String host, final int port, final int threadCount, final Path scene) {
+        this.host = host;
+        this.port = port;
+        this.threadCount = threadCount;
+        this.scene = scene;
+    }
+
+    /**
+     * Connect to coordinator and render its tiles until it sends done.
+     *
+     * @return Number of rendered tiles.
+     * @throws IllegalArgumentException Scene of worker differs from scene of job.
+     */
+    public int run() throws IOException {
+        int renderedTiles = 0;
+
+        try (Socket socket = new Socket(host, port)) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            RenderJob job = RenderJob.read(input);
+            Renderer renderer = new Renderer(job.getWidth(), job.getHeight(), threadCount);
+            renderer.setSeed(job.getSeed());
+            renderer.setMaxDepth(job.getMaxDepth());
+            renderer.setRouletteMinDepth(job.getRouletteMinDepth());
+            renderer.setNextEventEstimation(job.isNextEventEstimation());
+
+            try {
+                if (scene != null) {
+                    renderer.loadScene(scene);
+                } else {
+                    renderer.initialize();
+                }
+                long sceneHash = renderer.getActiveScene().contentHash();
+                if (sceneHash != job.getSceneHash()) {
+                    throw new IllegalArgumentException(String.format(
+                            "Worker scene differs from job scene. Scene hash value=%d, job scene hash value=%d",
+                            sceneHash, job.getSceneHash()));
+                }
+                renderer.onResize(job.getWidth(), job.getHeight());
+
+                while (input.readByte() == TileCoordinator.TILE) {
+                    int tileIndex = input.readInt();
+                    Tile tile = new Tile(input.readInt(), input.readInt(), input.readInt(), input.readInt());
+
+                    renderer.renderRegion(tile, 1, job.getSamplesPerPixel());
+                    writeTile(output, tileIndex, tile, renderer.getAccumulationData());
+                    renderedTiles++;
+                }
+            } finally {
+                renderer.getRenderPool().shutdown();
+                renderer.releaseRetired();
+            }
+        }
+
+        return renderedTiles;
+    }
+
+    private static void writeTile(final DataOutputStream output, final int tileIndex, final Tile tile,
+                                  final AccumulationBuffer accumulationData) throws IOException {
+        output.writeInt(tileIndex);
+        for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                int index = x + y * accumulationData.getWidth();
+                output.writeDouble(accumulationData.getRed().get(index));
+                output.writeDouble(accumulationData.getGreen().get(index));
+                output.writeDouble(accumulationData.getBlue().get(index));
+                output.writeDouble(accumulationData.getLuminanceSquared().get(index));
+                output.writeInt(accumulationData.getSampleCounts().get(index));
+            }
+        }
+        output.flush();
+    }
+}
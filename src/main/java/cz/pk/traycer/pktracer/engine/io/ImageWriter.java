@@ -0,0 +1,159 @@
+package cz.pk.traycer.pktracer.engine.io;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Enums;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Write accumulated image to file without any GUI toolkit. <br>
+ * PNG and PPM store 8-bit colors resolved the same way as viewport, PFM stores linear mean radiance
+ * of every pixel as 32-bit floats. Row 0 of accumulation buffer is the top row of the image.
+ */
+public class ImageWriter {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private ImageWriter() {
+    }
+
+    /**
+     * Format given by file extension (png, ppm or pfm, case insensitive).
+     *
+     * @param path Output file.
+     * @return Image format.
+     */
+    public static Enums.ImageFormat formatOf(final Path path) {
+        String name = path.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1).toUpperCase(Locale.ROOT);
+        for (Enums.ImageFormat format : Enums.ImageFormat.values()) {
+            if (format.name().equals(extension)) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException(
+                String.format("Unsupported image format. Use png, ppm or pfm extension. File value=%s", name));
+    }
+
+    public static void write(final AccumulationBuffer image, final Path path) throws IOException {
+        write(image, path, formatOf(path));
+    }
+
+    public static void write(final AccumulationBuffer image, final Path path, final Enums.ImageFormat format)
+            throws IOException {
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path))) {
+            switch (format) {
+                case PNG -> writePng(image, output);
+                case PPM -> writePpm(image, output);
+                case PFM -> writePfm(image, output);
+            }
+        }
+    }
+
+    /**
+     * Binary PPM (P6), 8 bits per channel.
+     */
+    public static void writePpm(final AccumulationBuffer image, final OutputStream output) throws IOException {
+        output.write(String.format("P6\n%d %d\n255\n", image.getWidth(), image.getHeight())
+                .getBytes(StandardCharsets.US_ASCII));
+        output.write(rgbRows(image, false));
+    }
+
+    /**
+     * Color PFM (PF), little endian floats, rows stored bottom to top as the format requires.
+     */
+    public static void writePfm(final AccumulationBuffer image, final OutputStream output) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        output.write(String.format("PF\n%d %d\n-1.0\n", width, height).getBytes(StandardCharsets.US_ASCII));
+
+        ByteBuffer row = ByteBuffer.allocate(width * 3 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = height - 1; y >= 0; y--) {
+            row.clear();
+            for (int x = 0; x < width; x++) {
+                int index = x + y * width;
+                int count = image.getSampleCounts().get(index);
+                double scale = count == 0 ? 0.0 : 1.0 / count;
+                row.putFloat((float) (image.getRed().get(index) * scale));
+                row.putFloat((float) (image.getGreen().get(index) * scale));
+                row.putFloat((float) (image.getBlue().get(index) * scale));
+            }
+            output.write(row.array());
+        }
+    }
+
+    /**
+     * 8-bit truecolor PNG. Every scanline uses filter type 0 (none), whole image is one deflated IDAT chunk.
+     */
+    public static void writePng(final AccumulationBuffer image, final OutputStream output) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(image.getWidth());
+        headerData.writeInt(image.getHeight());
+        headerData.writeByte(8);   // bit depth
+        headerData.writeByte(2);   // color type: RGB
+        headerData.writeByte(0);   // compression: deflate
+        headerData.writeByte(0);   // filter method: adaptive
+        headerData.writeByte(0);   // interlace: none
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            deflater.write(rgbRows(image, true));
+        }
+
+        output.write(PNG_SIGNATURE);
+        writePngChunk(output, "IHDR", header.toByteArray());
+        writePngChunk(output, "IDAT", compressed.toByteArray());
+        writePngChunk(output, "IEND", new byte[0]);
+    }
+
+    private static void writePngChunk(final OutputStream output, final String type, final byte[] data)
+            throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        DataOutputStream chunk = new DataOutputStream(output);
+        chunk.writeInt(data.length);
+        chunk.write(typeBytes);
+        chunk.write(data);
+        chunk.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Resolved 8-bit RGB triplets in top to bottom rows.
+     *
+     * @param filterBytes Prefix every row by PNG filter type byte.
+     */
+    private static byte[] rgbRows(final AccumulationBuffer image, final boolean filterBytes) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rowBytes = width * 3 + (filterBytes ? 1 : 0);
+        byte[] rows = new byte[rowBytes * height];
+
+        for (int y = 0; y < height; y++) {
+            int offset = y * rowBytes + (filterBytes ? 1 : 0);
+            for (int x = 0; x < width; x++) {
+                int argb = image.resolve(x + y * width);
+                rows[offset++] = (byte) (argb >> 16);
+                rows[offset++] = (byte) (argb >> 8);
+                rows[offset++] = (byte) argb;
+            }
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,419 @@
+package cz.pk.traycer.pktracer.engine.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming pull parser of JSON. <br>
+ * Document is read token by token from a reader, no tree is built, so memory doesn't grow with document size.
+ * Numbers are parsed directly from the read characters, without creating a string in the common case of
+ * up to 15 significant digits. Malformed input throws {@link IllegalArgumentException} with line number.
+ */
+public class JsonReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int EOF = -1;
+    /**
+     * Powers of ten exactly representable by double, used by fast path of number parsing.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_FAST_DIGITS = 15;
+
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    private enum Scope {
+        DOCUMENT,
+        EMPTY_OBJECT,
+        NONEMPTY_OBJECT,
+        DANGLING_NAME,
+        EMPTY_ARRAY,
+        NONEMPTY_ARRAY
+    }
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int line = 1;
+
+    private Scope[] stack = new Scope[32];
+    private int depth;
+    private Token peeked;
+    private final StringBuilder string = new StringBuilder();
+    private char[] number = new char[32];
+
+    public JsonReader(final Reader reader) {
+        this.reader = reader;
+        stack[depth++] = Scope.DOCUMENT;
+    }
+
+    /**
+     * Type of next token without consuming it.
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        int c = nextNonWhitespace();
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY, NONEMPTY_ARRAY -> {
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (stack[depth - 1] == Scope.NONEMPTY_ARRAY) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                stack[depth - 1] = Scope.NONEMPTY_ARRAY;
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (stack[depth - 1] == Scope.NONEMPTY_OBJECT) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                expect(c, '"');
+                stack[depth - 1] = Scope.DANGLING_NAME;
+                return peeked = Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                expect(c, ':');
+                c = nextNonWhitespace();
+                stack[depth - 1] = Scope.NONEMPTY_OBJECT;
+            }
+            case DOCUMENT -> {
+                if (c == EOF) {
+                    return peeked = Token.END_DOCUMENT;
+                }
+            }
+        }
+
+        return peeked = switch (c) {
+            case '{' -> Token.BEGIN_OBJECT;
+            case '[' -> Token.BEGIN_ARRAY;
+            case '"' -> Token.STRING;
+            case 't', 'f' -> unread(Token.BOOLEAN);
+            case 'n' -> unread(Token.NULL);
+            case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> unread(Token.NUMBER);
+            default -> throw syntaxError(String.format("Unexpected character. Character value=%s", describe(c)));
+        };
+    }
+
+    public void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+        push(Scope.EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+        push(Scope.EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * @return True when current object or array has next element.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        consume(Token.NAME);
+        return readString();
+    }
+
+    public String nextString() throws IOException {
+        consume(Token.STRING);
+        return readString();
+    }
+
+    public boolean nextBoolean() throws IOException {
+        consume(Token.BOOLEAN);
+        if (buffer(0) == 't') {
+            readLiteral("true");
+            return true;
+        }
+        readLiteral("false");
+        return false;
+    }
+
+    public void nextNull() throws IOException {
+        consume(Token.NULL);
+        readLiteral("null");
+    }
+
+    public double nextDouble() throws IOException {
+        consume(Token.NUMBER);
+        return readNumber();
+    }
+
+    public int nextInt() throws IOException {
+        double value = nextDouble();
+        int intValue = (int) value;
+        if (intValue != value) {
+            throw syntaxError(String.format("Expected integer. Number value=%s", value));
+        }
+        return intValue;
+    }
+
+    /**
+     * Skip next value including all nested values.
+     */
+    public void skipValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT -> {
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+            }
+            case BEGIN_ARRAY -> {
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+            }
+            case STRING -> nextString();
+            case NUMBER -> nextDouble();
+            case BOOLEAN -> nextBoolean();
+            case NULL -> nextNull();
+            default -> throw syntaxError(String.format("Expected value. Token value=%s", peek()));
+        }
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return Exception describing malformed input at current line.
+     */
+    public IllegalArgumentException syntaxError(final String message) {
+        return new IllegalArgumentException(String.format("%s. Line value=%d", message, line));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void consume(final Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError(String.format("Expected %s. Token value=%s", expected, token));
+        }
+        peeked = null;
+    }
+
+    private void push(final Scope scope) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    private Token unread(final Token token) {
+        position--;
+        return token;
+    }
+
+    private void expect(final int c, final char expected) {
+        if (c != expected) {
+            throw syntaxError(String.format("Expected '%s'. Character value=%s", expected, describe(c)));
+        }
+    }
+
+    private static String describe(final int c) {
+        return c == EOF ? "end of input" : "'" + (char) c + "'";
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Character at given offset from current position, without consuming it.
+     */
+    private int buffer(final int offset) throws IOException {
+        if (position + offset >= limit) {
+            // Keep unread characters, shift them to the start of the buffer
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (offset >= limit) {
+                int count = reader.read(buffer, limit, buffer.length - limit);
+                if (count < 0) {
+                    return EOF;
+                }
+                limit += count;
+            }
+        }
+        return buffer[position + offset];
+    }
+
+    private boolean fill() throws IOException {
+        position = 0;
+        limit = 0;
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            switch (c) {
+                case '\n' -> line++;
+                case ' ', '\t', '\r' -> {
+                }
+                default -> {
+                    return c;
+                }
+            }
+        }
+    }
+
+    private void readLiteral(final String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw syntaxError(String.format("Expected literal. Literal value=%s", literal));
+            }
+        }
+    }
+
+    /**
+     * Read string after its opening quote up to closing quote, resolving escapes.
+     */
+    private String readString() throws IOException {
+        string.setLength(0);
+        while (true) {
+            int c = read();
+            switch (c) {
+                case '"' -> {
+                    return string.toString();
+                }
+                case '\\' -> string.append(readEscape());
+                case EOF -> throw syntaxError("Unterminated string");
+                case '\n' -> {
+                    line++;
+                    string.append('\n');
+                }
+                default -> string.append((char) c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        return switch (c) {
+            case '"', '\\', '/' -> (char) c;
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                yield (char) value;
+            }
+            default -> throw syntaxError(String.format("Invalid escape. Character value=%s", describe(c)));
+        };
+    }
+
+    /**
+     * Read number characters and convert them. Mantissa of at most 15 digits with small decimal exponent
+     * is converted exactly by one multiplication or division of doubles, other numbers fall back to
+     * {@link Double#parseDouble(String)}.
+     */
+    private double readNumber() throws IOException {
+        int length = 0;
+        while (true) {
+            int c = buffer(0);
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+                break;
+            }
+            if (length == number.length) {
+                number = Arrays.copyOf(number, length * 2);
+            }
+            number[length++] = (char) c;
+            position++;
+        }
+
+        boolean negative = number[0] == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        int i = negative ? 1 : 0;
+        boolean fast = i < length;
+        for (; i < length && number[i] >= '0' && number[i] <= '9'; i++) {
+            mantissa = mantissa * 10 + (number[i] - '0');
+            digits += mantissa == 0 ? 0 : 1;
+        }
+        if (i < length && number[i] == '.') {
+            i++;
+            fast &= i < length;
+            for (; i < length && number[i] >= '0' && number[i] <= '9'; i++) {
+                mantissa = mantissa * 10 + (number[i] - '0');
+                digits += mantissa == 0 ? 0 : 1;
+                exponent--;
+            }
+        }
+        fast &= i == length && digits <= MAX_FAST_DIGITS && -exponent < POWERS_OF_TEN.length;
+
+        if (!fast) {
+            try {
+                return Double.parseDouble(new String(number, 0, length));
+            } catch (NumberFormatException e) {
+                throw syntaxError(String.format("Invalid number. Number value=%s", new String(number, 0, length)));
+            }
+        }
+
+        double value = exponent == 0 ? mantissa : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+}
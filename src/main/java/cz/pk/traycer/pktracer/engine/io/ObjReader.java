@@ -0,0 +1,145 @@
+package cz.pk.traycer.pktracer.engine.io;
+
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.shapes.TriangleMesh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Read geometry of Wavefront OBJ file into {@link TriangleMesh}. <br>
+ * Only vertex positions ({@code v}) and faces ({@code f}) are read, polygons are triangulated as fans.
+ * Face vertices may use {@code v/vt/vn} forms and negative (relative) indices, texture coordinates,
+ * normals, groups and materials are ignored, so the mesh is shaded by geometric normals.
+ * File is read line by line into growing arrays, which are copied into arena once at the end.
+ */
+public class ObjReader {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private float[] vertices = new float[INITIAL_CAPACITY * 3];
+    private int vertexFloats;
+    private int[] indices = new int[INITIAL_CAPACITY * 3];
+    private int indexCount;
+    private int[] face = new int[8];
+    private int lineNumber;
+
+    private ObjReader() {
+    }
+
+    /**
+     * @param file  OBJ file.
+     * @param arena Owner of mesh memory.
+     * @return Mesh with object and material index not set.
+     * @throws IllegalArgumentException Malformed file.
+     */
+    public static TriangleMesh read(final Path file, GeometryArena arena) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new ObjReader().read(reader, arena, file);
+        }
+    }
+
+    private TriangleMesh read(final BufferedReader reader, GeometryArena arena, final Path file) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.startsWith("v ") || line.startsWith("v\t")) {
+                readVertex(line);
+            } else if (line.startsWith("f ") || line.startsWith("f\t")) {
+                readFace(line);
+            }
+        }
+
+        if (indexCount == 0) {
+            throw new IllegalArgumentException(String.format("OBJ file has no faces. File value=%s", file));
+        }
+        return new TriangleMesh(arena,
+                Arrays.copyOf(vertices, vertexFloats),
+                Arrays.copyOf(indices, indexCount),
+                null);
+    }
+
+    private void readVertex(final String line) {
+        if (vertexFloats + 3 > vertices.length) {
+            vertices = Arrays.copyOf(vertices, vertices.length * 2);
+        }
+        int position = 1;
+        for (int axis = 0; axis < 3; axis++) {
+            position = skipWhitespace(line, position);
+            int end = tokenEnd(line, position);
+            if (position == end) {
+                throw error("Vertex needs 3 coordinates");
+            }
+            try {
+                vertices[vertexFloats + axis] = Float.parseFloat(line.substring(position, end));
+            } catch (NumberFormatException e) {
+                throw error(String.format("Invalid coordinate. Coordinate value=%s", line.substring(position, end)));
+            }
+            position = end;
+        }
+        vertexFloats += 3;
+    }
+
+    private void readFace(final String line) {
+        int vertexCount = vertexFloats / 3;
+        int corners = 0;
+        int position = skipWhitespace(line, 1);
+        while (position < line.length()) {
+            int end = tokenEnd(line, position);
+            int slash = line.indexOf('/', position);
+            int indexEnd = slash < 0 || slash > end ? end : slash;
+
+            int index;
+            try {
+                index = Integer.parseInt(line, position, indexEnd, 10);
+            } catch (NumberFormatException e) {
+                throw error(String.format("Invalid face index. Index value=%s", line.substring(position, end)));
+            }
+            // OBJ indices start at 1, negative indices count back from the last read vertex
+            index = index < 0 ? vertexCount + index : index - 1;
+            if (index < 0 || index >= vertexCount) {
+                throw error(String.format("Face index out of range. Index value=%s", line.substring(position, end)));
+            }
+
+            if (corners == face.length) {
+                face = Arrays.copyOf(face, corners * 2);
+            }
+            face[corners++] = index;
+            position = skipWhitespace(line, end);
+        }
+        if (corners < 3) {
+            throw error("Face needs at least 3 vertices");
+        }
+
+        int triangles = corners - 2;
+        if (indexCount + triangles * 3 > indices.length) {
+            indices = Arrays.copyOf(indices, Math.max(indices.length * 2, indexCount + triangles * 3));
+        }
+        for (int i = 1; i <= triangles; i++) {
+            indices[indexCount++] = face[0];
+            indices[indexCount++] = face[i];
+            indices[indexCount++] = face[i + 1];
+        }
+    }
+
+    private static int skipWhitespace(final String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int tokenEnd(final String line, int position) {
+        while (position < line.length() && !Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(String.format("%s. Line value=%d", message, lineNumber));
+    }
+}
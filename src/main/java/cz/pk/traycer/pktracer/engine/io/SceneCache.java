@@ -0,0 +1,474 @@
+package cz.pk.traycer.pktracer.engine.io;
+
+import cz.pk.traycer.pktracer.engine.Camera;
+import cz.pk.traycer.pktracer.engine.Enums;
+import cz.pk.traycer.pktracer.engine.Material;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.accel.BVH;
+import cz.pk.traycer.pktracer.engine.accel.BVHAccelerator;
+import cz.pk.traycer.pktracer.engine.math.Matrix4X4D;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.memory.MappedRegions;
+import cz.pk.traycer.pktracer.engine.shapes.Hittable;
+import cz.pk.traycer.pktracer.engine.shapes.Instance;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.shapes.TriangleMesh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compiled scene: camera, materials, models, mesh buffers and built hierarchies in one binary file. <br>
+ * Buffers are stored in native byte order in the layout used by the engine, so reading the file only maps it
+ * to memory and wraps slices of the mapping, nothing is parsed or built. Mesh and hierarchy pages are read
+ * from the file when traced for the first time. Only model records are turned to objects.
+ *
+ * <p>
+ * Layout: {@link #HEADER_BYTES} bytes header, material records, records of shared geometries, model records,
+ * then data of meshes, instance transforms and scene hierarchy aligned to 8 bytes. Offsets in records are absolute
+ * file positions. File with other format version or byte order is rejected, it has to be compiled again from
+ * the scene file.
+ *
+ * <p>
+ * File is mapped by {@link MappedRegions}, so its size is not limited by size of one buffer. Every single buffer
+ * of the scene (vertices of one mesh, nodes of one hierarchy) has to fit to {@link #REGION_BYTES}, larger scene
+ * fails to compile before anything is written.
+ */
+public class SceneCache {
+    /**
+     * File extension of compiled scene, {@link SceneLoader} reads such file as cache.
+     */
+    public static final String EXTENSION = ".pksc";
+    public static final int MAGIC = 0x504B5343;
+    /**
+     * Version of file layout, increased with every change of layout.
+     */
+    public static final int FORMAT_VERSION = 2;
+    /**
+     * Written in native order, read back in other order on machine of other endianness.
+     */
+    private static final int BYTE_ORDER_MARK = 1;
+
+    private static final int HEADER_BYTES = 128;
+    private static final int MATERIAL_BYTES = 64;
+    private static final int MODEL_BYTES = 80;
+    private static final int ALIGNMENT = 8;
+    /**
+     * Region of mapped file, also limit of one buffer in the file.
+     */
+    public static final long REGION_BYTES = MappedRegions.MAX_REGION_BYTES;
+
+    // Header offsets
+    private static final int VERSION_OFFSET = 4;
+    private static final int BYTE_ORDER_OFFSET = 8;
+    private static final int MODEL_COUNT_OFFSET = 12;
+    private static final int MATERIAL_COUNT_OFFSET = 16;
+    private static final int NODE_COUNT_OFFSET = 20;
+    private static final int SCENE_HASH_OFFSET = 24;
+    private static final int NODES_OFFSET = 32;
+    private static final int PRIMITIVES_OFFSET = 40;
+    private static final int CAMERA_OFFSET = 48;
+    private static final int GEOMETRY_COUNT_OFFSET = 120;
+
+    // Model record offsets, sphere and mesh share first 16 bytes
+    private static final int SHAPE_OFFSET = 0;
+    private static final int OBJECT_INDEX_OFFSET = 4;
+    private static final int MATERIAL_INDEX_OFFSET = 8;
+    private static final int SPHERE_POSITION_OFFSET = 16;
+    private static final int SPHERE_RADIUS_OFFSET = 40;
+    private static final int MESH_VERTEX_FLOATS_OFFSET = 16;
+    private static final int MESH_INDEX_COUNT_OFFSET = 20;
+    private static final int MESH_NORMAL_FLOATS_OFFSET = 24;
+    private static final int MESH_NODE_COUNT_OFFSET = 28;
+    private static final int MESH_VERTICES_OFFSET = 32;
+    private static final int MESH_INDICES_OFFSET = 40;
+    private static final int MESH_NORMALS_OFFSET = 48;
+    private static final int MESH_NODES_OFFSET = 56;
+    private static final int MESH_PRIMITIVES_OFFSET = 64;
+    private static final int INSTANCE_GEOMETRY_INDEX_OFFSET = 16;
+    private static final int INSTANCE_TRANSFORMS_OFFSET = 24;
+    /**
+     * Transform and its inverse, 16 doubles each.
+     */
+    private static final int INSTANCE_TRANSFORMS_BYTES = 2 * 16 * Double.BYTES;
+
+    private SceneCache() {
+    }
+
+    /**
+     * @param file Scene file.
+     * @return True when file name has extension of compiled scene.
+     */
+    public static boolean isCache(final Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(EXTENSION);
+    }
+
+    /**
+     * Load scene file, build hierarchies and write everything to cache file. File is written next to the cache
+     * and moved over it when complete, so a failed compile never leaves broken cache.
+     *
+     * @param sceneFile Scene file read by {@link SceneLoader}.
+     * @param cacheFile Written cache file.
+     * @return Number of written bytes.
+     */
+    public static long compile(final Path sceneFile, final Path cacheFile) throws IOException {
+        Camera camera = new Camera(1, 1);
+        try (Scene scene = SceneLoader.load(sceneFile, camera);
+             GeometryArena buildArena = new GeometryArena()) {
+            BVH hierarchy = BVHAccelerator.build(scene.getModels(), buildArena);
+            return write(scene, hierarchy, camera, cacheFile);
+        }
+    }
+
+    /**
+     * Write scene with its model hierarchy to cache file.
+     *
+     * @param scene     Written scene.
+     * @param hierarchy Hierarchy over scene models.
+     * @param camera    Camera stored with the scene.
+     * @param cacheFile Written cache file.
+     * @return Number of written bytes.
+     */
+    public static long write(final Scene scene, final BVH hierarchy, final Camera camera, final Path cacheFile)
+            throws IOException {
+        List<Hittable> models = scene.getModels();
+        List<Material> materials = scene.getMaterials();
+        List<Hittable> geometries = scene.getGeometries();
+        // Geometries and models are written as the same records, geometries first
+        List<Hittable> records = new ArrayList<>(geometries.size() + models.size());
+        records.addAll(geometries);
+        records.addAll(models);
+
+        // Lay out data of meshes, instances and hierarchy after fixed size records
+        long size = HEADER_BYTES + (long) materials.size() * MATERIAL_BYTES + (long) records.size() * MODEL_BYTES;
+        long[] meshOffsets = new long[records.size() * 5];
+        for (int i = 0; i < records.size(); i++) {
+            if (records.get(i) instanceof Instance) {
+                meshOffsets[i * 5] = size = align(size);
+                size = block(size, INSTANCE_TRANSFORMS_BYTES);
+            } else if (records.get(i) instanceof TriangleMesh mesh) {
+                meshOffsets[i * 5] = size = align(size);
+                size = block(size, (long) mesh.getVertices().capacity() * Float.BYTES);
+                meshOffsets[i * 5 + 1] = size = align(size);
+                size = block(size, (long) mesh.getIndices().capacity() * Integer.BYTES);
+                meshOffsets[i * 5 + 2] = size = align(size);
+                size = block(size, mesh.getNormals() == null ? 0 : (long) mesh.getNormals().capacity() * Float.BYTES);
+                meshOffsets[i * 5 + 3] = size = align(size);
+                size = block(size, (long) mesh.getBvh().getNodeCount() * BVH.NODE_BYTES);
+                meshOffsets[i * 5 + 4] = size = align(size);
+                size = block(size, (long) mesh.getBvh().getPrimitiveCount() * Integer.BYTES);
+            }
+        }
+        long nodesOffset = size = align(size);
+        size = block(size, (long) hierarchy.getNodeCount() * BVH.NODE_BYTES);
+        long primitivesOffset = size = align(size);
+        size = block(size, (long) hierarchy.getPrimitiveCount() * Integer.BYTES);
+
+        Path temporaryFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        Files.deleteIfExists(temporaryFile);
+        try (GeometryArena arena = new GeometryArena()) {
+            MappedRegions file = arena.mapRegions(temporaryFile, size, REGION_BYTES);
+            ByteBuffer buffer = file.region(0);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(VERSION_OFFSET, FORMAT_VERSION);
+            buffer.putInt(BYTE_ORDER_OFFSET, BYTE_ORDER_MARK);
+            buffer.putInt(MODEL_COUNT_OFFSET, models.size());
+            buffer.putInt(MATERIAL_COUNT_OFFSET, materials.size());
+            buffer.putInt(GEOMETRY_COUNT_OFFSET, geometries.size());
+            buffer.putInt(NODE_COUNT_OFFSET, hierarchy.getNodeCount());
+            buffer.putLong(SCENE_HASH_OFFSET, scene.contentHash());
+            buffer.putLong(NODES_OFFSET, nodesOffset);
+            buffer.putLong(PRIMITIVES_OFFSET, primitivesOffset);
+            writeCamera(buffer, camera);
+
+            long offset = HEADER_BYTES;
+            for (Material material : materials) {
+                writeMaterial(file.region(offset), file.localOffset(offset), material);
+                offset += MATERIAL_BYTES;
+            }
+            for (int i = 0; i < records.size(); i++) {
+                writeModel(file, offset, records.get(i), meshOffsets, i);
+                offset += MODEL_BYTES;
+            }
+            writeHierarchy(file, hierarchy, nodesOffset, primitivesOffset);
+            file.force();
+        }
+        Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return size;
+    }
+
+    /**
+     * Map cache file and wrap its buffers. Scene arena owns the mapping, file is unmapped when the scene is closed
+     * and none of its buffers is used anymore.
+     *
+     * @param cacheFile Cache file written by {@link #compile(Path, Path)}.
+     * @param camera    Camera set by the cache, or null to ignore stored camera.
+     * @return Scene with model hierarchy set.
+     * @throws IllegalArgumentException File is not a cache of this format version and byte order.
+     */
+    public static Scene read(final Path cacheFile, Camera camera) throws IOException {
+        GeometryArena arena = new GeometryArena();
+        try {
+            MappedRegions file = arena.mapRegionsReadOnly(cacheFile, REGION_BYTES);
+            ByteBuffer buffer = file.region(0);
+            validateHeader(buffer, cacheFile);
+
+            int materialCount = buffer.getInt(MATERIAL_COUNT_OFFSET);
+            int modelCount = buffer.getInt(MODEL_COUNT_OFFSET);
+            int geometryCount = buffer.getInt(GEOMETRY_COUNT_OFFSET);
+            if (camera != null) {
+                readCamera(buffer, camera);
+            }
+
+            List<Material> materials = new ArrayList<>(materialCount);
+            long offset = HEADER_BYTES;
+            for (int i = 0; i < materialCount; i++) {
+                materials.add(readMaterial(file.region(offset), file.localOffset(offset)));
+                offset += MATERIAL_BYTES;
+            }
+            List<Hittable> geometries = new ArrayList<>(geometryCount);
+            for (int i = 0; i < geometryCount; i++) {
+                geometries.add(readModel(file, offset, geometries));
+                offset += MODEL_BYTES;
+            }
+            List<Hittable> models = new ArrayList<>(modelCount);
+            for (int i = 0; i < modelCount; i++) {
+                models.add(readModel(file, offset, geometries));
+                offset += MODEL_BYTES;
+            }
+
+            Scene scene = new Scene(models, materials, arena);
+            scene.setGeometries(geometries);
+            scene.setModelHierarchy(new BVH(
+                    file.slice(buffer.getLong(NODES_OFFSET), (long) buffer.getInt(NODE_COUNT_OFFSET) * BVH.NODE_BYTES),
+                    buffer.getInt(NODE_COUNT_OFFSET),
+                    file.slice(buffer.getLong(PRIMITIVES_OFFSET), (long) modelCount * Integer.BYTES).asIntBuffer(),
+                    modelCount));
+            return scene;
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Content hash of the scene stored in cache header, without mapping the whole file.
+     *
+     * @param cacheFile Cache file.
+     * @return {@link Scene#contentHash()} of compiled scene.
+     */
+    public static long readSceneHash(final Path cacheFile) throws IOException {
+        try (GeometryArena arena = new GeometryArena()) {
+            ByteBuffer buffer = arena.mapRegionsReadOnly(cacheFile, REGION_BYTES).region(0);
+            validateHeader(buffer, cacheFile);
+            return buffer.getLong(SCENE_HASH_OFFSET);
+        }
+    }
+
+    private static void validateHeader(final ByteBuffer buffer, final Path cacheFile) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+                || buffer.getInt(BYTE_ORDER_OFFSET) != BYTE_ORDER_MARK) {
+            throw new IllegalArgumentException(String.format(
+                    "File is not a scene cache of this machine byte order. File value=%s", cacheFile));
+        }
+        if (buffer.getInt(VERSION_OFFSET) != FORMAT_VERSION) {
+            throw new IllegalArgumentException(String.format(
+                    "Scene cache has other format version, compile it again. Version value=%d, file value=%s",
+                    buffer.getInt(VERSION_OFFSET), cacheFile));
+        }
+    }
+
+    private static long align(final long offset) {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Reserve block of data in layout.
+     *
+     * @return Offset after the block.
+     * @throws IllegalArgumentException Block doesn't fit to one region.
+     */
+    private static long block(final long offset, final long bytes) {
+        if (bytes > REGION_BYTES) {
+            throw new IllegalArgumentException(String.format(
+                    "Buffer of the scene is too large for scene cache, split the mesh. Size value=%d, limit value=%d",
+                    bytes, REGION_BYTES));
+        }
+        return offset + bytes;
+    }
+
+    private static void writeCamera(ByteBuffer buffer, final Camera camera) {
+        putVector(buffer, CAMERA_OFFSET, camera.getPosition());
+        putVector(buffer, CAMERA_OFFSET + 24, camera.getForwardDirection());
+        buffer.putDouble(CAMERA_OFFSET + 48, camera.getVerticalFOV());
+        buffer.putDouble(CAMERA_OFFSET + 56, camera.getNearClip());
+        buffer.putDouble(CAMERA_OFFSET + 64, camera.getFarClip());
+    }
+
+    private static void readCamera(final ByteBuffer buffer, Camera camera) {
+        camera.setPosition(getVector(buffer, CAMERA_OFFSET));
+        camera.setForwardDirection(getVector(buffer, CAMERA_OFFSET + 24));
+        camera.setVerticalFOV(buffer.getDouble(CAMERA_OFFSET + 48));
+        camera.setNearClip(buffer.getDouble(CAMERA_OFFSET + 56));
+        camera.setFarClip(buffer.getDouble(CAMERA_OFFSET + 64));
+    }
+
+    private static void writeMaterial(ByteBuffer buffer, final int offset, final Material material) {
+        putVector(buffer, offset, material.getAlbedo());
+        putVector(buffer, offset + 24, material.getEmissionColor());
+        buffer.putFloat(offset + 48, material.getRoughness());
+        buffer.putFloat(offset + 52, material.getMetallic());
+        buffer.putFloat(offset + 56, material.getEmissionPower());
+    }
+
+    private static Material readMaterial(final ByteBuffer buffer, final int offset) {
+        return new Material(
+                getVector(buffer, offset),
+                buffer.getFloat(offset + 48),
+                buffer.getFloat(offset + 52),
+                getVector(buffer, offset + 24),
+                buffer.getFloat(offset + 56));
+    }
+
+    private static void writeModel(MappedRegions file, final long recordOffset, final Hittable model,
+                                   final long[] meshOffsets, final int modelIndex) {
+        ByteBuffer buffer = file.region(recordOffset);
+        int offset = file.localOffset(recordOffset);
+        buffer.putInt(offset + SHAPE_OFFSET, model.getShape().ordinal());
+        buffer.putInt(offset + OBJECT_INDEX_OFFSET, model.getObjectIndex());
+        buffer.putInt(offset + MATERIAL_INDEX_OFFSET, model.getMaterialIndex());
+
+        if (model instanceof Instance instance) {
+            long transforms = meshOffsets[modelIndex * 5];
+            buffer.putInt(offset + INSTANCE_GEOMETRY_INDEX_OFFSET, instance.getGeometryIndex());
+            buffer.putLong(offset + INSTANCE_TRANSFORMS_OFFSET, transforms);
+            ByteBuffer matrices = file.slice(transforms, INSTANCE_TRANSFORMS_BYTES);
+            putMatrix(matrices, 0, instance.getTransform());
+            putMatrix(matrices, 16 * Double.BYTES, instance.getInverseTransform());
+        } else if (model instanceof Sphere sphere) {
+            putVector(buffer, offset + SPHERE_POSITION_OFFSET, sphere.getPosition());
+            buffer.putDouble(offset + SPHERE_RADIUS_OFFSET, sphere.getRadius());
+        } else if (model instanceof TriangleMesh mesh) {
+            long vertices = meshOffsets[modelIndex * 5];
+            long indices = meshOffsets[modelIndex * 5 + 1];
+            long normals = meshOffsets[modelIndex * 5 + 2];
+            BVH bvh = mesh.getBvh();
+
+            buffer.putInt(offset + MESH_VERTEX_FLOATS_OFFSET, mesh.getVertices().capacity());
+            buffer.putInt(offset + MESH_INDEX_COUNT_OFFSET, mesh.getIndices().capacity());
+            buffer.putInt(offset + MESH_NORMAL_FLOATS_OFFSET, mesh.getNormals() == null ? -1 : mesh.getNormals().capacity());
+            buffer.putInt(offset + MESH_NODE_COUNT_OFFSET, bvh.getNodeCount());
+            buffer.putLong(offset + MESH_VERTICES_OFFSET, vertices);
+            buffer.putLong(offset + MESH_INDICES_OFFSET, indices);
+            buffer.putLong(offset + MESH_NORMALS_OFFSET, normals);
+            buffer.putLong(offset + MESH_NODES_OFFSET, meshOffsets[modelIndex * 5 + 3]);
+            buffer.putLong(offset + MESH_PRIMITIVES_OFFSET, meshOffsets[modelIndex * 5 + 4]);
+
+            file.slice(vertices, (long) mesh.getVertices().capacity() * Float.BYTES).asFloatBuffer()
+                    .put(0, mesh.getVertices(), 0, mesh.getVertices().capacity());
+            file.slice(indices, (long) mesh.getIndices().capacity() * Integer.BYTES).asIntBuffer()
+                    .put(0, mesh.getIndices(), 0, mesh.getIndices().capacity());
+            if (mesh.getNormals() != null) {
+                file.slice(normals, (long) mesh.getNormals().capacity() * Float.BYTES).asFloatBuffer()
+                        .put(0, mesh.getNormals(), 0, mesh.getNormals().capacity());
+            }
+            writeHierarchy(file, bvh, meshOffsets[modelIndex * 5 + 3], meshOffsets[modelIndex * 5 + 4]);
+        } else {
+            throw new IllegalArgumentException(String.format(
+                    "Shape can't be cached. Shape value=%s", model.getShape()));
+        }
+    }
+
+    /**
+     * @param geometries Geometries read before, referenced by instances.
+     */
+    private static Hittable readModel(final MappedRegions file, final long recordOffset,
+                                      final List<Hittable> geometries) {
+        ByteBuffer buffer = file.region(recordOffset);
+        int offset = file.localOffset(recordOffset);
+        Enums.Shape shape = Enums.Shape.values()[buffer.getInt(offset + SHAPE_OFFSET)];
+        Hittable model = switch (shape) {
+            case SPHERE -> {
+                Sphere sphere = new Sphere();
+                sphere.setPosition(getVector(buffer, offset + SPHERE_POSITION_OFFSET));
+                sphere.setRadius(buffer.getDouble(offset + SPHERE_RADIUS_OFFSET));
+                yield sphere;
+            }
+            case TRIANGLE -> {
+                int vertexFloats = buffer.getInt(offset + MESH_VERTEX_FLOATS_OFFSET);
+                int indexCount = buffer.getInt(offset + MESH_INDEX_COUNT_OFFSET);
+                int normalFloats = buffer.getInt(offset + MESH_NORMAL_FLOATS_OFFSET);
+                int nodeCount = buffer.getInt(offset + MESH_NODE_COUNT_OFFSET);
+
+                FloatBuffer vertices = file.slice(buffer.getLong(offset + MESH_VERTICES_OFFSET),
+                        (long) vertexFloats * Float.BYTES).asFloatBuffer();
+                IntBuffer indices = file.slice(buffer.getLong(offset + MESH_INDICES_OFFSET),
+                        (long) indexCount * Integer.BYTES).asIntBuffer();
+                FloatBuffer normals = normalFloats < 0 ? null : file.slice(
+                        buffer.getLong(offset + MESH_NORMALS_OFFSET), (long) normalFloats * Float.BYTES).asFloatBuffer();
+                BVH bvh = new BVH(
+                        file.slice(buffer.getLong(offset + MESH_NODES_OFFSET), (long) nodeCount * BVH.NODE_BYTES),
+                        nodeCount,
+                        file.slice(buffer.getLong(offset + MESH_PRIMITIVES_OFFSET),
+                                (long) (indexCount / 3) * Integer.BYTES).asIntBuffer(),
+                        indexCount / 3);
+                yield new TriangleMesh(vertices, indices, normals, bvh);
+            }
+            case INSTANCE -> {
+                int geometryIndex = buffer.getInt(offset + INSTANCE_GEOMETRY_INDEX_OFFSET);
+                ByteBuffer matrices = file.slice(buffer.getLong(offset + INSTANCE_TRANSFORMS_OFFSET),
+                        INSTANCE_TRANSFORMS_BYTES);
+                yield new Instance(geometries.get(geometryIndex), geometryIndex,
+                        getMatrix(matrices, 0), getMatrix(matrices, 16 * Double.BYTES));
+            }
+            default -> throw new IllegalArgumentException(
+                    String.format("Shape can't be cached. Shape value=%s", shape));
+        };
+        model.setObjectIndex(buffer.getInt(offset + OBJECT_INDEX_OFFSET));
+        model.setMaterialIndex(buffer.getInt(offset + MATERIAL_INDEX_OFFSET));
+        return model;
+    }
+
+    private static void writeHierarchy(MappedRegions file, final BVH bvh, final long nodesOffset,
+                                       final long primitivesOffset) {
+        file.slice(nodesOffset, (long) bvh.getNodeCount() * BVH.NODE_BYTES)
+                .put(0, bvh.getNodes(), 0, bvh.getNodeCount() * BVH.NODE_BYTES);
+        file.slice(primitivesOffset, (long) bvh.getPrimitiveCount() * Integer.BYTES).asIntBuffer()
+                .put(0, bvh.getPrimitiveIndices(), 0, bvh.getPrimitiveCount());
+    }
+
+    private static void putVector(ByteBuffer buffer, final int offset, final Vector3D vector) {
+        buffer.putDouble(offset, vector.getX());
+        buffer.putDouble(offset + 8, vector.getY());
+        buffer.putDouble(offset + 16, vector.getZ());
+    }
+
+    private static void putMatrix(ByteBuffer buffer, final int offset, final Matrix4X4D matrix) {
+        for (int i = 0; i < 16; i++) {
+            buffer.putDouble(offset + i * Double.BYTES, matrix.getElement(i / 4, i % 4));
+        }
+    }
+
+    private static Matrix4X4D getMatrix(final ByteBuffer buffer, final int offset) {
+        Matrix4X4D matrix = new Matrix4X4D();
+        for (int i = 0; i < 16; i++) {
+            matrix.setElement(i / 4, i % 4, buffer.getDouble(offset + i * Double.BYTES));
+        }
+        return matrix;
+    }
+
+    private static Vector3D getVector(final ByteBuffer buffer, final int offset) {
+        return new Vector3D(buffer.getDouble(offset), buffer.getDouble(offset + 8), buffer.getDouble(offset + 16));
+    }
+}
@@ -0,0 +1,463 @@
+package cz.pk.traycer.pktracer.engine.io;
+
+import cz.pk.traycer.pktracer.engine.Camera;
+import cz.pk.traycer.pktracer.engine.Material;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.math.Matrix4X4D;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.shapes.Hittable;
+import cz.pk.traycer.pktracer.engine.shapes.Instance;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.shapes.TriangleMesh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load scene from JSON file. <br>
+ * File is parsed by streaming {@link JsonReader}, models are created as their objects are read, so loading
+ * needs no document tree. Meshes are copied into arena of the new scene. Format:
+ * <pre>
+ * {
+ *   "camera": {"position": [x, y, z], "forward": [x, y, z], "verticalFov": 45.0, "nearClip": 0.1, "farClip": 100.0},
+ *   "materials": [
+ *     {"name": "red", "albedo": [r, g, b], "roughness": 0.1, "metallic": 0.1,
+ *      "emissionColor": [r, g, b], "emissionPower": 0.0}
+ *   ],
+ *   "objects": [
+ *     {"type": "sphere", "position": [x, y, z], "radius": 1.0, "material": "red"},
+ *     {"type": "mesh", "vertices": [x, y, z, ...], "indices": [a, b, c, ...], "normals": [x, y, z, ...], "material": 0},
+ *     {"type": "mesh", "file": "model.obj", "material": "red"},
+ *     {"type": "instance", "geometry": "rock", "material": "red",
+ *      "translation": [x, y, z], "rotation": [x, y, z], "scale": 2.0}
+ *   ],
+ *   "geometries": [
+ *     {"name": "rock", "type": "mesh", "file": "rock.obj"}
+ *   ]
+ * }
+ * </pre>
+ * Sphere position follows {@link Sphere} convention, the sphere is centered in {@code -position}. Material is
+ * referenced by index or by name. Object indices are assigned in order of objects. Missing camera values keep
+ * current camera values, missing material values are zero. Mesh file path is relative to scene file.
+ * Geometries are shared by instances and not traced by themselves, they have to precede objects in the file.
+ * Instance is placed by row-oriented "transform" of 16 elements or by scale, rotation in degrees around x, y, z
+ * axis and translation applied in this order. Unknown keys are rejected, so typo doesn't silently change the scene.
+ *
+ * <p>
+ * File with {@link SceneCache#EXTENSION} extension is read as compiled scene instead, without parsing.
+ */
+public class SceneLoader {
+    /**
+     * Scene rendered when no scene file is given.
+     */
+    public static final String DEFAULT_SCENE = "default-scene.json";
+
+    private final JsonReader reader;
+    private final Path baseDirectory;
+    private final GeometryArena arena = new GeometryArena();
+    private final List<Hittable> models = new ArrayList<>();
+    private final List<Material> materials = new ArrayList<>();
+    private final List<Hittable> geometries = new ArrayList<>();
+    private final Map<String, Integer> geometryIndices = new HashMap<>();
+    private final Map<String, Integer> materialIndices = new HashMap<>();
+    /**
+     * Material name of every model or null when referenced by index. Names are resolved after whole file
+     * is read, so objects may precede materials.
+     */
+    private final List<String> materialNames = new ArrayList<>();
+
+    private SceneLoader(final Reader reader, final Path baseDirectory) {
+        this.reader = new JsonReader(reader);
+        this.baseDirectory = baseDirectory;
+    }
+
+    /**
+     * @param file   Scene file or compiled scene cache.
+     * @param camera Camera set by the file, or null to ignore camera of the file.
+     * @return Loaded scene owning its arena.
+     * @throws IllegalArgumentException Malformed file.
+     */
+    public static Scene load(final Path file, Camera camera) throws IOException {
+        if (SceneCache.isCache(file)) {
+            return SceneCache.read(file, camera);
+        }
+
+        Path baseDirectory = file.toAbsolutePath().getParent();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader, baseDirectory, camera);
+        }
+    }
+
+    /**
+     * @param reader        Scene JSON.
+     * @param baseDirectory Directory of relative mesh files.
+     * @param camera        Camera set by the file, or null to ignore camera of the file.
+     * @return Loaded scene owning its arena.
+     * @throws IllegalArgumentException Malformed file.
+     */
+    public static Scene load(final Reader reader, final Path baseDirectory, Camera camera) throws IOException {
+        return new SceneLoader(reader, baseDirectory).read(camera);
+    }
+
+    /**
+     * Load scene bundled with application.
+     *
+     * @param camera Camera set by the scene, or null.
+     * @return Default scene.
+     */
+    public static Scene loadDefault(Camera camera) {
+        try (InputStream input = SceneLoader.class.getResourceAsStream(DEFAULT_SCENE)) {
+            if (input == null) {
+                throw new IllegalStateException(String.format("Missing scene resource. Resource value=%s", DEFAULT_SCENE));
+            }
+            return load(new InputStreamReader(input, StandardCharsets.UTF_8), Path.of(""), camera);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Scene read(Camera camera) throws IOException {
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "camera" -> readCamera(camera);
+                    case "materials" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readMaterial();
+                        }
+                        reader.endArray();
+                    }
+                    case "geometries" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readObject(true);
+                        }
+                        reader.endArray();
+                    }
+                    case "objects" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readObject(false);
+                        }
+                        reader.endArray();
+                    }
+                    default -> throw unknownKey(name);
+                }
+            }
+            reader.endObject();
+            if (reader.peek() != JsonReader.Token.END_DOCUMENT) {
+                throw reader.syntaxError("Expected end of scene file");
+            }
+
+            resolveMaterials();
+            Scene scene = new Scene(models, materials, arena);
+            scene.setGeometries(geometries);
+            return scene;
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private void readCamera(Camera camera) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "position" -> {
+                    Vector3D position = readVector();
+                    if (camera != null) {
+                        camera.setPosition(position);
+                    }
+                }
+                case "forward" -> {
+                    Vector3D forward = readVector();
+                    if (camera != null) {
+                        camera.setForwardDirection(forward);
+                    }
+                }
+                case "verticalFov" -> {
+                    double verticalFov = reader.nextDouble();
+                    if (camera != null) {
+                        camera.setVerticalFOV(verticalFov);
+                    }
+                }
+                case "nearClip" -> {
+                    double nearClip = reader.nextDouble();
+                    if (camera != null) {
+                        camera.setNearClip(nearClip);
+                    }
+                }
+                case "farClip" -> {
+                    double farClip = reader.nextDouble();
+                    if (camera != null) {
+                        camera.setFarClip(farClip);
+                    }
+                }
+                default -> throw unknownKey(name);
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readMaterial() throws IOException {
+        String materialName = null;
+        Vector3D albedo = null;
+        float roughness = 0.0f;
+        float metallic = 0.0f;
+        Vector3D emissionColor = new Vector3D(0.0, 0.0, 0.0);
+        float emissionPower = 0.0f;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "name" -> materialName = reader.nextString();
+                case "albedo" -> albedo = readVector();
+                case "roughness" -> roughness = (float) reader.nextDouble();
+                case "metallic" -> metallic = (float) reader.nextDouble();
+                case "emissionColor" -> emissionColor = readVector();
+                case "emissionPower" -> emissionPower = (float) reader.nextDouble();
+                default -> throw unknownKey(name);
+            }
+        }
+        if (albedo == null) {
+            throw reader.syntaxError("Material needs albedo");
+        }
+        reader.endObject();
+
+        if (materialName != null && materialIndices.putIfAbsent(materialName, materials.size()) != null) {
+            throw reader.syntaxError(String.format("Duplicate material name. Name value=%s", materialName));
+        }
+        materials.add(new Material(albedo, roughness, metallic, emissionColor, emissionPower));
+    }
+
+    /**
+     * Read object of objects list or shared geometry of geometries list.
+     *
+     * @param geometry True to read named geometry of instances.
+     */
+    private void readObject(final boolean geometry) throws IOException {
+        String type = null;
+        String objectName = null;
+        Integer materialIndex = null;
+        String materialName = null;
+        Vector3D position = null;
+        double radius = Double.NaN;
+        String file = null;
+        float[] vertices = null;
+        int[] indices = null;
+        float[] normals = null;
+        String geometryName = null;
+        Matrix4X4D transform = null;
+        Vector3D translation = null;
+        Vector3D rotation = null;
+        Vector3D scale = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "type" -> type = reader.nextString();
+                case "name" -> objectName = reader.nextString();
+                case "material" -> {
+                    if (reader.peek() == JsonReader.Token.STRING) {
+                        materialName = reader.nextString();
+                    } else {
+                        materialIndex = reader.nextInt();
+                    }
+                }
+                case "position" -> position = readVector();
+                case "radius" -> radius = reader.nextDouble();
+                case "file" -> file = reader.nextString();
+                case "vertices" -> vertices = readFloats();
+                case "indices" -> indices = readInts();
+                case "normals" -> normals = readFloats();
+                case "geometry" -> geometryName = reader.nextString();
+                case "transform" -> transform = readMatrix();
+                case "translation" -> translation = readVector();
+                case "rotation" -> rotation = readVector();
+                case "scale" -> {
+                    if (reader.peek() == JsonReader.Token.NUMBER) {
+                        double uniformScale = reader.nextDouble();
+                        scale = new Vector3D(uniformScale, uniformScale, uniformScale);
+                    } else {
+                        scale = readVector();
+                    }
+                }
+                default -> throw unknownKey(name);
+            }
+        }
+
+        Hittable model;
+        if ("sphere".equals(type)) {
+            if (position == null || Double.isNaN(radius)) {
+                throw reader.syntaxError("Sphere needs position and radius");
+            }
+            Sphere sphere = new Sphere();
+            sphere.setPosition(position);
+            sphere.setRadius(radius);
+            model = sphere;
+        } else if ("mesh".equals(type)) {
+            if (file != null) {
+                model = ObjReader.read(baseDirectory.resolve(file), arena);
+            } else if (vertices != null && indices != null) {
+                model = new TriangleMesh(arena, vertices, indices, normals);
+            } else {
+                throw reader.syntaxError("Mesh needs file or vertices and indices");
+            }
+        } else if ("instance".equals(type) && !geometry) {
+            Integer geometryIndex = geometryIndices.get(geometryName);
+            if (geometryIndex == null) {
+                throw reader.syntaxError(String.format(
+                        "Unknown geometry, geometries have to precede objects. Geometry value=%s", geometryName));
+            }
+            if (transform == null) {
+                transform = composeTransform(translation, rotation, scale);
+            } else if (translation != null || rotation != null || scale != null) {
+                throw reader.syntaxError("Instance needs either transform or translation, rotation and scale");
+            }
+            model = new Instance(geometries.get(geometryIndex), geometryIndex, transform);
+        } else {
+            throw reader.syntaxError(String.format("Unknown object type. Type value=%s", type));
+        }
+        reader.endObject();
+
+        if (geometry) {
+            if (objectName == null || geometryIndices.putIfAbsent(objectName, geometries.size()) != null) {
+                throw reader.syntaxError(String.format("Geometry needs unique name. Name value=%s", objectName));
+            }
+            geometries.add(model);
+            return;
+        }
+
+        if (materialName == null && materialIndex == null) {
+            throw reader.syntaxError("Object needs material");
+        }
+        model.setObjectIndex(models.size());
+        if (materialIndex != null) {
+            model.setMaterialIndex(materialIndex);
+        }
+        models.add(model);
+        materialNames.add(materialName);
+    }
+
+    /**
+     * Object to world transform which scales, then rotates around x, y and z axis and then translates.
+     *
+     * @param translation Translation or null.
+     * @param rotation    Angles in degrees around x, y, z axis or null.
+     * @param scale       Scale on x, y, z axis or null.
+     * @return Row-oriented transform.
+     */
+    private static Matrix4X4D composeTransform(final Vector3D translation, final Vector3D rotation,
+                                               final Vector3D scale) {
+        Matrix4X4D transform = new Matrix4X4D();
+        transform.setIdentity();
+        if (scale != null) {
+            transform.mul(Matrix4X4D.scaling(scale.getX(), scale.getY(), scale.getZ()));
+        }
+        if (rotation != null) {
+            transform.mul(Matrix4X4D.rotationX(Math.toRadians(rotation.getX())));
+            transform.mul(Matrix4X4D.rotationY(Math.toRadians(rotation.getY())));
+            transform.mul(Matrix4X4D.rotationZ(Math.toRadians(rotation.getZ())));
+        }
+        if (translation != null) {
+            transform.mul(Matrix4X4D.translation(translation.getX(), translation.getY(), translation.getZ()));
+        }
+        return transform;
+    }
+
+    private void resolveMaterials() {
+        for (int i = 0; i < models.size(); i++) {
+            Hittable model = models.get(i);
+            String materialName = materialNames.get(i);
+            if (materialName != null) {
+                Integer materialIndex = materialIndices.get(materialName);
+                if (materialIndex == null) {
+                    throw new IllegalArgumentException(
+                            String.format("Unknown material. Name value=%s", materialName));
+                }
+                model.setMaterialIndex(materialIndex);
+            }
+            if (model.getMaterialIndex() < 0 || model.getMaterialIndex() >= materials.size()) {
+                throw new IllegalArgumentException(String.format(
+                        "Material index out of range. Object index=%d, material index=%d",
+                        model.getObjectIndex(), model.getMaterialIndex()));
+            }
+        }
+    }
+
+    /**
+     * Read 16 elements of row-oriented matrix, row by row.
+     */
+    private Matrix4X4D readMatrix() throws IOException {
+        reader.beginArray();
+        Matrix4X4D matrix = new Matrix4X4D();
+        for (int i = 0; i < 16; i++) {
+            matrix.setElement(i / 4, i % 4, reader.nextDouble());
+        }
+        if (reader.hasNext()) {
+            throw reader.syntaxError("Matrix needs exactly 16 elements");
+        }
+        reader.endArray();
+        return matrix;
+    }
+
+    private Vector3D readVector() throws IOException {
+        reader.beginArray();
+        Vector3D vector = new Vector3D(reader.nextDouble(), reader.nextDouble(), reader.nextDouble());
+        if (reader.hasNext()) {
+            throw reader.syntaxError("Vector needs exactly 3 components");
+        }
+        reader.endArray();
+        return vector;
+    }
+
+    private float[] readFloats() throws IOException {
+        float[] values = new float[64];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = (float) reader.nextDouble();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, count);
+    }
+
+    private int[] readInts() throws IOException {
+        int[] values = new int[64];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = reader.nextInt();
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, count);
+    }
+
+    private IllegalArgumentException unknownKey(final String name) {
+        return reader.syntaxError(String.format("Unknown key. Key value=%s", name));
+    }
+}
@@ -8,10 +8,15 @@ import static cz.pk.traycer.pktracer.engine.Constants.MIN_RGB;
 
 public class MathUtility {
 
-    private static final XoRoShiRo128PlusRandom random =
-            new XoRoShiRo128PlusRandom(System.currentTimeMillis());
+    /**
+     * Generator of calling thread. Render workers use their own {@link cz.pk.traycer.pktracer.engine.sampling.Sampler},
+     * this one is only for convenience calls outside of render loop.
+     */
+    private static final ThreadLocal<XoRoShiRo128PlusRandom> randomThreadLocal =
+            ThreadLocal.withInitial(() -> new XoRoShiRo128PlusRandom(System.nanoTime()));
 
     public static Vector3D randomInUnitSphere() {
+        XoRoShiRo128PlusRandom random = randomThreadLocal.get();
         return Vector3D.normalize(new Vector3D(
                 random.nextDouble(-1.0, 1.0),
                 random.nextDouble(-1.0, 1.0),
@@ -20,13 +25,14 @@ public class MathUtility {
     }
 
     public static void changeSeed(long seed) {
-        random.setSeed(seed);
+        randomThreadLocal.get().setSeed(seed);
     }
 
     /*
     https://karthikkaranth.me/blog/generating-random-points-in-a-sphere/
      */
     public static Vector3D randomInUnitSphere2() {
+        XoRoShiRo128PlusRandom random = randomThreadLocal.get();
         double x, y, z, d;
         do {
             x = random.nextDouble() * 2.0 - 1.0;
@@ -1,5 +1,7 @@
 package cz.pk.traycer.pktracer.engine.math;
 
+import java.util.Arrays;
+
 /**
  * Based on this implementation: https://geosoft.no/software/matrix4x4/Matrix4x4.java.html
  */
@@ -239,19 +241,18 @@ public class Matrix4X4D {
      * @return result after multiplication.
      */
     public Matrix4X4D mul(Matrix4X4D m) {
-        Matrix4X4D result = new Matrix4X4D();
+        double[] product = new double[DIMENSIONS_SQUARED];
         for (int i = 0; i < DIMENSIONS_SQUARED; i += DIMENSION) {
             for (int j = 0; j < DIMENSION; j++) {
-                elements[i + j] = 0;
                 for (int k = 0; k < DIMENSION; k++) {
-                    elements[i + j] += elements[i + k] * elements[k * 4 + j];
+                    product[i + j] += elements[i + k] * m.elements[k * 4 + j];
                 }
             }
         }
 
-        result.set(elements);
+        set(product);
 
-        return result;
+        return new Matrix4X4D(this);
     }
 
     /**
@@ -270,17 +271,27 @@ public class Matrix4X4D {
     }
 
     public Vector4D mul(Vector4D v) {
-        Vector4D result = new Vector4D();
-
-        for (int y = 0; y < DIMENSION; y++) {
-            double value = 0.0;
-            for (int x = 0; x < DIMENSION; x++) {
-                value += getElement(y, x) * v.getElement(x);
-            }
-            result.setElement(y, value);
-        }
+        return mulInto(v, new Vector4D());
+    }
 
-        return result;
+    /**
+     * Multiply vector v by this matrix without allocation.
+     *
+     * @param v   Vector to multiply.
+     * @param dst Result vector, may be the same object as v.
+     * @return dst.
+     */
+    public Vector4D mulInto(final Vector4D v, Vector4D dst) {
+        double x = v.getX();
+        double y = v.getY();
+        double z = v.getZ();
+        double w = v.getW();
+
+        return dst.set(
+                elements[0] * x + elements[1] * y + elements[2] * z + elements[3] * w,
+                elements[4] * x + elements[5] * y + elements[6] * z + elements[7] * w,
+                elements[8] * x + elements[9] * y + elements[10] * z + elements[11] * w,
+                elements[12] * x + elements[13] * y + elements[14] * z + elements[15] * w);
     }
 
     public Vector4D mul(final double x, final double y, final double z, final double w) {
@@ -481,9 +492,129 @@ public class Matrix4X4D {
         return result;
     }
 
-    // todo:
-    // rotateX
-    // rotateY
-    // rotateZ
-    // scale
+    /**
+     * Row-oriented translation matrix, translation is in the last row like in {@link #translate(double, double, double)}.
+     */
+    public static Matrix4X4D translation(final double dx, final double dy, final double dz) {
+        return new Matrix4X4D(
+                1.0, 0.0, 0.0, 0.0,
+                0.0, 1.0, 0.0, 0.0,
+                0.0, 0.0, 1.0, 0.0,
+                dx, dy, dz, 1.0);
+    }
+
+    public static Matrix4X4D scaling(final double sx, final double sy, final double sz) {
+        return new Matrix4X4D(
+                sx, 0.0, 0.0, 0.0,
+                0.0, sy, 0.0, 0.0,
+                0.0, 0.0, sz, 0.0,
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    /**
+     * Row-oriented counterclockwise rotation around x axis.
+     *
+     * @param angle Angle in radians.
+     */
+    public static Matrix4X4D rotationX(final double angle) {
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        return new Matrix4X4D(
+                1.0, 0.0, 0.0, 0.0,
+                0.0, cos, sin, 0.0,
+                0.0, -sin, cos, 0.0,
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    /**
+     * Row-oriented counterclockwise rotation around y axis.
+     *
+     * @param angle Angle in radians.
+     */
+    public static Matrix4X4D rotationY(final double angle) {
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        return new Matrix4X4D(
+                cos, 0.0, -sin, 0.0,
+                0.0, 1.0, 0.0, 0.0,
+                sin, 0.0, cos, 0.0,
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    /**
+     * Row-oriented counterclockwise rotation around z axis.
+     *
+     * @param angle Angle in radians.
+     */
+    public static Matrix4X4D rotationZ(final double angle) {
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        return new Matrix4X4D(
+                cos, sin, 0.0, 0.0,
+                -sin, cos, 0.0, 0.0,
+                0.0, 0.0, 1.0, 0.0,
+                0.0, 0.0, 0.0, 1.0);
+    }
+
+    /**
+     * Transform point as row vector (x, y, z, 1) multiplied by this row-oriented affine matrix, without allocation.
+     *
+     * @param point Transformed point.
+     * @param dst   Result point, may be the same object as point.
+     * @return dst.
+     */
+    public Vector3D transformPointInto(final Vector3D point, Vector3D dst) {
+        double x = point.getX();
+        double y = point.getY();
+        double z = point.getZ();
+        return dst.set(
+                x * elements[0] + y * elements[4] + z * elements[8] + elements[12],
+                x * elements[1] + y * elements[5] + z * elements[9] + elements[13],
+                x * elements[2] + y * elements[6] + z * elements[10] + elements[14]);
+    }
+
+    /**
+     * Transform direction as row vector (x, y, z, 0), translation doesn't apply. Length is not preserved.
+     *
+     * @param direction Transformed direction.
+     * @param dst       Result direction, may be the same object as direction.
+     * @return dst.
+     */
+    public Vector3D transformDirectionInto(final Vector3D direction, Vector3D dst) {
+        double x = direction.getX();
+        double y = direction.getY();
+        double z = direction.getZ();
+        return dst.set(
+                x * elements[0] + y * elements[4] + z * elements[8],
+                x * elements[1] + y * elements[5] + z * elements[9],
+                x * elements[2] + y * elements[6] + z * elements[10]);
+    }
+
+    /**
+     * Transform surface normal by transposed 3x3 part of this matrix. Called on the inverse of point transform,
+     * it keeps normal perpendicular to transformed surface. Result is not normalized.
+     *
+     * @param normal Transformed normal.
+     * @param dst    Result normal, may be the same object as normal.
+     * @return dst.
+     */
+    public Vector3D transformNormalInto(final Vector3D normal, Vector3D dst) {
+        double x = normal.getX();
+        double y = normal.getY();
+        double z = normal.getZ();
+        return dst.set(
+                elements[0] * x + elements[1] * y + elements[2] * z,
+                elements[4] * x + elements[5] * y + elements[6] * z,
+                elements[8] * x + elements[9] * y + elements[10] * z);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof Matrix4X4D m && Arrays.equals(elements, m.elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(elements);
+    }
 }
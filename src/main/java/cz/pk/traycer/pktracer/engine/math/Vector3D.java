@@ -54,6 +54,27 @@ public class Vector3D {
         }
     }
 
+    /**
+     * Set all components of this vector.
+     *
+     * @return This vector.
+     */
+    public Vector3D set(final double x, final double y, final double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copy components of given vector to this vector.
+     *
+     * @return This vector.
+     */
+    public Vector3D set(final Vector3D v) {
+        return set(v.getX(), v.getY(), v.getZ());
+    }
+
     public Vector3D neg() {
         return new Vector3D(
                 -this.x,
@@ -140,4 +161,53 @@ public class Vector3D {
     public static Vector3D normalize(final Vector3D v) {
         return unitVector3D(v);
     }
+
+    /*
+     * Destination variants of operations above. Result is written to dst, which may be the same
+     * object as any operand, and dst is returned. Nothing is allocated, so they are meant for
+     * hot paths with preallocated scratch vectors.
+     */
+
+    public static Vector3D addInto(final Vector3D u, final Vector3D v, Vector3D dst) {
+        return dst.set(u.getX() + v.getX(), u.getY() + v.getY(), u.getZ() + v.getZ());
+    }
+
+    public static Vector3D subInto(final Vector3D u, final Vector3D v, Vector3D dst) {
+        return dst.set(u.getX() - v.getX(), u.getY() - v.getY(), u.getZ() - v.getZ());
+    }
+
+    public static Vector3D mulInto(final Vector3D u, final double t, Vector3D dst) {
+        return dst.set(u.getX() * t, u.getY() * t, u.getZ() * t);
+    }
+
+    public static Vector3D mulInto(final Vector3D u, final Vector3D v, Vector3D dst) {
+        return dst.set(u.getX() * v.getX(), u.getY() * v.getY(), u.getZ() * v.getZ());
+    }
+
+    /**
+     * Multiply and add, dst = u + v * t.
+     */
+    public static Vector3D mulAdd(final Vector3D u, final Vector3D v, final double t, Vector3D dst) {
+        return dst.set(u.getX() + v.getX() * t, u.getY() + v.getY() * t, u.getZ() + v.getZ() * t);
+    }
+
+    /**
+     * Component-wise multiply and add, dst = u + v * w.
+     */
+    public static Vector3D mulAdd(final Vector3D u, final Vector3D v, final Vector3D w, Vector3D dst) {
+        return dst.set(
+                u.getX() + v.getX() * w.getX(),
+                u.getY() + v.getY() * w.getY(),
+                u.getZ() + v.getZ() * w.getZ());
+    }
+
+    public static Vector3D crossInto(final Vector3D u, final Vector3D v, Vector3D dst) {
+        return dst.set(u.getY() * v.getZ() - u.getZ() * v.getY(),
+                u.getZ() * v.getX() - u.getX() * v.getZ(),
+                u.getX() * v.getY() - u.getY() * v.getX());
+    }
+
+    public static Vector3D normalizeInto(final Vector3D v, Vector3D dst) {
+        return mulInto(v, 1.0 / v.length(), dst);
+    }
 }
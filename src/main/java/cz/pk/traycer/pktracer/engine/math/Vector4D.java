@@ -64,6 +64,19 @@ public class Vector4D {
         }
     }
 
+    /**
+     * Set all components of this vector.
+     *
+     * @return This vector.
+     */
+    public Vector4D set(final double x, final double y, final double z, final double w) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.w = w;
+        return this;
+    }
+
     public Vector4D neg() {
         return new Vector4D(
                 -this.x,
@@ -78,7 +91,7 @@ public class Vector4D {
                 this.x + v.getX(),
                 this.y + v.getY(),
                 this.z + v.getZ(),
-                this.z + v.getW()
+                this.w + v.getW()
         );
     }
 
@@ -165,4 +178,16 @@ public class Vector4D {
     public static Vector4D normalize(final Vector4D v) {
         return unitVector4D(v);
     }
+
+    /*
+     * Destination variants, result is written to dst (may be an operand) and dst is returned.
+     */
+
+    public static Vector4D addInto(final Vector4D u, final Vector4D v, Vector4D dst) {
+        return dst.set(u.getX() + v.getX(), u.getY() + v.getY(), u.getZ() + v.getZ(), u.getW() + v.getW());
+    }
+
+    public static Vector4D mulInto(final Vector4D u, final double t, Vector4D dst) {
+        return dst.set(u.getX() * t, u.getY() * t, u.getZ() * t, u.getW() * t);
+    }
 }
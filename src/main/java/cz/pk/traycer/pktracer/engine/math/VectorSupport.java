@@ -0,0 +1,25 @@
+package cz.pk.traycer.pktracer.engine.math;
+
+/**
+ * Availability of the JDK Vector API. <br>
+ * Module {@code jdk.incubator.vector} is an optional dependency, it is present only when the JVM is
+ * started with {@code --add-modules jdk.incubator.vector}. Classes using the API may be loaded only
+ * when {@link #isAvailable()} returns true, scalar code is used otherwise.
+ */
+public class VectorSupport {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    /**
+     * System property forcing scalar code even when the Vector API is available.
+     */
+    public static final String DISABLE_PROPERTY = "pktracer.vector.disable";
+
+    private static final boolean AVAILABLE = ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()
+            && !Boolean.getBoolean(DISABLE_PROPERTY);
+
+    private VectorSupport() {
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+}
@@ -0,0 +1,185 @@
+package cz.pk.traycer.pktracer.engine.memory;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owner of off-heap memory holding scene geometry (mesh vertices, indices, normals, BVH nodes)
+ * or other large buffers, optionally mapped from files. <br>
+ * All buffers are direct and in native byte order, so geometry doesn't live in the Java heap
+ * and the garbage collector never scans or copies it.
+ *
+ * <p>
+ * Memory of all buffers is released together and deterministically by {@link #close()}, mapped files are unmapped.
+ * Access is not checked like in {@code java.lang.foreign.Arena}, which is only a preview API in JDK 21, so no buffer
+ * or its view may be used after that. Arena used by frames is therefore never closed directly while rendering,
+ * renderer retires it and closes it at frame boundary, see {@link cz.pk.traycer.pktracer.engine.Renderer#retire(Runnable)}.
+ */
+public class GeometryArena implements AutoCloseable {
+    /**
+     * {@code sun.misc.Unsafe.invokeCleaner} bound to the instance, looked up by name so no internal API
+     * is referenced at compile time.
+     */
+    private static final MethodHandle INVOKE_CLEANER = loadCleaner();
+
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    @Getter
+    private long allocatedBytes;
+    @Getter
+    private boolean closed;
+
+    /**
+     * Allocate zero filled off-heap buffer owned by this arena.
+     *
+     * @param bytes Size in bytes.
+     * @return Direct buffer in native byte order.
+     */
+    public synchronized ByteBuffer allocate(final long bytes) {
+        if (closed) {
+            throw new IllegalStateException("Geometry arena is already closed.");
+        }
+        if (bytes < 0 || bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    String.format("Buffer size out of bounds. Fill 0 to %d as size value. Size value=%d",
+                            Integer.MAX_VALUE, bytes));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+        buffers.add(buffer);
+        allocatedBytes += bytes;
+
+        return buffer;
+    }
+
+    /**
+     * Map file to memory by overlapping regions, owned by this arena. File is created or extended when shorter
+     * than mapped size. Changes of the buffers are written to the file.
+     *
+     * @param file        Mapped file.
+     * @param bytes       Mapped size in bytes from start of the file, may exceed {@link Integer#MAX_VALUE}.
+     * @param regionBytes Size of region, at most {@link MappedRegions#MAX_REGION_BYTES}.
+     * @return Read-write regions in native byte order.
+     */
+    public synchronized MappedRegions mapRegions(final Path file, final long bytes, final long regionBytes)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return mapRegions(channel, FileChannel.MapMode.READ_WRITE, bytes, regionBytes);
+        }
+    }
+
+    /**
+     * Map whole file to memory for reading by overlapping regions, owned by this arena. Pages are read
+     * from the file when they are first touched.
+     *
+     * @param file        Mapped file.
+     * @param regionBytes Size of region, at most {@link MappedRegions#MAX_REGION_BYTES}.
+     * @return Read-only regions in native byte order.
+     */
+    public synchronized MappedRegions mapRegionsReadOnly(final Path file, final long regionBytes)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return mapRegions(channel, FileChannel.MapMode.READ_ONLY, channel.size(), regionBytes);
+        }
+    }
+
+    private MappedRegions mapRegions(final FileChannel channel, final FileChannel.MapMode mode, final long bytes,
+                                     final long regionBytes) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Geometry arena is already closed.");
+        }
+        if (regionBytes <= 0 || regionBytes > MappedRegions.MAX_REGION_BYTES) {
+            throw new IllegalArgumentException(
+                    String.format("Region size out of bounds. Fill 1 to %d as region size value. Region size value=%d",
+                            MappedRegions.MAX_REGION_BYTES, regionBytes));
+        }
+        if (bytes < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Buffer size out of bounds. Fill positive size value. Size value=%d", bytes));
+        }
+
+        ByteBuffer[] regions = new ByteBuffer[MappedRegions.regionCount(bytes, regionBytes)];
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = channel.map(mode, i * regionBytes, MappedRegions.mappedBytes(bytes, regionBytes, i))
+                    .order(ByteOrder.nativeOrder());
+            buffers.add(regions[i]);
+        }
+        allocatedBytes += bytes;
+
+        return new MappedRegions(bytes, regionBytes, regions);
+    }
+
+    public FloatBuffer allocateFloats(final int count) {
+        return allocate((long) count * Float.BYTES).asFloatBuffer();
+    }
+
+    public IntBuffer allocateInts(final int count) {
+        return allocate((long) count * Integer.BYTES).asIntBuffer();
+    }
+
+    public FloatBuffer copyOf(final float[] values) {
+        FloatBuffer buffer = allocateFloats(values.length);
+        buffer.put(0, values);
+        return buffer;
+    }
+
+    public IntBuffer copyOf(final int[] values) {
+        IntBuffer buffer = allocateInts(values.length);
+        buffer.put(0, values);
+        return buffer;
+    }
+
+    /**
+     * Release memory of all buffers allocated by this arena.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        for (ByteBuffer buffer : buffers) {
+            free(buffer);
+        }
+        buffers.clear();
+        allocatedBytes = 0;
+    }
+
+    private static void free(final ByteBuffer buffer) {
+        try {
+            INVOKE_CLEANER.invokeExact(buffer);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to release off-heap memory.", e);
+        }
+    }
+
+    private static MethodHandle loadCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to access off-heap memory cleaner.", e);
+        }
+    }
+}
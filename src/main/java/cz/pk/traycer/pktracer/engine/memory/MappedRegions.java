@@ -0,0 +1,89 @@
+package cz.pk.traycer.pktracer.engine.memory;
+
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+/**
+ * File mapped to memory by overlapping regions, so it can be longer than one buffer can address. <br>
+ * Region {@code i} starts at {@code i * regionBytes} and maps up to {@code 2 * regionBytes - 1} bytes, so every
+ * block of at most {@code regionBytes} bytes is whole in mapping of the region it starts in and can be wrapped
+ * as one buffer. Overlap costs only address space, pages of the file are shared by both mappings.
+ *
+ * <p>
+ * Created by {@link GeometryArena#mapRegions(java.nio.file.Path, long, long)} or
+ * {@link GeometryArena#mapRegionsReadOnly(java.nio.file.Path, long)}, the arena owns the mappings.
+ */
+@Getter
+public class MappedRegions {
+    /**
+     * Largest region size, mapping of a region has to fit to one buffer.
+     */
+    public static final long MAX_REGION_BYTES = 1L << 30;
+
+    private final long size;
+    private final long regionBytes;
+    private final ByteBuffer[] regions;
+
+    MappedRegions(final long size, final long regionBytes, final ByteBuffer[] regions) {
+        this.size = size;
+        this.regionBytes = regionBytes;
+        this.regions = regions;
+    }
+
+    /**
+     * Region starting at the end of file is mapped too, so even empty block at the end can be wrapped.
+     */
+    static int regionCount(final long size, final long regionBytes) {
+        return (int) (size / regionBytes + 1);
+    }
+
+    static long mappedBytes(final long size, final long regionBytes, final int region) {
+        return Math.min(size - region * regionBytes, 2 * regionBytes - 1);
+    }
+
+    /**
+     * @param offset File position.
+     * @return Mapping of region containing the position, in native byte order, see {@link #localOffset(long)}.
+     */
+    public ByteBuffer region(final long offset) {
+        return regions[(int) (offset / regionBytes)];
+    }
+
+    /**
+     * @param offset File position.
+     * @return Index of the position in buffer returned by {@link #region(long)}.
+     */
+    public int localOffset(final long offset) {
+        return (int) (offset % regionBytes);
+    }
+
+    /**
+     * Wrap block of the file as one buffer.
+     *
+     * @param offset File position of the block.
+     * @param bytes  Size of the block, at most region size.
+     * @return Buffer of the block in native byte order.
+     */
+    public ByteBuffer slice(final long offset, final long bytes) {
+        if (offset < 0 || bytes < 0 || bytes > regionBytes || offset + bytes > size) {
+            throw new IllegalArgumentException(String.format(
+                    "Block out of mapped regions. Offset value=%d, size value=%d", offset, bytes));
+        }
+
+        return region(offset).slice(localOffset(offset), (int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Write changes of all regions to the file.
+     */
+    public void force() {
+        for (ByteBuffer region : regions) {
+            if (region instanceof MappedByteBuffer mapped) {
+                mapped.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package cz.pk.traycer.pktracer.engine.sampling;
+
+import cz.pk.traycer.pktracer.engine.Material;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.shapes.Hittable;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Explicit sampling of emissive spheres for next-event estimation. <br>
+ * Light is picked uniformly, direction toward it is sampled uniformly inside the cone the sphere subtends
+ * from shading point. Based on: <br>
+ * <a href="https://pbr-book.org/3ed-2018/Light_Transport_I_Surface_Reflection/Sampling_Light_Sources#SamplingSpheres">
+ * Physically Based Rendering, Sampling Spheres</a>
+ *
+ * <p>
+ * Emissive models other than spheres are not sampled, they are found only by scattered rays.
+ * Immutable, shared by all render workers.
+ */
+public class LightSampler {
+    public static final int NO_LIGHT = -1;
+
+    private final Sphere[] spheres;
+    /**
+     * Radiance leaving light surface, emission scaled by albedo as for lights hit by scattered rays.
+     */
+    private final Vector3D[] radiances;
+    private final int[] lightIndices;
+
+    public LightSampler(final Scene scene) {
+        List<Sphere> emissiveSpheres = scene.emissiveModels().stream()
+                .filter(Sphere.class::isInstance)
+                .map(Sphere.class::cast)
+                .toList();
+
+        spheres = emissiveSpheres.toArray(new Sphere[0]);
+        radiances = new Vector3D[spheres.length];
+        lightIndices = new int[scene.getModels().size()];
+        Arrays.fill(lightIndices, NO_LIGHT);
+        for (int i = 0; i < spheres.length; i++) {
+            Material material = scene.getMaterials().get(spheres[i].getMaterialIndex());
+            Vector3D emission = material.getEmission();
+            radiances[i] = new Vector3D();
+            Vector3D.mulInto(emission, material.getAlbedo(), radiances[i]);
+            lightIndices[spheres[i].getObjectIndex()] = i;
+        }
+    }
+
+    public int size() {
+        return spheres.length;
+    }
+
+    public boolean isEmpty() {
+        return spheres.length == 0;
+    }
+
+    /**
+     * @param objectIndex Index of scene model.
+     * @return Index of light or {@link #NO_LIGHT} when model is not sampled light.
+     */
+    public int lightIndexOf(final int objectIndex) {
+        return objectIndex < lightIndices.length ? lightIndices[objectIndex] : NO_LIGHT;
+    }
+
+    public int getObjectIndex(final int light) {
+        return spheres[light].getObjectIndex();
+    }
+
+    public Vector3D getRadiance(final int light) {
+        return radiances[light];
+    }
+
+    /**
+     * @param u Uniform random number from [0, 1).
+     * @return Index of uniformly picked light.
+     */
+    public int pick(final double u) {
+        return Math.min((int) (u * spheres.length), spheres.length - 1);
+    }
+
+    /**
+     * Solid angle density of directions toward given light, including probability of picking the light.
+     *
+     * @param light  Index of light.
+     * @param origin Shading point.
+     * @return Density, 0 when the point is inside the light.
+     */
+    public double pdf(final int light, final Vector3D origin) {
+        double sinSquared = sinThetaMaxSquared(spheres[light], origin);
+        if (sinSquared >= 1.0) {
+            return 0.0;
+        }
+
+        // 1 - cos computed from sin avoids cancellation for small and distant lights
+        double oneMinusCos = sinSquared / (1.0 + Math.sqrt(1.0 - sinSquared));
+        return 1.0 / (spheres.length * 2.0 * Math.PI * oneMinusCos);
+    }
+
+    /**
+     * Direction uniformly distributed inside the cone subtended by given light.
+     * Has to be called only when {@link #pdf} of the light is positive.
+     *
+     * @param light     Index of light.
+     * @param origin    Shading point.
+     * @param u1        Uniform random number from [0, 1).
+     * @param u2        Uniform random number from [0, 1).
+     * @param direction Result vector.
+     * @return direction.
+     */
+    public Vector3D sampleDirection(final int light, final Vector3D origin, final double u1, final double u2,
+                                    Vector3D direction) {
+        Sphere sphere = spheres[light];
+        // Sphere center is -position, see Sphere#getCenter
+        double axisX = -sphere.getPosition().getX() - origin.getX();
+        double axisY = -sphere.getPosition().getY() - origin.getY();
+        double axisZ = -sphere.getPosition().getZ() - origin.getZ();
+        double inverseLength = 1.0 / Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        axisX *= inverseLength;
+        axisY *= inverseLength;
+        axisZ *= inverseLength;
+
+        double cosMax = Math.sqrt(1.0 - sinThetaMaxSquared(sphere, origin));
+        double cosTheta = (1.0 - u1) + u1 * cosMax;
+        double sinTheta = Math.sqrt(Math.max(0.0, 1.0 - cosTheta * cosTheta));
+        double phi = 2.0 * Math.PI * u2;
+        double tangentWeight = sinTheta * Math.cos(phi);
+        double bitangentWeight = sinTheta * Math.sin(phi);
+
+        // Orthonormal basis around axis, Duff et al.: Building an Orthonormal Basis, Revisited
+        double sign = Math.copySign(1.0, axisZ);
+        double a = -1.0 / (sign + axisZ);
+        double b = axisX * axisY * a;
+        double tangentX = 1.0 + sign * axisX * axisX * a;
+        double tangentY = sign * b;
+        double tangentZ = -sign * axisX;
+        double bitangentX = b;
+        double bitangentY = sign + axisY * axisY * a;
+        double bitangentZ = -axisY;
+
+        return direction.set(
+                cosTheta * axisX + tangentWeight * tangentX + bitangentWeight * bitangentX,
+                cosTheta * axisY + tangentWeight * tangentY + bitangentWeight * bitangentY,
+                cosTheta * axisZ + tangentWeight * tangentZ + bitangentWeight * bitangentZ);
+    }
+
+    private static double sinThetaMaxSquared(final Sphere sphere, final Vector3D origin) {
+        double dx = -sphere.getPosition().getX() - origin.getX();
+        double dy = -sphere.getPosition().getY() - origin.getY();
+        double dz = -sphere.getPosition().getZ() - origin.getZ();
+        return sphere.getRadius() * sphere.getRadius() / (dx * dx + dy * dy + dz * dz);
+    }
+}
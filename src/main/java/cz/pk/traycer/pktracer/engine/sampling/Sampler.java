@@ -0,0 +1,94 @@
+package cz.pk.traycer.pktracer.engine.sampling;
+
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * Random number stream owned by one render worker. <br>
+ * The generator is not shared between threads. Its state is derived from master seed,
+ * pixel index, frame index and bounce, so the numbers consumed by one pixel don't depend
+ * on which worker renders it or in which order the tiles are processed. Same master seed
+ * therefore gives same image for any thread count.
+ */
+public class Sampler {
+
+    /**
+     * Golden ratio increment used by SplitMix64.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long masterSeed;
+    private final XoRoShiRo128PlusRandom random;
+    private long pixelSeed;
+
+    public Sampler(final long masterSeed) {
+        this.masterSeed = masterSeed;
+        this.random = new XoRoShiRo128PlusRandom(masterSeed);
+        this.pixelSeed = masterSeed;
+    }
+
+    /**
+     * Start random stream for given pixel and frame. Stream is positioned at bounce 0.
+     *
+     * @param pixelIndex Index of pixel in viewport (x + y * width).
+     * @param frameIndex Index of accumulated frame.
+     */
+    public void startPixel(final int pixelIndex, final long frameIndex) {
+        pixelSeed = mix(mix(masterSeed + GOLDEN_GAMMA * (pixelIndex + 1L)) + GOLDEN_GAMMA * frameIndex);
+        startBounce(0);
+    }
+
+    /**
+     * Reseed random stream for given bounce of current pixel path.
+     *
+     * @param bounce Bounce index, 0 for camera ray.
+     */
+    public void startBounce(final int bounce) {
+        random.setSeed(mix(pixelSeed + GOLDEN_GAMMA * (bounce + 1L)));
+    }
+
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    /**
+     * Random point inside unit sphere generated by rejection sampling. <br>
+     * <a href="https://karthikkaranth.me/blog/generating-random-points-in-a-sphere/">
+     * https://karthikkaranth.me/blog/generating-random-points-in-a-sphere/</a>
+     *
+     * @return Point inside unit sphere.
+     */
+    public Vector3D randomInUnitSphere() {
+        return randomInUnitSphere(new Vector3D());
+    }
+
+    /**
+     * Random point inside unit sphere written to given vector.
+     *
+     * @param dst Result vector.
+     * @return dst.
+     */
+    public Vector3D randomInUnitSphere(Vector3D dst) {
+        double x, y, z, d;
+        do {
+            x = random.nextDouble() * 2.0 - 1.0;
+            y = random.nextDouble() * 2.0 - 1.0;
+            z = random.nextDouble() * 2.0 - 1.0;
+            d = x*x + y*y + z*z;
+        } while (d > 1.0);
+
+        return dst.set(x, y, z);
+    }
+
+    /**
+     * SplitMix64 finalizer. Spreads close input values (neighbour pixels, frames) to unrelated seeds.
+     *
+     * @param z Input value.
+     * @return Mixed value.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
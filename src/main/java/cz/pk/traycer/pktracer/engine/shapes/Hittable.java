@@ -3,8 +3,10 @@ package cz.pk.traycer.pktracer.engine.shapes;
 import cz.pk.traycer.pktracer.engine.Enums;
 import cz.pk.traycer.pktracer.engine.HitRecord;
 import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.accel.AABB;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 import static cz.pk.traycer.pktracer.engine.HitRecord.EMPTY_MATERIAL_INDEX;
 import static cz.pk.traycer.pktracer.engine.HitRecord.EMPTY_OBJECT_INDEX;
@@ -22,5 +24,39 @@ public abstract class Hittable {
         materialIndex = EMPTY_MATERIAL_INDEX;
     }
 
-    abstract boolean hit(final Ray ray, float rayTMin, float rayTMax, HitRecord hitRecord);
+    /**
+     * Enum hash code is identity based, ordinal keeps hash code of shapes same in every process.
+     */
+    @EqualsAndHashCode.Include(replaces = "shape")
+    private int shapeOrdinal() {
+        return shape.ordinal();
+    }
+
+    /**
+     * Intersect ray with shape. Hit record is updated only by hit with distance inside
+     * (rayTMin, rayTMax) which is closer than current hit record distance.
+     *
+     * @param ray       Ray to intersect.
+     * @param rayTMin   Minimal hit distance.
+     * @param rayTMax   Maximal hit distance.
+     * @param hitRecord Hit record with current closest distance.
+     * @return True when hit record was updated.
+     */
+    public abstract boolean hit(final Ray ray, double rayTMin, double rayTMax, HitRecord hitRecord);
+
+    /**
+     * Complete hit record of closest hit found by {@link #hit(Ray, double, double, HitRecord)}
+     * with world position and world normal facing the ray.
+     *
+     * @param ray       Hit ray.
+     * @param hitRecord Hit record of this shape.
+     */
+    public abstract void closestHit(final Ray ray, HitRecord hitRecord);
+
+    /**
+     * Axis-aligned box enclosing whole shape in world space.
+     *
+     * @return Bounding box.
+     */
+    public abstract AABB getBounds();
 }
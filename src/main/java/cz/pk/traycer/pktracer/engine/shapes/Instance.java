@@ -0,0 +1,122 @@
+package cz.pk.traycer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.accel.AABB;
+import cz.pk.traycer.pktracer.engine.math.Matrix4X4D;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import static cz.pk.traycer.pktracer.engine.Enums.Shape.INSTANCE;
+
+/**
+ * Placement of shared geometry in the scene by its own object to world transform. <br>
+ * Geometry (sphere or mesh with its own {@link cz.pk.traycer.pktracer.engine.accel.BVH}) is stored once in
+ * {@link cz.pk.traycer.pktracer.engine.Scene#getGeometries()}, instances keep only reference and transform.
+ * Scene acceleration structure is built over world bounds of instances, so it is the top level and hierarchy
+ * of mesh is the bottom level. Ray is transformed to object space by cached inverse transform; its direction
+ * is not normalized, so hit distance is the same in both spaces.
+ *
+ * <p>
+ * Transform is row-oriented like {@link Matrix4X4D#lookAt(Vector3D, Vector3D, Vector3D)}, world point is
+ * object point as row vector multiplied by the transform. Hit record gets object and material index of instance.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Getter
+public class Instance extends Hittable {
+    /**
+     * Ray in object space. Geometry of instance is never an instance, so one ray per thread is enough.
+     */
+    private static final ThreadLocal<Ray> OBJECT_RAY = ThreadLocal.withInitial(Ray::new);
+
+    @EqualsAndHashCode.Exclude
+    private final Hittable geometry;
+    /**
+     * Index of geometry in scene geometries, identifies geometry in content hash without hashing its buffers.
+     */
+    private final int geometryIndex;
+    private final Matrix4X4D transform;
+    @EqualsAndHashCode.Exclude
+    private final Matrix4X4D inverseTransform;
+    @EqualsAndHashCode.Exclude
+    private final AABB bounds;
+
+    /**
+     * @param geometry      Shared geometry in object space.
+     * @param geometryIndex Index of geometry in scene geometries.
+     * @param transform     Object to world transform.
+     */
+    public Instance(final Hittable geometry, final int geometryIndex, final Matrix4X4D transform) {
+        this(geometry, geometryIndex, transform, Matrix4X4D.inverse(transform));
+    }
+
+    /**
+     * @param geometry         Shared geometry in object space.
+     * @param geometryIndex    Index of geometry in scene geometries.
+     * @param transform        Object to world transform.
+     * @param inverseTransform World to object transform, inverse of transform.
+     */
+    public Instance(final Hittable geometry, final int geometryIndex, final Matrix4X4D transform,
+                    final Matrix4X4D inverseTransform) {
+        if (geometry instanceof Instance) {
+            throw new IllegalArgumentException("Geometry of instance can't be an instance.");
+        }
+
+        this.shape = INSTANCE;
+        this.geometry = geometry;
+        this.geometryIndex = geometryIndex;
+        this.transform = transform;
+        this.inverseTransform = inverseTransform;
+        this.bounds = transformBounds(geometry.getBounds());
+    }
+
+    /**
+     * World bounds enclosing all 8 transformed corners of object bounds.
+     */
+    private AABB transformBounds(final AABB objectBounds) {
+        AABB worldBounds = new AABB();
+        Vector3D corner = new Vector3D();
+        for (int i = 0; i < 8; i++) {
+            corner.set(
+                    (i & 1) == 0 ? objectBounds.getMinX() : objectBounds.getMaxX(),
+                    (i & 2) == 0 ? objectBounds.getMinY() : objectBounds.getMaxY(),
+                    (i & 4) == 0 ? objectBounds.getMinZ() : objectBounds.getMaxZ());
+            transform.transformPointInto(corner, corner);
+            worldBounds.expand(corner.getX(), corner.getY(), corner.getZ());
+        }
+        return worldBounds;
+    }
+
+    private Ray toObjectSpace(final Ray ray) {
+        Ray objectRay = OBJECT_RAY.get();
+        inverseTransform.transformPointInto(ray.getOrigin(), objectRay.getOrigin());
+        inverseTransform.transformDirectionInto(ray.getDirection(), objectRay.getDirection());
+        return objectRay;
+    }
+
+    @Override
+    public AABB getBounds() {
+        return bounds;
+    }
+
+    @Override
+    public boolean hit(final Ray ray, double rayTMin, double rayTMax, HitRecord hitRecord) {
+        if (!geometry.hit(toObjectSpace(ray), rayTMin, rayTMax, hitRecord)) {
+            return false;
+        }
+
+        hitRecord.setObjectIndex(objectIndex);
+        hitRecord.setMaterialIndex(materialIndex);
+        return true;
+    }
+
+    @Override
+    public void closestHit(final Ray ray, HitRecord hitRecord) {
+        geometry.closestHit(toObjectSpace(ray), hitRecord);
+
+        transform.transformPointInto(hitRecord.getWorldPosition(), hitRecord.getWorldPosition());
+        Vector3D normal = hitRecord.getWorldNormal();
+        Vector3D.normalizeInto(inverseTransform.transformNormalInto(normal, normal), normal);
+    }
+}
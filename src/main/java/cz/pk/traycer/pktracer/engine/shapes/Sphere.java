@@ -1,7 +1,9 @@
 package cz.pk.traycer.pktracer.engine.shapes;
 
 import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.IntersectionManager;
 import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.accel.AABB;
 import cz.pk.traycer.pktracer.engine.math.Vector3D;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -24,8 +26,35 @@ public class Sphere extends Hittable {
         this.radius = MIN_RADIUS;
     }
 
+    /**
+     * World space center of sphere. {@link cz.pk.traycer.pktracer.engine.IntersectionManager} offsets
+     * ray origin by {@code position}, so the sphere is centered in {@code -position}.
+     *
+     * @return Center of sphere.
+     */
+    public Vector3D getCenter() {
+        return position.neg();
+    }
+
+    @Override
+    public AABB getBounds() {
+        Vector3D center = getCenter();
+        return new AABB(
+                center.getX() - radius, center.getY() - radius, center.getZ() - radius,
+                center.getX() + radius, center.getY() + radius, center.getZ() + radius);
+    }
+
+    @Override
+    public boolean hit(final Ray ray, double rayTMin, double rayTMax, HitRecord hitRecord) {
+        return IntersectionManager.raySphereIntersection(ray, this, rayTMin, rayTMax, hitRecord);
+    }
+
     @Override
-    public boolean hit(Ray ray, float rayTMin, float rayTMax, HitRecord hitRecord) {
-        return false;
+    public void closestHit(final Ray ray, HitRecord hitRecord) {
+        Vector3D worldPosition = hitRecord.getWorldPosition();
+        Vector3D.addInto(ray.getOrigin(), position, worldPosition);
+        Vector3D.mulAdd(worldPosition, ray.getDirection(), hitRecord.getDistance(), worldPosition);
+        Vector3D.normalizeInto(worldPosition, hitRecord.getWorldNormal());
+        Vector3D.subInto(worldPosition, position, worldPosition);
     }
 }
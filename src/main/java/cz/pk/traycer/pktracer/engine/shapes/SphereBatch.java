@@ -0,0 +1,116 @@
+package cz.pk.traycer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.IntersectionManager;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.math.VectorSupport;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Spheres packed to structure of arrays (center x, y, z, squared radius, object and material index). <br>
+ * All spheres are tested by one loop over primitive arrays without virtual call, cast or object access,
+ * hit record is written only once for the closest sphere. When the JDK Vector API is available,
+ * several spheres are tested per instruction by {@link VectorSphereIntersector}.
+ */
+public class SphereBatch {
+    /**
+     * Smaller batches are faster in scalar loop, vector setup costs more than it saves.
+     */
+    public static final int MIN_VECTORIZED_SIZE = 16;
+
+    @Getter
+    private final int size;
+    private final double[] centerX;
+    private final double[] centerY;
+    private final double[] centerZ;
+    private final double[] radiusSquared;
+    private final int[] objectIndices;
+    private final int[] materialIndices;
+    /**
+     * Use Vector API implementation. Can be switched off to compare with scalar loop.
+     */
+    @Getter
+    private boolean vectorized;
+
+    public SphereBatch(final List<Sphere> spheres) {
+        size = spheres.size();
+        centerX = new double[size];
+        centerY = new double[size];
+        centerZ = new double[size];
+        radiusSquared = new double[size];
+        objectIndices = new int[size];
+        materialIndices = new int[size];
+        vectorized = VectorSupport.isAvailable() && size >= MIN_VECTORIZED_SIZE;
+
+        for (int i = 0; i < size; i++) {
+            Sphere sphere = spheres.get(i);
+            Vector3D center = sphere.getCenter();
+            centerX[i] = center.getX();
+            centerY[i] = center.getY();
+            centerZ[i] = center.getZ();
+            radiusSquared[i] = sphere.getRadius() * sphere.getRadius();
+            objectIndices[i] = sphere.getObjectIndex();
+            materialIndices[i] = sphere.getMaterialIndex();
+        }
+    }
+
+    /**
+     * Switch between Vector API and scalar loop. Vector API is used only when it is available.
+     *
+     * @param vectorized True to use Vector API.
+     */
+    public void setVectorized(final boolean vectorized) {
+        this.vectorized = vectorized && VectorSupport.isAvailable();
+    }
+
+    /**
+     * Intersect ray with all spheres of batch.
+     *
+     * @see Hittable#hit(Ray, double, double, HitRecord)
+     */
+    public boolean hit(final Ray ray, final double rayTMin, final double rayTMax, HitRecord hitRecord) {
+        Vector3D origin = ray.getOrigin();
+        Vector3D direction = ray.getDirection();
+        double originX = origin.getX();
+        double originY = origin.getY();
+        double originZ = origin.getZ();
+        double dx = direction.getX();
+        double dy = direction.getY();
+        double dz = direction.getZ();
+
+        double closest = Math.min(rayTMax, hitRecord.getDistance());
+        int closestIndex = -1;
+        if (vectorized) {
+            closestIndex = VectorSphereIntersector.closest(centerX, centerY, centerZ, radiusSquared, size,
+                    originX, originY, originZ, dx, dy, dz, rayTMin, closest);
+            if (closestIndex >= 0) {
+                closest = IntersectionManager.raySphereDistance(
+                        originX - centerX[closestIndex], originY - centerY[closestIndex],
+                        originZ - centerZ[closestIndex], dx, dy, dz, radiusSquared[closestIndex], rayTMin, closest);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                double t = IntersectionManager.raySphereDistance(
+                        originX - centerX[i], originY - centerY[i], originZ - centerZ[i],
+                        dx, dy, dz, radiusSquared[i], rayTMin, closest);
+                if (t < closest) {
+                    closest = t;
+                    closestIndex = i;
+                }
+            }
+        }
+
+        if (closestIndex < 0) {
+            return false;
+        }
+
+        hitRecord.setDistance(closest);
+        hitRecord.setObjectIndex(objectIndices[closestIndex]);
+        hitRecord.setMaterialIndex(materialIndices[closestIndex]);
+        hitRecord.setPrimitiveIndex(HitRecord.EMPTY_PRIMITIVE_INDEX);
+        return true;
+    }
+}
@@ -0,0 +1,218 @@
+package cz.pk.traycer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.IntersectionManager;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.accel.AABB;
+import cz.pk.traycer.pktracer.engine.accel.BVH;
+import cz.pk.traycer.pktracer.engine.accel.PrimitiveIntersector;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static cz.pk.traycer.pktracer.engine.Enums.Shape.TRIANGLE;
+
+/**
+ * Indexed triangle mesh. <br>
+ * Triangles are not objects, mesh keeps only flat off-heap buffers: 3 floats per vertex, 3 vertex indices
+ * per triangle and optionally 3 floats of normal per vertex. Buffers are owned by {@link GeometryArena}
+ * of the scene. Triangles are organized in own {@link BVH}, so one mesh is a single model for scene
+ * acceleration structure.
+ */
+@EqualsAndHashCode(callSuper = true)
+@Getter
+public class TriangleMesh extends Hittable {
+    private final FloatBuffer vertices;
+    private final IntBuffer indices;
+    private final FloatBuffer normals;
+    private final int triangleCount;
+    @EqualsAndHashCode.Exclude
+    private final BVH bvh;
+    @EqualsAndHashCode.Exclude
+    private final PrimitiveIntersector triangleIntersector;
+
+    /**
+     * Copy mesh arrays off-heap and build its acceleration structure.
+     *
+     * @param arena    Owner of mesh memory.
+     * @param vertices Vertex positions, x, y, z per vertex.
+     * @param indices  Vertex indices, 3 per triangle.
+     * @param normals  Vertex normals, x, y, z per vertex, or null to use geometric normals.
+     */
+    public TriangleMesh(GeometryArena arena, final float[] vertices, final int[] indices, final float[] normals) {
+        this(arena, arena.copyOf(vertices), arena.copyOf(indices), normals == null ? null : arena.copyOf(normals));
+    }
+
+    /**
+     * Construct mesh over off-heap buffers and build its acceleration structure.
+     *
+     * @param arena    Owner of mesh memory, BVH nodes are allocated from it.
+     * @param vertices Vertex positions, x, y, z per vertex.
+     * @param indices  Vertex indices, 3 per triangle.
+     * @param normals  Vertex normals, x, y, z per vertex, or null to use geometric normals.
+     */
+    public TriangleMesh(GeometryArena arena, final FloatBuffer vertices, final IntBuffer indices,
+                        final FloatBuffer normals) {
+        validate(vertices, indices, normals);
+
+        this.shape = TRIANGLE;
+        this.vertices = vertices;
+        this.indices = indices;
+        this.normals = normals;
+        this.triangleCount = indices.capacity() / 3;
+        this.bvh = BVH.build(triangleBounds(), triangleCount, arena);
+        this.triangleIntersector = createTriangleIntersector();
+    }
+
+    /**
+     * Construct mesh over off-heap buffers with already built acceleration structure.
+     *
+     * @param vertices Vertex positions, x, y, z per vertex.
+     * @param indices  Vertex indices, 3 per triangle.
+     * @param normals  Vertex normals, x, y, z per vertex, or null to use geometric normals.
+     * @param bvh      Hierarchy over triangles of mesh.
+     */
+    public TriangleMesh(final FloatBuffer vertices, final IntBuffer indices, final FloatBuffer normals, final BVH bvh) {
+        validate(vertices, indices, normals);
+
+        this.shape = TRIANGLE;
+        this.vertices = vertices;
+        this.indices = indices;
+        this.normals = normals;
+        this.triangleCount = indices.capacity() / 3;
+        this.bvh = bvh;
+        this.triangleIntersector = createTriangleIntersector();
+    }
+
+    private static void validate(final FloatBuffer vertices, final IntBuffer indices, final FloatBuffer normals) {
+        if (indices.capacity() % 3 != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Number of indices must be multiple of 3. Indices count=%d", indices.capacity()));
+        }
+        if (normals != null && normals.capacity() != vertices.capacity()) {
+            throw new IllegalArgumentException(
+                    String.format("Normals count must match vertices count. Normals count=%d, vertices count=%d",
+                            normals.capacity(), vertices.capacity()));
+        }
+    }
+
+    private PrimitiveIntersector createTriangleIntersector() {
+        return (triangle, ray, rayTMin, hitRecord) ->
+                IntersectionManager.rayTriangleIntersection(ray, this, triangle, rayTMin, hitRecord);
+    }
+
+    private float[] triangleBounds() {
+        float[] bounds = new float[triangleCount * BVH.BOUNDS_STRIDE];
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            int offset = triangle * BVH.BOUNDS_STRIDE;
+            for (int axis = 0; axis < 3; axis++) {
+                float a = vertices.get(indices.get(triangle * 3) * 3 + axis);
+                float b = vertices.get(indices.get(triangle * 3 + 1) * 3 + axis);
+                float c = vertices.get(indices.get(triangle * 3 + 2) * 3 + axis);
+                bounds[offset + axis] = Math.min(a, Math.min(b, c));
+                bounds[offset + 3 + axis] = Math.max(a, Math.max(b, c));
+            }
+        }
+        return bounds;
+    }
+
+    public double getVertex(final int triangle, final int corner, final int axis) {
+        return vertices.get(indices.get(triangle * 3 + corner) * 3 + axis);
+    }
+
+    /**
+     * Intersect ray with all triangles of mesh.
+     *
+     * @param ray       Ray to intersect.
+     * @param hitRecord Hit record with current closest distance.
+     */
+    public void intersect(final Ray ray, HitRecord hitRecord) {
+        bvh.intersect(ray, HitRecord.MIN_DISTANCE_VALUE, hitRecord, triangleIntersector);
+    }
+
+    /**
+     * Shading normal at hit point. Vertex normals are interpolated by barycentric coordinates
+     * when present, geometric normal is used otherwise. Normal is turned against ray direction.
+     *
+     * @param triangle  Index of hit triangle.
+     * @param u         Barycentric coordinate of second vertex.
+     * @param v         Barycentric coordinate of third vertex.
+     * @param direction Ray direction.
+     * @return Normalized normal facing the ray.
+     */
+    public Vector3D getNormal(final int triangle, final double u, final double v, final Vector3D direction) {
+        return getNormal(triangle, u, v, direction, new Vector3D());
+    }
+
+    /**
+     * Shading normal at hit point written to given vector.
+     *
+     * @see #getNormal(int, double, double, Vector3D)
+     */
+    public Vector3D getNormal(final int triangle, final double u, final double v, final Vector3D direction,
+                              Vector3D normal) {
+        if (normals != null) {
+            double w = 1.0 - u - v;
+            int a = indices.get(triangle * 3) * 3;
+            int b = indices.get(triangle * 3 + 1) * 3;
+            int c = indices.get(triangle * 3 + 2) * 3;
+            normal.set(
+                    w * normals.get(a) + u * normals.get(b) + v * normals.get(c),
+                    w * normals.get(a + 1) + u * normals.get(b + 1) + v * normals.get(c + 1),
+                    w * normals.get(a + 2) + u * normals.get(b + 2) + v * normals.get(c + 2));
+        } else {
+            double edge1x = getVertex(triangle, 1, 0) - getVertex(triangle, 0, 0);
+            double edge1y = getVertex(triangle, 1, 1) - getVertex(triangle, 0, 1);
+            double edge1z = getVertex(triangle, 1, 2) - getVertex(triangle, 0, 2);
+            double edge2x = getVertex(triangle, 2, 0) - getVertex(triangle, 0, 0);
+            double edge2y = getVertex(triangle, 2, 1) - getVertex(triangle, 0, 1);
+            double edge2z = getVertex(triangle, 2, 2) - getVertex(triangle, 0, 2);
+            normal.set(
+                    edge1y * edge2z - edge1z * edge2y,
+                    edge1z * edge2x - edge1x * edge2z,
+                    edge1x * edge2y - edge1y * edge2x);
+        }
+
+        Vector3D.normalizeInto(normal, normal);
+        if (Vector3D.dot(normal, direction) > 0.0) {
+            normal.set(-normal.getX(), -normal.getY(), -normal.getZ());
+        }
+        return normal;
+    }
+
+    @Override
+    public AABB getBounds() {
+        return bvh.getBounds();
+    }
+
+    @Override
+    public boolean hit(final Ray ray, double rayTMin, double rayTMax, HitRecord hitRecord) {
+        // Hit record distance bounds the traversal, so it is narrowed to rayTMax for the query
+        double distance = hitRecord.getDistance();
+        double limit = Math.min(distance, rayTMax);
+        hitRecord.setDistance(limit);
+
+        bvh.intersect(ray, rayTMin, hitRecord, triangleIntersector);
+
+        if (hitRecord.getDistance() < limit) {
+            return true;
+        }
+        hitRecord.setDistance(distance);
+        return false;
+    }
+
+    @Override
+    public void closestHit(final Ray ray, HitRecord hitRecord) {
+        Vector3D.mulAdd(ray.getOrigin(), ray.getDirection(), hitRecord.getDistance(), hitRecord.getWorldPosition());
+        getNormal(
+                hitRecord.getPrimitiveIndex(),
+                hitRecord.getBarycentricU(),
+                hitRecord.getBarycentricV(),
+                ray.getDirection(),
+                hitRecord.getWorldNormal());
+    }
+}
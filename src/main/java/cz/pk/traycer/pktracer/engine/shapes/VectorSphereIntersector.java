@@ -0,0 +1,94 @@
+package cz.pk.traycer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.IntersectionManager;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Ray - sphere test of {@link SphereBatch} with the JDK Vector API. One ray is tested against
+ * as many spheres as fit into preferred vector (4 with AVX2, 8 with AVX-512) per instruction. <br>
+ * Operations are the same and in the same order as in
+ * {@link IntersectionManager#raySphereDistance}, so the result equals the scalar path bit by bit.
+ * Loaded only when {@link cz.pk.traycer.pktracer.engine.math.VectorSupport#isAvailable()}.
+ */
+final class VectorSphereIntersector {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorSphereIntersector() {
+    }
+
+    /**
+     * Find closest sphere hit inside (rayTMin, rayTMax).
+     *
+     * @return Index of closest hit sphere or -1 on miss.
+     */
+    static int closest(final double[] centerX, final double[] centerY, final double[] centerZ,
+                        final double[] radiusSquared, final int size,
+                        final double originX, final double originY, final double originZ,
+                        final double dx, final double dy, final double dz,
+                        final double rayTMin, final double rayTMax) {
+        double a = dx * dx + dy * dy + dz * dz;
+        double twoA = 2.0 * a;
+        double fourA = 4.0 * a;
+
+        DoubleVector originXs = DoubleVector.broadcast(SPECIES, originX);
+        DoubleVector originYs = DoubleVector.broadcast(SPECIES, originY);
+        DoubleVector originZs = DoubleVector.broadcast(SPECIES, originZ);
+
+        double closest = rayTMax;
+        int closestIndex = -1;
+
+        int i = 0;
+        int bound = SPECIES.loopBound(size);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector ox = originXs.sub(DoubleVector.fromArray(SPECIES, centerX, i));
+            DoubleVector oy = originYs.sub(DoubleVector.fromArray(SPECIES, centerY, i));
+            DoubleVector oz = originZs.sub(DoubleVector.fromArray(SPECIES, centerZ, i));
+
+            DoubleVector b = ox.mul(dx).add(oy.mul(dy)).add(oz.mul(dz)).mul(2.0);
+            DoubleVector c = ox.mul(ox).add(oy.mul(oy)).add(oz.mul(oz))
+                    .sub(DoubleVector.fromArray(SPECIES, radiusSquared, i));
+            DoubleVector discriminant = b.mul(b).sub(c.mul(fourA));
+
+            VectorMask<Double> hit = discriminant.compare(VectorOperators.GE, 0.0);
+            if (!hit.anyTrue()) {
+                continue;
+            }
+
+            DoubleVector root = discriminant.max(0.0).sqrt();
+            DoubleVector near = b.neg().sub(root).div(twoA);
+            DoubleVector far = b.neg().add(root).div(twoA);
+
+            VectorMask<Double> nearValid = near.compare(VectorOperators.GT, rayTMin)
+                    .and(near.compare(VectorOperators.LT, closest));
+            VectorMask<Double> farValid = far.compare(VectorOperators.GT, rayTMin)
+                    .and(far.compare(VectorOperators.LT, closest));
+
+            DoubleVector t = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY)
+                    .blend(far, farValid)
+                    .blend(near, nearValid)
+                    .blend(Double.POSITIVE_INFINITY, hit.not());
+
+            double chunkClosest = t.reduceLanes(VectorOperators.MIN);
+            if (chunkClosest < closest) {
+                closest = chunkClosest;
+                closestIndex = i + t.compare(VectorOperators.EQ, chunkClosest).firstTrue();
+            }
+        }
+
+        // Spheres which don't fill whole vector
+        for (; i < size; i++) {
+            double t = IntersectionManager.raySphereDistance(
+                    originX - centerX[i], originY - centerY[i], originZ - centerZ[i],
+                    dx, dy, dz, radiusSquared[i], rayTMin, closest);
+            if (t < closest) {
+                closest = t;
+                closestIndex = i;
+            }
+        }
+
+        return closestIndex;
+    }
+}
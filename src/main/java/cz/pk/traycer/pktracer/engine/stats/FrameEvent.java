@@ -0,0 +1,52 @@
+package cz.pk.traycer.pktracer.engine.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one rendered frame, its duration is the frame time.
+ * Counters hold work traced during the frame.
+ */
+@Name("cz.pk.traycer.pktracer.Frame")
+@Label("Frame")
+@Category({"pkTracer", "Rendering"})
+@Description("One frame rendered by renderer")
+@StackTrace(false)
+public class FrameEvent extends jdk.jfr.Event {
+    @Label("Frame Index")
+    public long frameIndex;
+
+    @Label("Integrator")
+    public String integrator;
+
+    @Label("Width")
+    public int width;
+
+    @Label("Height")
+    public int height;
+
+    @Label("Completed")
+    @Description("False when the frame was cancelled")
+    public boolean completed;
+
+    @Label("Primary Rays")
+    public long primaryRays;
+
+    @Label("Secondary Rays")
+    public long secondaryRays;
+
+    @Label("Shadow Rays")
+    public long shadowRays;
+
+    @Label("Intersection Tests")
+    public long intersectionTests;
+
+    @Label("Bounces")
+    public long bounces;
+
+    @Label("Converged Tiles")
+    public int convergedTiles;
+}
@@ -0,0 +1,146 @@
+package cz.pk.traycer.pktracer.engine.stats;
+
+import cz.pk.traycer.pktracer.engine.WavefrontIntegrator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of rendered work since creation or last {@link #reset()}. <br>
+ * Counters are striped {@link LongAdder}s, render workers count into their {@link cz.pk.traycer.pktracer.engine.TraceContext}
+ * and add the totals once per tile or chunk, so counting doesn't contend on the hot path.
+ * Values can be read from any thread while rendering, sum of a counter in flight may miss updates of running workers.
+ */
+public class RenderStats {
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder cancelledFrames = new LongAdder();
+    private final LongAdder primaryRays = new LongAdder();
+    private final LongAdder secondaryRays = new LongAdder();
+    private final LongAdder shadowRays = new LongAdder();
+    private final LongAdder intersectionTests = new LongAdder();
+    private final LongAdder bounces = new LongAdder();
+    private final LongAdder frameNanos = new LongAdder();
+    private final LongAdder[] stageNanos = new LongAdder[WavefrontIntegrator.Stage.values().length];
+    private volatile long lastFrameNanos;
+
+    public RenderStats() {
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Add work traced by one render worker.
+     *
+     * @param primaryRays       Rays from camera.
+     * @param secondaryRays     Rays scattered from surfaces.
+     * @param shadowRays        Rays toward sampled lights.
+     * @param intersectionTests Ray-primitive intersection tests.
+     * @param bounces           Surface hits shaded.
+     */
+    public void addWork(final long primaryRays, final long secondaryRays, final long shadowRays,
+                        final long intersectionTests, final long bounces) {
+        this.primaryRays.add(primaryRays);
+        this.secondaryRays.add(secondaryRays);
+        this.shadowRays.add(shadowRays);
+        this.intersectionTests.add(intersectionTests);
+        this.bounces.add(bounces);
+    }
+
+    /**
+     * @param nanos     Duration of the frame.
+     * @param completed False when the frame was cancelled, its duration is not counted.
+     */
+    public void addFrame(final long nanos, final boolean completed) {
+        if (!completed) {
+            cancelledFrames.increment();
+            return;
+        }
+
+        frames.increment();
+        frameNanos.add(nanos);
+        lastFrameNanos = nanos;
+    }
+
+    public void addStageNanos(final WavefrontIntegrator.Stage stage, final long nanos) {
+        stageNanos[stage.ordinal()].add(nanos);
+    }
+
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    public long getCancelledFrames() {
+        return cancelledFrames.sum();
+    }
+
+    public long getPrimaryRays() {
+        return primaryRays.sum();
+    }
+
+    public long getSecondaryRays() {
+        return secondaryRays.sum();
+    }
+
+    public long getShadowRays() {
+        return shadowRays.sum();
+    }
+
+    public long getIntersectionTests() {
+        return intersectionTests.sum();
+    }
+
+    public long getBounces() {
+        return bounces.sum();
+    }
+
+    /**
+     * @return Total duration of completed frames in nanoseconds.
+     */
+    public long getFrameNanos() {
+        return frameNanos.sum();
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    /**
+     * @return Total time spent in given stage of wavefront integrator in nanoseconds.
+     */
+    public long getStageNanos(final WavefrontIntegrator.Stage stage) {
+        return stageNanos[stage.ordinal()].sum();
+    }
+
+    /**
+     * @return Primary, secondary and shadow rays traced per second of completed frames, zero before first frame.
+     */
+    public double getRaysPerSecond() {
+        long nanos = getFrameNanos();
+        long rays = getPrimaryRays() + getSecondaryRays() + getShadowRays();
+        return nanos == 0 ? 0.0 : (double) rays * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    public void reset() {
+        frames.reset();
+        cancelledFrames.reset();
+        primaryRays.reset();
+        secondaryRays.reset();
+        shadowRays.reset();
+        intersectionTests.reset();
+        bounces.reset();
+        frameNanos.reset();
+        for (LongAdder stage : stageNanos) {
+            stage.reset();
+        }
+        lastFrameNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("frames=%d, cancelled=%d, primaryRays=%d, secondaryRays=%d, shadowRays=%d, "
+                        + "intersectionTests=%d, bounces=%d, frameMillis=%d, Mrays/s=%.2f",
+                getFrames(), getCancelledFrames(), getPrimaryRays(), getSecondaryRays(), getShadowRays(),
+                getIntersectionTests(), getBounces(), TimeUnit.NANOSECONDS.toMillis(getFrameNanos()), getRaysPerSecond() / 1.0e6);
+    }
+}
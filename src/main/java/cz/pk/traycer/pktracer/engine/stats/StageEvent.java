@@ -0,0 +1,31 @@
+package cz.pk.traycer.pktracer.engine.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one stage of wavefront integrator, its duration is the stage time.
+ */
+@Name("cz.pk.traycer.pktracer.Stage")
+@Label("Integrator Stage")
+@Category({"pkTracer", "Rendering"})
+@Description("One stage of wavefront integrator run over the ray queue")
+@StackTrace(false)
+public class StageEvent extends jdk.jfr.Event {
+    @Label("Stage")
+    public String stage;
+
+    @Label("Frame Index")
+    public long frameIndex;
+
+    @Label("Bounce")
+    @Description("Bounce of intersect, shade and compact stages, -1 for other stages")
+    public int bounce;
+
+    @Label("Queue Size")
+    @Description("Paths in ray queue after the stage")
+    public int queueSize;
+}
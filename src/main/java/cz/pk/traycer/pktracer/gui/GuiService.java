@@ -1,16 +1,29 @@
 package cz.pk.traycer.pktracer.gui;
 
+import cz.pk.traycer.pktracer.engine.RenderLoop;
 import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.Tile;
+import cz.pk.traycer.pktracer.engine.TripleBuffer;
+import cz.pk.traycer.pktracer.engine.math.Vector2D;
+import javafx.animation.AnimationTimer;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import lombok.Data;
 
+import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -22,8 +35,16 @@ public class GuiService {
 
     public static final int TOP_PANEL_HEIGHT = 44;
     public static final Insets VIEWPORT_PADDING = new Insets(2, 2, 2, 2);
+    public static final double CAMERA_STEP = 0.5;
 
     private ImageView viewportIV = new ImageView();
+    /**
+     * One pixel buffer and image per buffer of presented frame buffers.
+     */
+    private List<PixelBuffer<IntBuffer>> viewportPixelBuffers = new ArrayList<>();
+    private List<WritableImage> viewportImages = new ArrayList<>();
+    private TripleBuffer presentedFrames;
+    private AnimationTimer presenter;
 
     private Renderer renderer;
 
@@ -45,7 +66,12 @@ public class GuiService {
         buttonProjected.setPrefSize(100, 20);
         buttonProjected.getStyleClass().add("dark-gray-button");
 
-        hBox.getChildren().addAll(buttonCurrent, buttonProjected);
+        ToggleButton buttonDenoise = new ToggleButton("Denoise");
+        buttonDenoise.setPrefSize(100, 20);
+        buttonDenoise.getStyleClass().add("dark-gray-button");
+        buttonDenoise.selectedProperty().addListener((observable, oldValue, selected) -> renderer.setDenoise(selected));
+
+        hBox.getChildren().addAll(buttonCurrent, buttonProjected, buttonDenoise);
 
         return hBox;
     }
@@ -63,7 +89,9 @@ public class GuiService {
     private HBox initViewportPanel() {
         renderer.initialize();
         renderer.onResize(renderer.getViewportWidth(), renderer.getViewportHeight());
-        viewportIV.setImage(renderer.render());
+        initViewportImage();
+        renderer.render();
+        presentFrame();
 
         HBox hBox = new HBox();
         hBox.setPadding(new Insets(2, 2, 2, 2));
@@ -73,6 +101,123 @@ public class GuiService {
         return hBox;
     }
 
+    /**
+     * Wrap all renderer frame buffers into images without copying. Has to be called again
+     * whenever renderer replaces its frame buffers (resize).
+     */
+    public void initViewportImage() {
+        presentedFrames = renderer.getFrameBuffers();
+        viewportPixelBuffers.clear();
+        viewportImages.clear();
+        for (int i = 0; i < 3; i++) {
+            PixelBuffer<IntBuffer> pixelBuffer = new PixelBuffer<>(
+                    presentedFrames.getWidth(),
+                    presentedFrames.getHeight(),
+                    presentedFrames.getBuffer(i),
+                    PixelFormat.getIntArgbPreInstance());
+            viewportPixelBuffers.add(pixelBuffer);
+            viewportImages.add(new WritableImage(pixelBuffer));
+        }
+    }
+
+    /**
+     * Show the newest frame published by renderer, if there is any. Must be called on JavaFX
+     * application thread, never blocks the render thread.
+     */
+    public void presentFrame() {
+        if (presentedFrames != renderer.getFrameBuffers()) {
+            initViewportImage();
+        }
+        if (!presentedFrames.acquire()) {
+            return;
+        }
+
+        int front = presentedFrames.getFrontIndex();
+        // Image of the buffer already shows everything outside of the region
+        Tile dirtyRegion = presentedFrames.getFrontRegion();
+        if (dirtyRegion != null) {
+            viewportPixelBuffers.get(front).updateBuffer(pixelBuffer -> new Rectangle2D(
+                    dirtyRegion.getX(),
+                    dirtyRegion.getY(),
+                    dirtyRegion.getWidth(),
+                    dirtyRegion.getHeight()));
+        }
+        viewportIV.setImage(viewportImages.get(front));
+    }
+
+    /**
+     * Present published frames on every JavaFX pulse. When render loop fails, presenting stops and the failure
+     * is shown instead of the last frame pretending that rendering goes on.
+     */
+    public void startPresenting(RenderLoop renderLoop) {
+        presenter = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                RuntimeException failure = renderLoop.getFailure();
+                if (failure != null) {
+                    stop();
+                    showRenderFailure(failure);
+                    return;
+                }
+                presentFrame();
+            }
+        };
+        presenter.start();
+    }
+
+    private void showRenderFailure(RuntimeException failure) {
+        failure.printStackTrace();
+        viewportIV.setOpacity(0.3);
+
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("PK Tracer");
+        alert.setHeaderText("Rendering stopped");
+        alert.setContentText(String.valueOf(failure));
+        // Not allowed to block during animation pulse
+        alert.show();
+    }
+
+    /**
+     * Move camera by WASD and arrow keys. Every move cancels frame in flight of render loop.
+     */
+    public void registerCameraControls(javafx.scene.Scene sceneFX, RenderLoop renderLoop) {
+        sceneFX.addEventHandler(KeyEvent.KEY_PRESSED, e -> {
+            double forward = switch (e.getCode()) {
+                case W, UP -> CAMERA_STEP;
+                case S, DOWN -> -CAMERA_STEP;
+                default -> 0.0;
+            };
+            double right = switch (e.getCode()) {
+                case D, RIGHT -> CAMERA_STEP;
+                case A, LEFT -> -CAMERA_STEP;
+                default -> 0.0;
+            };
+
+            if (forward != 0.0 || right != 0.0) {
+                renderLoop.update(r -> r.getCamera().move(forward, right));
+            }
+        });
+    }
+
+    /**
+     * Track mouse position over viewport in camera.
+     */
+    public void registerMouseControls(javafx.scene.Scene sceneFX) {
+        sceneFX.addEventFilter(MouseEvent.MOUSE_PRESSED, mouseEvent -> {
+            Vector2D currentMousePosition = renderer.getCamera().getCurrentMousePosition();
+            currentMousePosition.setX(mouseEvent.getX() - VIEWPORT_PADDING.getLeft());
+            currentMousePosition.setY(mouseEvent.getY() - TOP_PANEL_HEIGHT - VIEWPORT_PADDING.getTop());
+
+            String msg =
+                    "(x: " + mouseEvent.getX() + ", y: " + mouseEvent.getY() + ") -- " +
+                    "(sceneX: " + mouseEvent.getSceneX() + ", sceneY: " + mouseEvent.getSceneY() + ") -- " +
+                    "(screenX: " + mouseEvent.getScreenX() + ", screenY: " + mouseEvent.getScreenY() + ") -- " +
+                    "(currentMousePositionX: " + currentMousePosition.getX() + ", currentMousePositionY: " + currentMousePosition.getY() + ")";
+
+            System.out.println(msg);
+        });
+    }
+
     //todo: https://edencoding.com/responsive-layouts/
     private ScrollPane initRightPanel() {
         VBox vBox = new VBox();
@@ -3,6 +3,9 @@ module cz.pk.traycer.pktracer {
     requires javafx.fxml;
     requires static lombok;
     requires dsiutils;
+    requires jdk.unsupported;
+    requires jdk.jfr;
+    requires static jdk.incubator.vector;
 
 
     opens cz.pk.traycer.pktracer to javafx.fxml;
@@ -0,0 +1,139 @@
+package cz.pk.tracer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AccumulationBufferTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void test_open_expectedSamplesAndHeaderOfCreatedFile() throws IOException {
+        Path file = directory.resolve("render.acc");
+        try (AccumulationBuffer created = AccumulationBuffer.create(file, 4, 3, 11L, 42L)) {
+            created.accumulate(5, 0.25, 0.5, 1.0);
+            created.accumulate(5, 0.25, 0.5, 1.0);
+            created.setFrameIndex(3);
+            created.checkpoint().join();
+        }
+
+        try (AccumulationBuffer opened = AccumulationBuffer.open(file)) {
+            assertEquals(file, opened.getFile());
+            assertEquals(4, opened.getWidth());
+            assertEquals(3, opened.getHeight());
+            assertEquals(3, opened.getFrameIndex());
+            assertEquals(11L, opened.getSeed());
+            assertEquals(42L, opened.getSceneHash());
+            assertEquals(0.5, opened.getRed().get(5));
+            assertEquals(2.0, opened.getBlue().get(5));
+            assertEquals(2, opened.getSampleCounts().get(5));
+            assertEquals(0, opened.getSampleCounts().get(4));
+        }
+    }
+
+    @Test
+    public void test_checkpoint_expectedFileChangedOnlyBySnapshot() throws IOException {
+        Path file = directory.resolve("render.acc");
+        try (AccumulationBuffer created = AccumulationBuffer.create(file, 4, 3, 11L, 42L)) {
+            created.accumulate(2, 1.0, 1.0, 1.0);
+            created.setFrameIndex(2);
+            created.checkpoint().join();
+
+            // Frame in flight when the process dies
+            created.accumulate(2, 1.0, 1.0, 1.0);
+            created.accumulate(7, 1.0, 1.0, 1.0);
+            created.setFrameIndex(3);
+        }
+
+        try (AccumulationBuffer opened = AccumulationBuffer.open(file)) {
+            assertEquals(2, opened.getFrameIndex());
+            assertEquals(1, opened.getSampleCounts().get(2));
+            assertEquals(1.0, opened.getGreen().get(2));
+            assertEquals(0, opened.getSampleCounts().get(7));
+        }
+        assertFalse(Files.exists(directory.resolve("render.acc.tmp")));
+    }
+
+    @Test
+    public void test_checkpoint_expectedLatestSnapshotWhenRequestedDuringWrites() throws IOException {
+        Path file = directory.resolve("render.acc");
+        try (AccumulationBuffer created = AccumulationBuffer.create(file, 64, 64, 11L, 42L)) {
+            List<CompletableFuture<Void>> checkpoints = new ArrayList<>();
+            for (int frame = 1; frame <= 5; frame++) {
+                created.accumulate(3, 1.0, 1.0, 1.0);
+                created.setFrameIndex(frame + 1);
+                checkpoints.add(created.checkpoint());
+            }
+            checkpoints.forEach(CompletableFuture::join);
+        }
+
+        try (AccumulationBuffer opened = AccumulationBuffer.open(file)) {
+            assertEquals(6, opened.getFrameIndex());
+            assertEquals(5, opened.getSampleCounts().get(3));
+        }
+    }
+
+    @Test
+    public void test_checkpoint_expectedFailedWriteThrownByNextCheckpointAndClose() throws IOException {
+        Path file = directory.resolve("render.acc");
+        Path temporaryFile = directory.resolve("render.acc.tmp");
+        AccumulationBuffer created = AccumulationBuffer.create(file, 4, 3, 11L, 42L);
+        // Snapshot can't be written next to the file
+        Files.createDirectory(temporaryFile);
+
+        created.checkpoint().handle((ignored, e) -> null).join();
+        assertThrows(UncheckedIOException.class, created::checkpoint);
+
+        Files.delete(temporaryFile);
+        created.checkpoint().join();
+
+        Files.createDirectory(temporaryFile);
+        created.checkpoint();
+        assertThrows(UncheckedIOException.class, created::close);
+    }
+
+    @Test
+    public void test_merge_expectedSumOfRendersWithDifferentSeeds() throws IOException {
+        try (AccumulationBuffer first = AccumulationBuffer.create(directory.resolve("a.acc"), 2, 2, 1L, 42L);
+             AccumulationBuffer second = AccumulationBuffer.create(directory.resolve("b.acc"), 2, 2, 2L, 42L);
+             AccumulationBuffer sameSeed = AccumulationBuffer.create(directory.resolve("c.acc"), 2, 2, 1L, 42L);
+             AccumulationBuffer otherScene = AccumulationBuffer.create(directory.resolve("d.acc"), 2, 2, 3L, 7L)) {
+            first.accumulate(0, 1.0, 0.0, 0.0);
+            second.accumulate(0, 0.0, 1.0, 0.0);
+            second.accumulate(0, 0.0, 1.0, 0.0);
+
+            try (AccumulationBuffer merged = first.copy()) {
+                merged.merge(second);
+
+                assertEquals(1.0, merged.getRed().get(0));
+                assertEquals(2.0, merged.getGreen().get(0));
+                assertEquals(3, merged.getSampleCounts().get(0));
+                assertEquals(1, first.getSampleCounts().get(0));
+                assertThrows(IllegalArgumentException.class, () -> merged.merge(sameSeed));
+                assertThrows(IllegalArgumentException.class, () -> merged.merge(otherScene));
+            }
+        }
+    }
+
+    @Test
+    public void test_open_expectedRejectedForeignFile() throws IOException {
+        Path file = directory.resolve("image.ppm");
+        Files.write(file, new byte[128]);
+
+        assertThrows(IllegalArgumentException.class, () -> AccumulationBuffer.open(file));
+    }
+}
@@ -0,0 +1,156 @@
+package cz.pk.tracer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.Camera;
+import cz.pk.traycer.pktracer.engine.Enums;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.math.Matrix4X4D;
+import cz.pk.traycer.pktracer.engine.math.Vector2D;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.math.Vector4D;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CameraTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private final double EPSILON = 0.000001d;
+
+    private static Camera camera() {
+        Camera camera = new Camera(WIDTH, HEIGHT);
+        camera.setPosition(new Vector3D(1.0, 2.0, 10.0));
+        camera.setForwardDirection(new Vector3D(-0.1, 0.0, -1.0));
+        return camera;
+    }
+
+    /**
+     * Ray direction by the formula of former per-frame recalculation of all rays: pixel unprojected
+     * by inverse projection, normalized and rotated to world by inverse view.
+     */
+    private static Vector3D baselineRayDirection(Camera camera, int x, int y) {
+        Matrix4X4D inverseProjection = Matrix4X4D.inverse(Matrix4X4D.perspectiveFov(
+                Math.toRadians(camera.getVerticalFOV()),
+                (double) camera.getViewportWidth() / (double) camera.getViewportHeight(),
+                camera.getNearClip(), camera.getFarClip()));
+        Matrix4X4D inverseView = Matrix4X4D.inverse(Matrix4X4D.lookAt(
+                camera.getPosition(),
+                camera.getPosition().add(camera.getForwardDirection()),
+                new Vector3D(0.0, 1.0, 0.0)));
+
+        Vector2D coord = new Vector2D(
+                (double) x / (double) camera.getViewportWidth(),
+                (double) y / (double) camera.getViewportHeight());
+        coord = coord.mul(2.0);
+        coord = coord.sub(1.0);
+
+        Vector4D target = inverseProjection.mul(coord.getX(), coord.getY(), 1.0, 1.0);
+        return new Vector3D(inverseView.mul(
+                new Vector4D(Vector3D.normalize(new Vector3D(target).div(target.getW())), 0.0)));
+    }
+
+    private void assertBaselineDirections(Camera camera) {
+        int[][] pixels = {{0, 0}, {WIDTH / 2, HEIGHT / 2}, {WIDTH - 1, 0}, {5, HEIGHT - 1}, {WIDTH - 1, HEIGHT - 1}};
+        Vector3D actual = new Vector3D();
+        for (int[] pixel : pixels) {
+            Vector3D expected = baselineRayDirection(camera, pixel[0], pixel[1]);
+            camera.getRayDirection(pixel[0] + pixel[1] * WIDTH, actual);
+
+            assertEquals(expected.getX(), actual.getX(), EPSILON);
+            assertEquals(expected.getY(), actual.getY(), EPSILON);
+            assertEquals(expected.getZ(), actual.getZ(), EPSILON);
+        }
+    }
+
+    @Test
+    public void test_getRayDirection_expectedBaselineDirectionsInBothModes() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        for (Enums.RayGeneration rayGeneration : Enums.RayGeneration.values()) {
+            Camera camera = camera();
+            camera.setRayGeneration(rayGeneration);
+            camera.updateRayDirections(pool);
+            assertBaselineDirections(camera);
+
+            camera.move(2.5, -1.0);
+            camera.setForwardDirection(new Vector3D(0.4, -0.2, -1.0));
+            camera.updateRayDirections(pool);
+            assertBaselineDirections(camera);
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void test_getRayDirection_expectedCachedEqualsOnTheFly() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Camera cached = camera();
+        cached.updateRayDirections(pool);
+        Camera onTheFly = camera();
+        onTheFly.setRayGeneration(Enums.RayGeneration.ON_THE_FLY);
+        onTheFly.updateRayDirections(pool);
+
+        Vector3D expected = new Vector3D();
+        Vector3D actual = new Vector3D();
+        for (int pixel = 0; pixel < WIDTH * HEIGHT; pixel++) {
+            onTheFly.getRayDirection(pixel, expected);
+            cached.getRayDirection(pixel, actual);
+
+            assertEquals(1.0, expected.length(), EPSILON);
+            assertEquals(expected.getX(), actual.getX(), EPSILON);
+            assertEquals(expected.getY(), actual.getY(), EPSILON);
+            assertEquals(expected.getZ(), actual.getZ(), EPSILON);
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void test_updateRayDirections_expectedRegeneratedOnlyAfterChange() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        Camera camera = camera();
+        camera.updateRayDirections(pool);
+        float[] directions = camera.getRayDirections();
+        float first = directions[0];
+
+        camera.updateRayDirections(pool);
+        assertFalse(camera.isRayDirectionsDirty());
+        assertSame(directions, camera.getRayDirections());
+        assertEquals(first, camera.getRayDirections()[0]);
+
+        camera.setForwardDirection(new Vector3D(0.3, 0.0, -1.0));
+        assertTrue(camera.isViewDirty());
+        camera.updateRayDirections(pool);
+        assertFalse(camera.isRayDirectionsDirty());
+        assertTrue(first != camera.getRayDirections()[0]);
+        pool.shutdown();
+    }
+
+    @Test
+    public void test_onUpdate_expectedCacheNotRebuiltWithoutChange() {
+        Renderer renderer = new Renderer(WIDTH, HEIGHT, 2);
+        renderer.initialize();
+        renderer.onResize(WIDTH, HEIGHT);
+        renderer.render();
+
+        // Marker survives only if cache is not regenerated
+        Camera camera = renderer.getCamera();
+        float[] directions = camera.getRayDirections();
+        directions[0] = Float.NaN;
+
+        renderer.onResize(WIDTH, HEIGHT);
+        camera.setCurrentMousePosition(new Vector2D(3.0, 4.0));
+        renderer.onResize(WIDTH, HEIGHT);
+        renderer.render();
+        assertSame(directions, camera.getRayDirections());
+        assertTrue(Float.isNaN(camera.getRayDirections()[0]));
+
+        camera.setVerticalFOV(60.0);
+        renderer.onResize(WIDTH, HEIGHT);
+        renderer.render();
+        assertFalse(Float.isNaN(camera.getRayDirections()[0]));
+        renderer.getRenderPool().shutdown();
+    }
+}
@@ -0,0 +1,35 @@
+package cz.pk.tracer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.RenderLoop;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import org.junit.jupiter.api.Test;
+
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.createRenderer;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class RenderLoopTest {
+
+    @Test
+    public void test_update_expectedFailureKeptAndLoopStopped() throws InterruptedException {
+        Renderer renderer = createRenderer(32, 16, 1, 7L, 0.0);
+        IllegalStateException thrown = new IllegalStateException("Broken update");
+
+        try (RenderLoop renderLoop = new RenderLoop(renderer)) {
+            renderLoop.start();
+            assertNull(renderLoop.getFailure());
+
+            renderLoop.update(r -> {
+                throw thrown;
+            });
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (renderLoop.getFailure() == null && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertSame(thrown, renderLoop.getFailure());
+            assertFalse(renderLoop.isRunning());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cz.pk.tracer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Renderer;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Fixture shared by tests comparing renders of the default scene.
+ */
+public final class RenderTestSupport {
+
+    private RenderTestSupport() {
+    }
+
+    public static double[] array(DoubleBuffer buffer) {
+        double[] values = new double[buffer.capacity()];
+        buffer.get(0, values);
+        return values;
+    }
+
+    public static int[] array(IntBuffer buffer) {
+        int[] values = new int[buffer.capacity()];
+        buffer.get(0, values);
+        return values;
+    }
+
+    /**
+     * Renderer of the default scene ready to render, other settings can be changed before the first frame.
+     */
+    public static Renderer createRenderer(int width, int height, int threadCount, long seed, double noiseThreshold) {
+        Renderer renderer = new Renderer(width, height, threadCount);
+        renderer.setSeed(seed);
+        renderer.setNoiseThreshold(noiseThreshold);
+        renderer.initialize();
+        renderer.onResize(width, height);
+        return renderer;
+    }
+
+    public static Renderer renderFrames(Renderer renderer, int frames) {
+        for (int i = 0; i < frames; i++) {
+            renderer.render();
+        }
+        return renderer;
+    }
+
+    /**
+     * Assert the same samples of every pixel, bit for bit.
+     */
+    public static void assertSameSamples(AccumulationBuffer expected, AccumulationBuffer actual) {
+        assertArrayEquals(array(expected.getSampleCounts()), array(actual.getSampleCounts()));
+        assertArrayEquals(array(expected.getRed()), array(actual.getRed()));
+        assertArrayEquals(array(expected.getGreen()), array(actual.getGreen()));
+        assertArrayEquals(array(expected.getBlue()), array(actual.getBlue()));
+    }
+}
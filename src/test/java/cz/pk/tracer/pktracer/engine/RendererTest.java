@@ -0,0 +1,381 @@
+package cz.pk.tracer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Enums;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.Tile;
+import cz.pk.traycer.pktracer.engine.TripleBuffer;
+import cz.pk.traycer.pktracer.engine.WavefrontIntegrator;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.stats.FrameEvent;
+import cz.pk.traycer.pktracer.engine.stats.RenderStats;
+import cz.pk.traycer.pktracer.engine.stats.StageEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.array;
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.assertSameSamples;
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.createRenderer;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RendererTest {
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+    private static final long SEED = 7L;
+
+    private static AccumulationBuffer renderFrames(int threadCount, int frames) {
+        return renderFrames(threadCount, frames, Enums.Integrator.DEPTH_FIRST);
+    }
+
+    private static AccumulationBuffer renderFrames(int threadCount, int frames, Enums.Integrator integrator) {
+        return renderFrames(threadCount, frames, integrator, Renderer.DEFAULT_NOISE_THRESHOLD);
+    }
+
+    private static AccumulationBuffer renderFrames(
+            int threadCount, int frames, Enums.Integrator integrator, double noiseThreshold) {
+        return renderFramesBy(threadCount, frames, integrator, noiseThreshold).getAccumulationData();
+    }
+
+    private static Renderer renderFramesBy(
+            int threadCount, int frames, Enums.Integrator integrator, double noiseThreshold) {
+        Renderer renderer = createRenderer(WIDTH, HEIGHT, threadCount, SEED, noiseThreshold);
+        renderer.setIntegratorType(integrator);
+        renderer.setTileSize(16);
+        return RenderTestSupport.renderFrames(renderer, frames);
+    }
+
+    private static Renderer rouletteRenderer(int rouletteMinDepth) {
+        Renderer renderer = createRenderer(WIDTH, HEIGHT, 4, SEED, 0.0);
+        renderer.setRouletteMinDepth(rouletteMinDepth);
+        return renderer;
+    }
+
+    @Test
+    public void test_render_expectedSameImageForAnyThreadCount() {
+        AccumulationBuffer single = renderFrames(1, 3);
+        AccumulationBuffer parallel = renderFrames(8, 3);
+
+        assertTrue(Arrays.stream(array(single.getRed())).sum() > 0.0);
+        assertArrayEquals(array(single.getRed()), array(parallel.getRed()));
+        assertArrayEquals(array(single.getGreen()), array(parallel.getGreen()));
+        assertArrayEquals(array(single.getBlue()), array(parallel.getBlue()));
+    }
+
+    @Test
+    public void test_render_expectedWavefrontEqualsDepthFirst() {
+        AccumulationBuffer depthFirst = renderFrames(4, 3, Enums.Integrator.DEPTH_FIRST);
+        AccumulationBuffer wavefront = renderFrames(4, 3, Enums.Integrator.WAVEFRONT);
+
+        assertArrayEquals(array(depthFirst.getRed()), array(wavefront.getRed()));
+        assertArrayEquals(array(depthFirst.getGreen()), array(wavefront.getGreen()));
+        assertArrayEquals(array(depthFirst.getBlue()), array(wavefront.getBlue()));
+    }
+
+    @Test
+    public void test_render_expectedConvergedTilesSkippedEquallyByBothIntegrators() {
+        int frames = 40;
+        AccumulationBuffer depthFirst = renderFrames(4, frames, Enums.Integrator.DEPTH_FIRST, 0.05);
+        AccumulationBuffer wavefront = renderFrames(4, frames, Enums.Integrator.WAVEFRONT, 0.05);
+
+        int skipped = 0;
+        for (int index = 0; index < depthFirst.size(); index++) {
+            int samples = depthFirst.getSampleCounts().get(index);
+            assertTrue(samples >= Renderer.DEFAULT_MIN_ADAPTIVE_SAMPLES && samples <= frames);
+            if (samples < frames) {
+                skipped++;
+            }
+        }
+        assertTrue(skipped > 0);
+        assertArrayEquals(array(depthFirst.getSampleCounts()), array(wavefront.getSampleCounts()));
+        assertArrayEquals(array(depthFirst.getRed()), array(wavefront.getRed()));
+    }
+
+    @Test
+    public void test_render_expectedPresentedFramesCompleteWhenOnlyDirtyRegionsAreCopied() {
+        for (Enums.Integrator integrator : Enums.Integrator.values()) {
+            // Every tile converges after two frames
+            Renderer renderer = createRenderer(WIDTH, HEIGHT, 2, SEED, 1.0e9);
+            renderer.setIntegratorType(integrator);
+            renderer.setMinAdaptiveSamples(2);
+            TripleBuffer frames = renderer.getFrameBuffers();
+            // Copies updated only in dirty regions, like images of the GUI
+            int[][] presented = new int[3][WIDTH * HEIGHT];
+
+            Tile region = null;
+            for (int frame = 1; frame <= 12; frame++) {
+                renderer.setDenoise(frame >= 6);
+                assertTrue(renderer.render());
+                if (frame == 3 || frame == 4) {
+                    // Skipped by consumer
+                    continue;
+                }
+
+                assertTrue(frames.acquire());
+                region = frames.getFrontRegion();
+                int[] copy = presented[frames.getFrontIndex()];
+                if (region != null) {
+                    for (int y = region.getY(); y < region.getY() + region.getHeight(); y++) {
+                        for (int x = region.getX(); x < region.getX() + region.getWidth(); x++) {
+                            copy[x + y * WIDTH] = frames.getFront().get(x + y * WIDTH);
+                        }
+                    }
+                }
+
+                AccumulationBuffer shown = frame >= 6 ? renderer.getDenoisedData() : renderer.getAccumulationData();
+                for (int index = 0; index < copy.length; index++) {
+                    assertEquals(shown.resolve(index), copy[index]);
+                }
+            }
+            assertEquals(renderer.getTiles().size(), renderer.getConvergedTileCount());
+            assertNull(region);
+        }
+    }
+
+    @Test
+    public void test_render_expectedEverySampleWithoutNoiseThreshold() {
+        AccumulationBuffer accumulation = renderFrames(2, 20, Enums.Integrator.DEPTH_FIRST, 0.0);
+
+        assertTrue(Arrays.stream(array(accumulation.getSampleCounts())).allMatch(samples -> samples == 20));
+    }
+
+    @Test
+    public void test_attachAccumulationFile_expectedResumedRenderEqualsUninterrupted(@TempDir Path directory)
+            throws IOException {
+        Path file = directory.resolve("render.acc");
+        AccumulationBuffer uninterrupted = renderFrames(2, 5, Enums.Integrator.DEPTH_FIRST, 0.0);
+
+        Renderer crashed = createRenderer(WIDTH, HEIGHT, 2, SEED, 0.0);
+        crashed.setTileSize(16);
+        crashed.attachAccumulationFile(file);
+        for (int i = 0; i < 3; i++) {
+            crashed.render();
+        }
+        crashed.checkpoint().join();
+        crashed.getAccumulationData().close();
+
+        Renderer resumed = createRenderer(WIDTH, HEIGHT, 2, SEED, 0.0);
+        resumed.setTileSize(16);
+        resumed.attachAccumulationFile(file);
+        assertEquals(4, resumed.getFrameIndex());
+        while (resumed.getFrameIndex() <= 5) {
+            resumed.render();
+        }
+
+        assertSameSamples(uninterrupted, resumed.getAccumulationData());
+        resumed.getAccumulationData().close();
+
+        Renderer otherSeed = new Renderer(WIDTH, HEIGHT, 2);
+        otherSeed.setSeed(SEED + 1);
+        otherSeed.initialize();
+        otherSeed.onResize(WIDTH, HEIGHT);
+        assertThrows(IllegalArgumentException.class, () -> otherSeed.attachAccumulationFile(file));
+    }
+
+    @Test
+    public void test_checkpoint_expectedResumeEqualsUninterruptedWhenRequestedMidFrame(@TempDir Path directory)
+            throws Exception {
+        Path file = directory.resolve("render.acc");
+        int frames = 8;
+        AccumulationBuffer uninterrupted = renderFrames(2, frames, Enums.Integrator.DEPTH_FIRST, 0.0);
+
+        Renderer crashed = createRenderer(WIDTH, HEIGHT, 2, SEED, 0.0);
+        crashed.setTileSize(16);
+        crashed.attachAccumulationFile(file);
+        CountDownLatch fourFrames = new CountDownLatch(1);
+        CompletableFuture<Void> rendering = CompletableFuture.runAsync(() -> {
+            while (crashed.getFrameIndex() <= frames - 1) {
+                crashed.render();
+                if (crashed.getFrameIndex() == 5) {
+                    fourFrames.countDown();
+                }
+            }
+        });
+        fourFrames.await();
+        // Requested from other thread while frames keep being rendered
+        while (!rendering.isDone()) {
+            crashed.checkpoint().join();
+        }
+        rendering.join();
+        crashed.checkpoint().join();
+        // Crash in the middle of the last frame, without closing the buffer
+        crashed.getAccumulationData().accumulate(0, 100.0, 100.0, 100.0);
+
+        Renderer resumed = createRenderer(WIDTH, HEIGHT, 2, SEED, 0.0);
+        resumed.setTileSize(16);
+        resumed.attachAccumulationFile(file);
+        assertEquals(frames, resumed.getFrameIndex());
+        while (resumed.getFrameIndex() <= frames) {
+            resumed.render();
+        }
+
+        assertSameSamples(uninterrupted, resumed.getAccumulationData());
+        resumed.getAccumulationData().close();
+        crashed.getAccumulationData().close();
+    }
+
+    @Test
+    public void test_render_expectedSameStatsForBothIntegrators() {
+        RenderStats depthFirst = renderFramesBy(4, 3, Enums.Integrator.DEPTH_FIRST, 0.0).getStats();
+        RenderStats wavefront = renderFramesBy(4, 3, Enums.Integrator.WAVEFRONT, 0.0).getStats();
+
+        assertEquals(3, depthFirst.getFrames());
+        assertEquals(3L * WIDTH * HEIGHT, depthFirst.getPrimaryRays());
+        assertTrue(depthFirst.getSecondaryRays() > 0);
+        assertTrue(depthFirst.getIntersectionTests() > depthFirst.getPrimaryRays());
+        assertTrue(depthFirst.getFrameNanos() > 0);
+        assertEquals(depthFirst.getFrames(), wavefront.getFrames());
+        assertEquals(depthFirst.getPrimaryRays(), wavefront.getPrimaryRays());
+        assertEquals(depthFirst.getSecondaryRays(), wavefront.getSecondaryRays());
+        assertEquals(depthFirst.getIntersectionTests(), wavefront.getIntersectionTests());
+        assertEquals(depthFirst.getBounces(), wavefront.getBounces());
+        assertTrue(wavefront.getStageNanos(WavefrontIntegrator.Stage.INTERSECT) > 0);
+    }
+
+    @Test
+    public void test_render_expectedRussianRouletteUnbiasedWithFewerRays() {
+        Renderer roulette = rouletteRenderer(Renderer.DEFAULT_ROULETTE_MIN_DEPTH);
+        Renderer complete = rouletteRenderer(Renderer.DEFAULT_MAX_DEPTH);
+        for (int i = 0; i < 64; i++) {
+            roulette.render();
+            complete.render();
+        }
+
+        double rouletteSum = Arrays.stream(array(roulette.getAccumulationData().getGreen())).sum();
+        double completeSum = Arrays.stream(array(complete.getAccumulationData().getGreen())).sum();
+
+        assertEquals(completeSum, rouletteSum, completeSum * 0.01);
+        assertTrue(roulette.getStats().getSecondaryRays() < complete.getStats().getSecondaryRays());
+    }
+
+    @Test
+    public void test_render_expectedNextEventEstimationUnbiased() {
+        Renderer sampledLights = rouletteRenderer(Renderer.DEFAULT_ROULETTE_MIN_DEPTH);
+        Renderer scatteredOnly = rouletteRenderer(Renderer.DEFAULT_ROULETTE_MIN_DEPTH);
+        scatteredOnly.setNextEventEstimation(false);
+        for (int i = 0; i < 64; i++) {
+            sampledLights.render();
+            scatteredOnly.render();
+        }
+
+        double sampledSum = Arrays.stream(array(sampledLights.getAccumulationData().getGreen())).sum();
+        double scatteredSum = Arrays.stream(array(scatteredOnly.getAccumulationData().getGreen())).sum();
+
+        assertEquals(scatteredSum, sampledSum, scatteredSum * 0.01);
+        assertTrue(sampledLights.getStats().getShadowRays() > 0);
+        assertEquals(0, scatteredOnly.getStats().getShadowRays());
+    }
+
+    @Test
+    public void test_render_expectedOnlyPrimaryRaysForMaxDepthOne() {
+        Renderer renderer = rouletteRenderer(Renderer.DEFAULT_ROULETTE_MIN_DEPTH);
+        renderer.setMaxDepth(1);
+        renderer.render();
+
+        assertEquals((long) WIDTH * HEIGHT, renderer.getStats().getPrimaryRays());
+        assertEquals(0, renderer.getStats().getSecondaryRays());
+        assertThrows(IllegalArgumentException.class, () -> renderer.setMaxDepth(0));
+    }
+
+    @Test
+    public void test_render_expectedFrameAndStageEventsRecorded(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("render.jfr");
+        Renderer renderer;
+        try (Recording recording = new Recording()) {
+            recording.enable(FrameEvent.class);
+            recording.enable(StageEvent.class);
+            recording.start();
+            renderer = renderFramesBy(2, 2, Enums.Integrator.WAVEFRONT, 0.0);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> frames = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> "cz.pk.traycer.pktracer.Frame".equals(event.getEventType().getName()))
+                .toList();
+        long stages = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> "cz.pk.traycer.pktracer.Stage".equals(event.getEventType().getName()))
+                .count();
+
+        assertEquals(2, frames.size());
+        assertEquals(2L, frames.get(1).getLong("frameIndex"));
+        assertEquals((long) WIDTH * HEIGHT, frames.get(1).getLong("primaryRays"));
+        assertEquals(renderer.getStats().getSecondaryRays(),
+                frames.get(0).getLong("secondaryRays") + frames.get(1).getLong("secondaryRays"));
+        assertTrue(stages >= 2 * 5);
+    }
+
+    @Test
+    public void test_render_expectedCancelledFrameDiscarded() {
+        Renderer renderer = new Renderer(WIDTH, HEIGHT, 2);
+        renderer.setSeed(SEED);
+        renderer.initialize();
+        renderer.onResize(WIDTH, HEIGHT);
+
+        assertTrue(renderer.render());
+        assertTrue(renderer.render());
+        assertTrue(renderer.getFrameBuffers().acquire());
+
+        renderer.cancel();
+        assertFalse(renderer.render());
+        assertEquals(1, renderer.getFrameIndex());
+        assertFalse(renderer.getFrameBuffers().acquire());
+    }
+
+    @Test
+    public void test_buildAccelerator_expectedPreviousArenaClosedWhenNextFrameStarts() {
+        Renderer renderer = createRenderer(WIDTH, HEIGHT, 2, SEED, 0.0);
+        GeometryArena previousArena = renderer.getAcceleratorArena();
+        Scene previousScene = renderer.getActiveScene();
+
+        renderer.buildAccelerator();
+        assertFalse(previousArena.isClosed());
+
+        assertTrue(renderer.render());
+        assertTrue(previousArena.isClosed());
+        assertFalse(renderer.getAcceleratorArena().isClosed());
+        assertFalse(previousScene.getArena().isClosed());
+    }
+
+    @Test
+    public void test_render_expectedNearZeroAllocationPerSample() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Renderer renderer = new Renderer(WIDTH, HEIGHT, 2);
+        renderer.setSeed(SEED);
+        renderer.initialize();
+        renderer.onResize(WIDTH, HEIGHT);
+
+        // Let JIT compile the hot path before measuring
+        for (int i = 0; i < 50; i++) {
+            renderer.render();
+        }
+
+        int frames = 20;
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        for (int i = 0; i < frames; i++) {
+            renderer.render();
+        }
+        long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+        double bytesPerSample = (double) allocated / ((long) WIDTH * HEIGHT * frames);
+
+        assertTrue(bytesPerSample < 8.0, String.format("Bytes per sample=%f", bytesPerSample));
+    }
+}
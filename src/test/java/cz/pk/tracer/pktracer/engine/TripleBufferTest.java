@@ -0,0 +1,79 @@
+package cz.pk.tracer.pktracer.engine;
+
+import cz.pk.traycer.pktracer.engine.Tile;
+import cz.pk.traycer.pktracer.engine.TripleBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TripleBufferTest {
+
+    @Test
+    public void test_acquire_expectedNewestPublishedFrame() {
+        TripleBuffer frames = new TripleBuffer(4, 2);
+        assertFalse(frames.acquire());
+
+        frames.getBack().put(0, 1);
+        frames.publish(null);
+        frames.getBack().put(0, 2);
+        frames.publish(null);
+
+        assertTrue(frames.acquire());
+        assertEquals(2, frames.getFront().get(0));
+        assertFalse(frames.acquire());
+    }
+
+    @Test
+    public void test_publish_expectedProducerNeverWritesFrontBuffer() {
+        TripleBuffer frames = new TripleBuffer(4, 2);
+        for (int frame = 1; frame <= 10; frame++) {
+            frames.getBack().put(0, frame);
+            frames.publish(null);
+            if (frame % 3 == 0) {
+                assertTrue(frames.acquire());
+                assertEquals(frame, frames.getFront().get(0));
+            }
+            assertNotSame(frames.getFront(), frames.getBack());
+        }
+    }
+
+    @Test
+    public void test_acquire_expectedRegionOfAcquiredFrame() {
+        TripleBuffer frames = new TripleBuffer(4, 2);
+        Tile first = new Tile(0, 0, 2, 2);
+        Tile second = new Tile(2, 0, 2, 2);
+
+        frames.publish(first);
+        assertTrue(frames.acquire());
+        frames.publish(second);
+        // Published after acquire, shown only by the next one
+        assertEquals(first, frames.getFrontRegion());
+
+        assertTrue(frames.acquire());
+        assertEquals(second, frames.getFrontRegion());
+    }
+
+    @Test
+    public void test_acquire_expectedRegionOfFramesSkippedByConsumer() {
+        TripleBuffer frames = new TripleBuffer(4, 2);
+
+        frames.publish(new Tile(0, 0, 1, 1));
+        frames.publish(new Tile(1, 0, 1, 1));
+        // Written to the same buffer as the first frame, which was never acquired
+        frames.publish(new Tile(3, 1, 1, 1));
+
+        assertTrue(frames.acquire());
+        assertEquals(new Tile(0, 0, 4, 2), frames.getFrontRegion());
+        frames.publish(null);
+        assertTrue(frames.acquire());
+        assertEquals(new Tile(1, 0, 1, 1), frames.getFrontRegion());
+        frames.publish(null);
+        frames.publish(null);
+        assertTrue(frames.acquire());
+        assertNull(frames.getFrontRegion());
+    }
+}
@@ -0,0 +1,77 @@
+package cz.pk.tracer.pktracer.engine.accel;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.accel.BVHAccelerator;
+import cz.pk.traycer.pktracer.engine.accel.BruteForceAccelerator;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.shapes.Hittable;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BVHAcceleratorTest {
+
+    private static final int SPHERE_COUNT = 2000;
+    private static final int RAY_COUNT = 20000;
+
+    private static List<Hittable> randomSpheres(Random random) {
+        List<Hittable> models = new ArrayList<>();
+        for (int i = 0; i < SPHERE_COUNT; i++) {
+            Sphere sphere = new Sphere();
+            sphere.setPosition(new Vector3D(
+                    random.nextDouble(-50.0, 50.0),
+                    random.nextDouble(-50.0, 50.0),
+                    random.nextDouble(-50.0, 50.0)));
+            sphere.setRadius(random.nextDouble(0.1, 3.0));
+            sphere.setObjectIndex(i);
+            sphere.setMaterialIndex(i % 5);
+            models.add(sphere);
+        }
+        return models;
+    }
+
+    @Test
+    public void test_intersect_expectedSameHitsAsBruteForce() {
+        Random random = new Random(1234L);
+        List<Hittable> models = randomSpheres(random);
+
+        BruteForceAccelerator bruteForce = new BruteForceAccelerator(models);
+        BVHAccelerator bvh = new BVHAccelerator(models, new GeometryArena());
+
+        int hits = 0;
+        for (int i = 0; i < RAY_COUNT; i++) {
+            Ray ray = new Ray(
+                    new Vector3D(
+                            random.nextDouble(-80.0, 80.0),
+                            random.nextDouble(-80.0, 80.0),
+                            random.nextDouble(-80.0, 80.0)),
+                    Vector3D.normalize(new Vector3D(
+                            random.nextDouble(-1.0, 1.0),
+                            random.nextDouble(-1.0, 1.0),
+                            random.nextDouble(-1.0, 1.0))));
+
+            HitRecord expected = new HitRecord();
+            bruteForce.intersect(ray, expected);
+            HitRecord actual = new HitRecord();
+            bvh.intersect(ray, actual);
+
+            assertEquals(expected.getObjectIndex(), actual.getObjectIndex());
+            assertEquals(expected.getMaterialIndex(), actual.getMaterialIndex());
+            assertEquals(expected.getDistance(), actual.getDistance());
+            if (expected.getObjectIndex() != HitRecord.EMPTY_OBJECT_INDEX) {
+                hits++;
+            }
+        }
+
+        assertTrue(hits > RAY_COUNT / 10);
+        assertTrue(bvh.getBvh().getNodeCount() > 1);
+    }
+}
@@ -0,0 +1,78 @@
+package cz.pk.tracer.pktracer.engine.denoise;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.Tile;
+import cz.pk.traycer.pktracer.engine.denoise.ATrousDenoiser;
+import cz.pk.traycer.pktracer.engine.denoise.FeatureBuffer;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.createRenderer;
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.renderFrames;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ATrousDenoiserTest {
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+
+    private static Renderer render(int frames) {
+        return renderFrames(createRenderer(WIDTH, HEIGHT, 4, 7L, 0.0), frames);
+    }
+
+    private static double meanLuminance(AccumulationBuffer buffer, int index) {
+        int count = buffer.getSampleCounts().get(index);
+        return AccumulationBuffer.luminance(
+                buffer.getRed().get(index), buffer.getGreen().get(index), buffer.getBlue().get(index)) / count;
+    }
+
+    private static double rmse(AccumulationBuffer image, AccumulationBuffer reference) {
+        double sum = 0.0;
+        for (int i = 0; i < image.size(); i++) {
+            double difference = meanLuminance(image, i) - meanLuminance(reference, i);
+            sum += difference * difference;
+        }
+        return Math.sqrt(sum / image.size());
+    }
+
+    @Test
+    public void test_denoise_expectedCloserToReferenceThanNoisyInput() {
+        AccumulationBuffer reference = render(256).getAccumulationData();
+        Renderer noisy = render(8);
+
+        AccumulationBuffer denoised = noisy.denoise();
+
+        assertTrue(rmse(denoised, reference) < 0.7 * rmse(noisy.getAccumulationData(), reference));
+    }
+
+    @Test
+    public void test_denoise_expectedFlatRegionsKeptAndNormalEdgePreserved() {
+        int width = 16;
+        int height = 8;
+        AccumulationBuffer input = new AccumulationBuffer(width, height);
+        FeatureBuffer features = new FeatureBuffer(width, height);
+        Vector3D albedo = new Vector3D(1.0, 1.0, 1.0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean left = x < width / 2;
+                input.accumulate(x + y * width, left ? 1.0 : 0.0, left ? 1.0 : 0.0, left ? 1.0 : 0.0);
+                Vector3D normal = left ? new Vector3D(0.0, 0.0, 1.0) : new Vector3D(1.0, 0.0, 0.0);
+                features.write(x + y * width, albedo, normal, 5.0);
+            }
+        }
+        AccumulationBuffer output = new AccumulationBuffer(width, height);
+
+        new ATrousDenoiser(width, height).denoise(
+                input, features, Tile.split(width, height, 4), ForkJoinPool.commonPool(), output);
+
+        for (int y = 0; y < height; y++) {
+            assertEquals(1.0, meanLuminance(output, width / 2 - 1 + y * width), 1.0e-6);
+            assertEquals(0.0, meanLuminance(output, width / 2 + y * width), 1.0e-6);
+            assertEquals(1, output.getSampleCounts().get(y * width));
+        }
+    }
+}
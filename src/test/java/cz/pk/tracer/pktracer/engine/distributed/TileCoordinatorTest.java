@@ -0,0 +1,84 @@
+package cz.pk.tracer.pktracer.engine.distributed;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.distributed.RenderJob;
+import cz.pk.traycer.pktracer.engine.distributed.TileCoordinator;
+import cz.pk.traycer.pktracer.engine.distributed.TileWorker;
+import cz.pk.traycer.pktracer.engine.io.SceneLoader;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.assertSameSamples;
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.createRenderer;
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.renderFrames;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TileCoordinatorTest {
+
+    private static final RenderJob JOB = new RenderJob(
+            96, 64, 4, 7L, 16, Renderer.DEFAULT_MAX_DEPTH, Renderer.DEFAULT_ROULETTE_MIN_DEPTH, true, defaultSceneHash());
+
+    private static long defaultSceneHash() {
+        try (Scene scene = SceneLoader.loadDefault(null)) {
+            return scene.contentHash();
+        }
+    }
+
+    private static AccumulationBuffer renderSingleProcess() {
+        Renderer renderer = createRenderer(JOB.getWidth(), JOB.getHeight(), 2, JOB.getSeed(), 0.0);
+        return renderFrames(renderer, JOB.getSamplesPerPixel()).getAccumulationData();
+    }
+
+    private static CompletableFuture<Integer> startWorker(int port) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new TileWorker("localhost", port, 2).run();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    public void test_await_expectedSameImageAsSingleProcess() throws Exception {
+        try (TileCoordinator coordinator = new TileCoordinator(JOB, 0)) {
+            CompletableFuture<Integer> first = startWorker(coordinator.getPort());
+            CompletableFuture<Integer> second = startWorker(coordinator.getPort());
+
+            AccumulationBuffer merged = coordinator.await();
+
+            assertEquals(24, first.get() + second.get());
+            assertSameSamples(renderSingleProcess(), merged);
+        }
+    }
+
+    @Test
+    public void test_await_expectedTileOfDeadWorkerReassigned() throws Exception {
+        Queue<String> events = new ConcurrentLinkedQueue<>();
+        try (TileCoordinator coordinator = new TileCoordinator(JOB, 0, events::add)) {
+            // Worker which takes a tile and dies without answering
+            try (Socket socket = new Socket("localhost", coordinator.getPort())) {
+                DataInputStream input = new DataInputStream(socket.getInputStream());
+                RenderJob.read(input);
+                assertEquals(TileCoordinator.TILE, input.readByte());
+            }
+
+            CompletableFuture<Integer> worker = startWorker(coordinator.getPort());
+            AccumulationBuffer merged = coordinator.await();
+
+            assertEquals(24, worker.get());
+            assertTrue(coordinator.getReassignedTiles().get() >= 1);
+            assertTrue(events.stream().anyMatch(event -> event.contains("lost")));
+            assertSameSamples(renderSingleProcess(), merged);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package cz.pk.tracer.pktracer.engine.io;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.io.ImageWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ImageWriterTest {
+
+    /**
+     * 2x2 image: red, green on top row, blue, half gray on bottom row, gray accumulated from two samples.
+     */
+    private static AccumulationBuffer image() {
+        AccumulationBuffer image = new AccumulationBuffer(2, 2);
+        image.accumulate(0, 1.0, 0.0, 0.0);
+        image.accumulate(1, 0.0, 1.0, 0.0);
+        image.accumulate(2, 0.0, 0.0, 1.0);
+        image.accumulate(3, 0.0, 0.0, 0.0);
+        image.accumulate(3, 1.0, 1.0, 1.0);
+        return image;
+    }
+
+    @Test
+    public void test_writePpm_expectedHeaderAndTopDownRows() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageWriter.writePpm(image(), output);
+
+        byte[] bytes = output.toByteArray();
+        byte[] header = "P6\n2 2\n255\n".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(header, Arrays.copyOf(bytes, header.length));
+        assertArrayEquals(
+                new byte[]{(byte) 255, 0, 0, 0, (byte) 255, 0, 0, 0, (byte) 255, 127, 127, 127},
+                Arrays.copyOfRange(bytes, header.length, bytes.length));
+    }
+
+    @Test
+    public void test_writePfm_expectedLinearMeanInBottomUpRows() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageWriter.writePfm(image(), output);
+
+        byte[] bytes = output.toByteArray();
+        int headerLength = "PF\n2 2\n-1.0\n".length();
+        ByteBuffer data = ByteBuffer.wrap(bytes, headerLength, bytes.length - headerLength)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        // First stored row is the bottom one: blue, gray
+        assertEquals(0.0f, data.getFloat());
+        assertEquals(0.0f, data.getFloat());
+        assertEquals(1.0f, data.getFloat());
+        assertEquals(0.5f, data.getFloat());
+        assertEquals(0.5f, data.getFloat());
+        assertEquals(0.5f, data.getFloat());
+        assertEquals(1.0f, data.getFloat());
+    }
+
+    @Test
+    public void test_writePng_expectedValidChunksAndPixels() throws IOException, DataFormatException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageWriter.writePng(image(), output);
+
+        ByteBuffer png = ByteBuffer.wrap(output.toByteArray());
+        png.position(8);
+        byte[] pixels = null;
+        while (png.hasRemaining()) {
+            int length = png.getInt();
+            byte[] typeAndData = new byte[4 + length];
+            png.get(typeAndData);
+            CRC32 crc = new CRC32();
+            crc.update(typeAndData);
+            assertEquals((int) crc.getValue(), png.getInt());
+
+            String type = new String(typeAndData, 0, 4, StandardCharsets.US_ASCII);
+            if ("IDAT".equals(type)) {
+                Inflater inflater = new Inflater();
+                inflater.setInput(typeAndData, 4, length);
+                pixels = new byte[2 * (1 + 2 * 3)];
+                assertEquals(pixels.length, inflater.inflate(pixels));
+                inflater.end();
+            }
+        }
+
+        assertArrayEquals(
+                new byte[]{0, (byte) 255, 0, 0, 0, (byte) 255, 0, 0, 0, 0, (byte) 255, 127, 127, 127},
+                pixels);
+    }
+}
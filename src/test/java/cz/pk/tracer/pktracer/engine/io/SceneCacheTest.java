@@ -0,0 +1,103 @@
+package cz.pk.tracer.pktracer.engine.io;
+
+import cz.pk.traycer.pktracer.engine.AccumulationBuffer;
+import cz.pk.traycer.pktracer.engine.Camera;
+import cz.pk.traycer.pktracer.engine.Renderer;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.io.SceneCache;
+import cz.pk.traycer.pktracer.engine.io.SceneLoader;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static cz.pk.tracer.pktracer.engine.RenderTestSupport.array;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SceneCacheTest {
+
+    private static final String SCENE = """
+            {
+              "camera": {"position": [0.0, -1.0, 8.0], "forward": [0.0, 0.0, -1.0], "verticalFov": 50.0},
+              "materials": [
+                {"name": "gray", "albedo": [0.7, 0.7, 0.7], "roughness": 0.5},
+                {"name": "light", "albedo": [1, 1, 1], "emissionColor": [1, 1, 1], "emissionPower": 4.0}
+              ],
+              "geometries": [
+                {"name": "quad", "type": "mesh", "vertices": [0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0], "indices": [0, 1, 2, 0, 2, 3]},
+                {"name": "ball", "type": "sphere", "position": [0, 0, 0], "radius": 0.5}
+              ],
+              "objects": [
+                {"type": "sphere", "position": [0.0, -101.0, 0.0], "radius": 100.0, "material": "gray"},
+                {"type": "sphere", "position": [-1.0, 0.0, 0.0], "radius": 1.0, "material": "gray"},
+                {"type": "sphere", "position": [0.0, -5.0, 0.0], "radius": 1.0, "material": "light"},
+                {"type": "mesh", "vertices": [1, 0, 0, 3, 0, 0, 3, 2, -1, 1, 2, -1],
+                 "indices": [0, 1, 2, 0, 2, 3], "normals": [0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1], "material": 0},
+                {"type": "instance", "geometry": "quad", "material": "gray",
+                 "scale": [2, 1, 1], "rotation": [0, 30, 0], "translation": [-3, -1, 1]},
+                {"type": "instance", "geometry": "ball", "material": "light",
+                 "transform": [1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 2, 1, 0, 1]}
+              ]
+            }
+            """;
+
+    private static AccumulationBuffer render(Path sceneFile) throws IOException {
+        Renderer renderer = new Renderer(48, 32, 2);
+        renderer.setSeed(11L);
+        renderer.setNoiseThreshold(0.0);
+        renderer.loadScene(sceneFile);
+        renderer.onResize(48, 32);
+        for (int i = 0; i < 2; i++) {
+            renderer.render();
+        }
+        renderer.getRenderPool().shutdown();
+        return renderer.getAccumulationData();
+    }
+
+    @Test
+    public void test_read_expectedSameSceneAndImageAsSceneFile(@TempDir Path directory) throws IOException {
+        Path sceneFile = Files.writeString(directory.resolve("scene.json"), SCENE);
+        Path cacheFile = directory.resolve("scene" + SceneCache.EXTENSION);
+        SceneCache.compile(sceneFile, cacheFile);
+
+        Camera sceneCamera = new Camera(48, 32);
+        Camera cacheCamera = new Camera(48, 32);
+        try (Scene scene = SceneLoader.load(sceneFile, sceneCamera);
+             Scene cached = SceneLoader.load(cacheFile, cacheCamera)) {
+            assertNotNull(cached.getModelHierarchy());
+            assertEquals(scene.getModels(), cached.getModels());
+            assertEquals(scene.getGeometries(), cached.getGeometries());
+            assertEquals(scene.getMaterials(), cached.getMaterials());
+            assertEquals(scene.contentHash(), cached.contentHash());
+            assertEquals(scene.contentHash(), SceneCache.readSceneHash(cacheFile));
+        }
+        assertEquals(sceneCamera.getPosition(), cacheCamera.getPosition());
+        assertEquals(sceneCamera.getVerticalFOV(), cacheCamera.getVerticalFOV());
+
+        AccumulationBuffer expected = render(sceneFile);
+        AccumulationBuffer actual = render(cacheFile);
+        assertArrayEquals(array(expected.getRed()), array(actual.getRed()));
+        assertArrayEquals(array(expected.getGreen()), array(actual.getGreen()));
+        assertArrayEquals(array(expected.getBlue()), array(actual.getBlue()));
+    }
+
+    @Test
+    public void test_read_expectedOtherFormatVersionRejected(@TempDir Path directory) throws IOException {
+        Path sceneFile = Files.writeString(directory.resolve("scene.json"), SCENE);
+        Path cacheFile = directory.resolve("scene" + SceneCache.EXTENSION);
+        long bytes = SceneCache.compile(sceneFile, cacheFile);
+
+        try (GeometryArena arena = new GeometryArena()) {
+            arena.mapRegions(cacheFile, bytes, SceneCache.REGION_BYTES).region(0)
+                    .putInt(4, SceneCache.FORMAT_VERSION + 1);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> SceneLoader.load(cacheFile, null));
+    }
+}
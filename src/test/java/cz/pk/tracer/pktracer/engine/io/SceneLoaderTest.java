@@ -0,0 +1,148 @@
+package cz.pk.tracer.pktracer.engine.io;
+
+import cz.pk.traycer.pktracer.engine.Camera;
+import cz.pk.traycer.pktracer.engine.Scene;
+import cz.pk.traycer.pktracer.engine.io.SceneLoader;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.shapes.Instance;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.shapes.TriangleMesh;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SceneLoaderTest {
+
+    private static Scene load(String json, Path directory) throws IOException {
+        return SceneLoader.load(new StringReader(json), directory, null);
+    }
+
+    @Test
+    public void test_loadDefault_expectedSceneOfPreviousHardcodedLoader() {
+        Camera camera = new Camera(160, 90);
+        try (Scene scene = SceneLoader.loadDefault(camera)) {
+            assertEquals(5, scene.getModels().size());
+            assertEquals(5, scene.getMaterials().size());
+            assertEquals(2, scene.emissiveModels().size());
+            assertEquals(-6029625136804660075L, scene.contentHash());
+        }
+        assertEquals(new Vector3D(-4.0, -3.5, 45.0), camera.getPosition());
+        assertEquals(new Vector3D(-0.08, -0.0461, -0.998), camera.getForwardDirection());
+    }
+
+    @Test
+    public void test_load_expectedMaterialReferencedByNameBeforeDefinition() throws IOException {
+        String json = """
+                {
+                  "objects": [
+                    {"type": "sphere", "position": [1.0, -2.5, 3e1], "radius": 0.5, "material": "second"},
+                    {"material": 0, "radius": 2, "position": [0, 0, 0], "type": "sphere"}
+                  ],
+                  "materials": [
+                    {"albedo": [0.5, 0.5, 0.5]},
+                    {"name": "second", "albedo": [1, 1, 1], "emissionColor": [1, 1, 1], "emissionPower": 2.5}
+                  ]
+                }
+                """;
+
+        try (Scene scene = load(json, Path.of(""))) {
+            Sphere first = (Sphere) scene.getModels().get(0);
+            assertEquals(new Vector3D(1.0, -2.5, 30.0), first.getPosition());
+            assertEquals(0, first.getObjectIndex());
+            assertEquals(1, first.getMaterialIndex());
+            assertEquals(1, scene.getModels().get(1).getObjectIndex());
+            assertEquals(0, scene.getModels().get(1).getMaterialIndex());
+            assertEquals(2.5f, scene.getMaterials().get(1).getEmissionPower());
+        }
+    }
+
+    @Test
+    public void test_load_expectedInlineMeshEqualToObjMesh(@TempDir Path directory) throws IOException {
+        Files.writeString(directory.resolve("quad.obj"), """
+                # unit quad as one polygon
+                v 0 0 0
+                v 1 0 0
+                v 1 1 0
+                vt 0 0
+                v 0 1 0
+                f 1/1 2/1 -2/1 -1/1
+                """);
+        String json = """
+                {
+                  "materials": [{"albedo": [0.5, 0.5, 0.5]}],
+                  "objects": [
+                    {"type": "mesh", "file": "quad.obj", "material": 0},
+                    {"type": "mesh", "vertices": [0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0],
+                     "indices": [0, 1, 2, 0, 2, 3], "material": 0}
+                  ]
+                }
+                """;
+
+        try (Scene scene = load(json, directory)) {
+            TriangleMesh file = (TriangleMesh) scene.getModels().get(0);
+            TriangleMesh inline = (TriangleMesh) scene.getModels().get(1);
+            assertEquals(2, file.getTriangleCount());
+            assertEquals(inline.getVertices(), file.getVertices());
+            assertEquals(inline.getIndices(), file.getIndices());
+        }
+    }
+
+    @Test
+    public void test_load_expectedInstancesSharingGeometry() throws IOException {
+        String json = """
+                {
+                  "materials": [{"albedo": [0.5, 0.5, 0.5]}, {"albedo": [0.9, 0.1, 0.1]}],
+                  "geometries": [
+                    {"name": "ball", "type": "sphere", "position": [0, 0, 0], "radius": 1}
+                  ],
+                  "objects": [
+                    {"type": "instance", "geometry": "ball", "material": 1, "scale": 2, "translation": [0, 0, -10]},
+                    {"type": "instance", "geometry": "ball", "material": 0, "rotation": [0, 90, 0], "translation": [4, 0, 0]}
+                  ]
+                }
+                """;
+
+        try (Scene scene = load(json, Path.of(""))) {
+            assertEquals(1, scene.getGeometries().size());
+            Instance first = (Instance) scene.getModels().get(0);
+            Instance second = (Instance) scene.getModels().get(1);
+            assertSame(first.getGeometry(), second.getGeometry());
+            assertEquals(1, first.getMaterialIndex());
+            assertEquals(1, second.getObjectIndex());
+            assertEquals(-12.0, first.getBounds().getMinZ(), 0.000001);
+            assertEquals(new Vector3D(4.0, 0.0, 0.0),
+                    second.getTransform().transformPointInto(new Vector3D(0.0, 0.0, 0.0), new Vector3D()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> load("""
+                {"objects": [{"type": "instance", "geometry": "missing", "material": 0}], "materials": [{}]}
+                """, Path.of("")));
+    }
+
+    @Test
+    public void test_load_expectedExceptionWithLineOfMalformedScene() {
+        String json = """
+                {
+                  "materials": [{"albedo": [0.5, 0.5, 0.5]}],
+                  "objects": [
+                    {"type": "sphere", "position": [0, 0, 0], "radius": 1, "material": 0, "radus": 2}
+                  ]
+                }
+                """;
+
+        IllegalArgumentException unknownKey = assertThrows(IllegalArgumentException.class, () -> load(json, Path.of("")));
+        assertTrue(unknownKey.getMessage().contains("Line value=4"), unknownKey.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> load("{\"materials\": [}", Path.of("")));
+        assertThrows(IllegalArgumentException.class, () -> load("""
+                {"objects": [{"type": "sphere", "position": [0, 0, 0], "radius": 1, "material": "missing"}]}
+                """, Path.of("")));
+    }
+}
@@ -4,6 +4,7 @@ import cz.pk.traycer.pktracer.engine.math.Vector3D;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class Vector3DTest {
 
@@ -33,4 +34,21 @@ public class Vector3DTest {
         Vector3D result = VA.mul(2.0);
         assertEquals(result, new Vector3D(2.0, 4.0, 6.0));
     }
+
+    @Test
+    public void test_addInto_expectedResultWrittenToOperand() {
+        Vector3D result = new Vector3D(VA);
+        Vector3D returned = Vector3D.addInto(result, VB, result);
+        assertSame(result, returned);
+        assertEquals(result, new Vector3D(3.0, 6.0, 9.0));
+    }
+
+    @Test
+    public void test_mulAdd_expectedCorrectResult() {
+        Vector3D result = Vector3D.mulAdd(VA, VB, 0.5, new Vector3D());
+        assertEquals(result, new Vector3D(2.0, 4.0, 6.0));
+
+        Vector3D.mulAdd(result, VA, VB, result);
+        assertEquals(result, new Vector3D(4.0, 12.0, 24.0));
+    }
 }
@@ -0,0 +1,95 @@
+package cz.pk.tracer.pktracer.engine.memory;
+
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.memory.MappedRegions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GeometryArenaTest {
+
+    @Test
+    public void test_copyOf_expectedDirectBufferWithSameValues() {
+        try (GeometryArena arena = new GeometryArena()) {
+            FloatBuffer buffer = arena.copyOf(new float[]{1.0f, 2.0f, 3.0f});
+
+            assertTrue(buffer.isDirect());
+            assertEquals(3, buffer.capacity());
+            assertEquals(2.0f, buffer.get(1));
+            assertEquals(3L * Float.BYTES, arena.getAllocatedBytes());
+        }
+    }
+
+    @Test
+    public void test_close_expectedMemoryReleasedAndAllocationRejected() {
+        BufferPoolMXBean directPool = bufferPool("direct");
+        GeometryArena arena = new GeometryArena();
+        IntBuffer buffer = arena.allocateInts(1024);
+        long usedBeforeClose = directPool.getMemoryUsed();
+        arena.close();
+
+        assertTrue(arena.isClosed());
+        assertEquals(0L, arena.getAllocatedBytes());
+        // Released by close itself, buffer is still reachable here
+        assertEquals(usedBeforeClose - 1024L * Integer.BYTES, directPool.getMemoryUsed());
+        assertEquals(1024, buffer.capacity());
+        assertThrows(IllegalStateException.class, () -> arena.allocate(16));
+    }
+
+    @Test
+    public void test_close_expectedFileUnmapped(@TempDir Path directory) throws IOException {
+        BufferPoolMXBean mappedPool = bufferPool("mapped");
+        GeometryArena arena = new GeometryArena();
+        arena.mapRegions(directory.resolve("mapped.bin"), 1000, 256);
+        long mappedBeforeClose = mappedPool.getCount();
+        arena.close();
+
+        assertEquals(mappedBeforeClose - 4, mappedPool.getCount());
+    }
+
+    private static BufferPoolMXBean bufferPool(final String name) {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    public void test_mapRegions_expectedBlocksAcrossRegionBoundariesReadBack(@TempDir Path directory)
+            throws IOException {
+        Path file = directory.resolve("regions.bin");
+        try (GeometryArena arena = new GeometryArena()) {
+            MappedRegions regions = arena.mapRegions(file, 1000, 256);
+            assertEquals(4, regions.getRegions().length);
+
+            // Block crossing boundary of the regions 1 and 2
+            regions.slice(500, 64).asIntBuffer().put(0, 11).put(15, 13);
+            regions.region(996).putInt(regions.localOffset(996), 17);
+            regions.force();
+        }
+
+        try (GeometryArena arena = new GeometryArena()) {
+            MappedRegions regions = arena.mapRegionsReadOnly(file, 256);
+            ByteBuffer block = regions.slice(500, 64);
+
+            assertEquals(1000L, regions.getSize());
+            assertEquals(11, block.getInt(0));
+            assertEquals(13, block.getInt(60));
+            assertEquals(13, regions.slice(560, 4).getInt(0));
+            assertEquals(17, regions.slice(996, 4).getInt(0));
+            assertThrows(IllegalArgumentException.class, () -> regions.slice(512, 257));
+            assertThrows(IllegalArgumentException.class, () -> regions.slice(990, 16));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cz.pk.tracer.pktracer.engine.sampling;
+
+import cz.pk.traycer.pktracer.engine.sampling.Sampler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class SamplerTest {
+
+    private static final long SEED = 42L;
+
+    private static double[] draw(Sampler sampler, int count) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = sampler.nextDouble();
+        }
+        return values;
+    }
+
+    @Test
+    public void test_startPixel_expectedSameStreamIndependentOfHistory() {
+        Sampler fresh = new Sampler(SEED);
+        fresh.startPixel(1234, 7);
+        fresh.startBounce(2);
+
+        Sampler used = new Sampler(SEED);
+        used.startPixel(99, 3);
+        draw(used, 17);
+        used.startPixel(1234, 7);
+        used.startBounce(2);
+
+        assertArrayEquals(draw(fresh, 8), draw(used, 8));
+    }
+
+    @Test
+    public void test_startPixel_expectedDifferentStreamsForPixelFrameAndBounce() {
+        Sampler sampler = new Sampler(SEED);
+
+        sampler.startPixel(10, 1);
+        double[] base = draw(sampler, 4);
+
+        sampler.startPixel(11, 1);
+        double[] nextPixel = draw(sampler, 4);
+
+        sampler.startPixel(10, 2);
+        double[] nextFrame = draw(sampler, 4);
+
+        sampler.startPixel(10, 1);
+        sampler.startBounce(1);
+        double[] nextBounce = draw(sampler, 4);
+
+        assertFalse(Arrays.equals(base, nextPixel));
+        assertFalse(Arrays.equals(base, nextFrame));
+        assertFalse(Arrays.equals(base, nextBounce));
+    }
+}
@@ -0,0 +1,149 @@
+package cz.pk.tracer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.accel.AABB;
+import cz.pk.traycer.pktracer.engine.math.Matrix4X4D;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.shapes.Instance;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.shapes.TriangleMesh;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InstanceTest {
+
+    private final double EPSILON = 0.000001d;
+
+    private final GeometryArena arena = new GeometryArena();
+
+    @AfterEach
+    public void closeArena() {
+        arena.close();
+    }
+
+    /**
+     * Random height field in xz plane, 8 x 8 quads.
+     */
+    private static float[] gridVertices(Random random) {
+        float[] vertices = new float[9 * 9 * 3];
+        for (int z = 0; z <= 8; z++) {
+            for (int x = 0; x <= 8; x++) {
+                int vertex = (x + z * 9) * 3;
+                vertices[vertex] = x;
+                vertices[vertex + 1] = random.nextFloat();
+                vertices[vertex + 2] = z;
+            }
+        }
+        return vertices;
+    }
+
+    private static int[] gridIndices() {
+        int[] indices = new int[8 * 8 * 6];
+        int index = 0;
+        for (int z = 0; z < 8; z++) {
+            for (int x = 0; x < 8; x++) {
+                int corner = x + z * 9;
+                indices[index++] = corner;
+                indices[index++] = corner + 1;
+                indices[index++] = corner + 9;
+                indices[index++] = corner + 1;
+                indices[index++] = corner + 10;
+                indices[index++] = corner + 9;
+            }
+        }
+        return indices;
+    }
+
+    @Test
+    public void test_hit_expectedSameHitsAsMeshWithTransformedVertices() {
+        Random random = new Random(7L);
+        float[] vertices = gridVertices(random);
+        int[] indices = gridIndices();
+
+        Matrix4X4D transform = Matrix4X4D.scaling(2.0, 1.0, 0.5);
+        transform.mul(Matrix4X4D.rotationY(0.7));
+        transform.mul(Matrix4X4D.translation(3.0, -1.0, 4.0));
+
+        float[] worldVertices = new float[vertices.length];
+        Vector3D vertex = new Vector3D();
+        for (int i = 0; i < vertices.length; i += 3) {
+            vertex.set(vertices[i], vertices[i + 1], vertices[i + 2]);
+            transform.transformPointInto(vertex, vertex);
+            worldVertices[i] = (float) vertex.getX();
+            worldVertices[i + 1] = (float) vertex.getY();
+            worldVertices[i + 2] = (float) vertex.getZ();
+        }
+
+        TriangleMesh world = new TriangleMesh(arena, worldVertices, indices, null);
+        Instance instance = new Instance(new TriangleMesh(arena, vertices, indices, null), 0, transform);
+        instance.setObjectIndex(4);
+        instance.setMaterialIndex(2);
+
+        int hits = 0;
+        for (int i = 0; i < 500; i++) {
+            Vector3D target = transform.transformPointInto(
+                    new Vector3D(random.nextDouble(0.0, 8.0), 0.5, random.nextDouble(0.0, 8.0)), new Vector3D());
+            Vector3D origin = new Vector3D(random.nextDouble(-5.0, 5.0), 10.0, random.nextDouble(-5.0, 5.0));
+            Ray ray = new Ray(origin, Vector3D.normalize(target.sub(origin)));
+
+            HitRecord expected = new HitRecord();
+            HitRecord actual = new HitRecord();
+            boolean expectedHit = world.hit(ray, HitRecord.MIN_DISTANCE_VALUE, Double.MAX_VALUE, expected);
+            boolean actualHit = instance.hit(ray, HitRecord.MIN_DISTANCE_VALUE, Double.MAX_VALUE, actual);
+            assertEquals(expectedHit, actualHit);
+            if (!expectedHit) {
+                continue;
+            }
+            hits++;
+
+            world.closestHit(ray, expected);
+            instance.closestHit(ray, actual);
+            assertEquals(expected.getPrimitiveIndex(), actual.getPrimitiveIndex());
+            assertEquals(expected.getDistance(), actual.getDistance(), 0.0001);
+            assertEquals(4, actual.getObjectIndex());
+            assertEquals(2, actual.getMaterialIndex());
+            assertEquals(expected.getWorldPosition().getX(), actual.getWorldPosition().getX(), 0.0001);
+            assertEquals(expected.getWorldPosition().getY(), actual.getWorldPosition().getY(), 0.0001);
+            assertEquals(expected.getWorldPosition().getZ(), actual.getWorldPosition().getZ(), 0.0001);
+            assertEquals(expected.getWorldNormal().getX(), actual.getWorldNormal().getX(), 0.0001);
+            assertEquals(expected.getWorldNormal().getY(), actual.getWorldNormal().getY(), 0.0001);
+            assertEquals(expected.getWorldNormal().getZ(), actual.getWorldNormal().getZ(), 0.0001);
+        }
+
+        assertTrue(hits > 400);
+    }
+
+    @Test
+    public void test_getBounds_expectedTransformedGeometryBounds() {
+        Sphere sphere = new Sphere();
+        sphere.setPosition(new Vector3D(0.0, 0.0, 0.0));
+        sphere.setRadius(1.0);
+
+        Matrix4X4D transform = Matrix4X4D.scaling(2.0, 2.0, 2.0);
+        transform.mul(Matrix4X4D.translation(5.0, 0.0, -1.0));
+        Instance instance = new Instance(sphere, 0, transform);
+
+        AABB bounds = instance.getBounds();
+        assertEquals(3.0, bounds.getMinX(), EPSILON);
+        assertEquals(7.0, bounds.getMaxX(), EPSILON);
+        assertEquals(-2.0, bounds.getMinY(), EPSILON);
+        assertEquals(2.0, bounds.getMaxY(), EPSILON);
+        assertEquals(-3.0, bounds.getMinZ(), EPSILON);
+        assertEquals(1.0, bounds.getMaxZ(), EPSILON);
+
+        Ray ray = new Ray(new Vector3D(5.0, 0.0, 10.0), new Vector3D(0.0, 0.0, -1.0));
+        HitRecord hitRecord = new HitRecord();
+        assertTrue(instance.hit(ray, 0.0, 100.0, hitRecord));
+        assertEquals(9.0, hitRecord.getDistance(), EPSILON);
+
+        assertThrows(IllegalArgumentException.class, () -> new Instance(instance, 0, transform));
+    }
+}
@@ -0,0 +1,118 @@
+package cz.pk.tracer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.shapes.Sphere;
+import cz.pk.traycer.pktracer.engine.shapes.SphereBatch;
+import cz.pk.traycer.pktracer.engine.math.VectorSupport;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SphereTest {
+
+    private final double EPSILON = 0.000001d;
+
+    private static Sphere sphere(double x, double y, double z, double radius, int objectIndex) {
+        Sphere sphere = new Sphere();
+        sphere.setPosition(new Vector3D(-x, -y, -z));
+        sphere.setRadius(radius);
+        sphere.setObjectIndex(objectIndex);
+        sphere.setMaterialIndex(objectIndex % 3);
+        return sphere;
+    }
+
+    @Test
+    public void test_hit_expectedRootsInsideInterval() {
+        Sphere sphere = sphere(0.0, 0.0, -5.0, 1.0, 0);
+        Ray ray = new Ray(new Vector3D(0.0, 0.0, 0.0), new Vector3D(0.0, 0.0, -1.0));
+
+        HitRecord near = new HitRecord();
+        assertTrue(sphere.hit(ray, 0.0, 100.0, near));
+        assertEquals(4.0, near.getDistance(), EPSILON);
+
+        HitRecord far = new HitRecord();
+        assertTrue(sphere.hit(ray, 4.5, 100.0, far));
+        assertEquals(6.0, far.getDistance(), EPSILON);
+
+        HitRecord none = new HitRecord();
+        assertFalse(sphere.hit(ray, 0.0, 3.5, none));
+        assertEquals(HitRecord.EMPTY_OBJECT_INDEX, none.getObjectIndex());
+    }
+
+    @Test
+    public void test_batchHit_expectedSameHitsAsSpheres() {
+        Random random = new Random(5L);
+        List<Sphere> spheres = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            spheres.add(sphere(
+                    random.nextDouble(-20.0, 20.0),
+                    random.nextDouble(-20.0, 20.0),
+                    random.nextDouble(-20.0, 20.0),
+                    random.nextDouble(0.2, 2.0), i));
+        }
+        SphereBatch batch = new SphereBatch(spheres);
+
+        for (int i = 0; i < 5000; i++) {
+            Ray ray = new Ray(
+                    new Vector3D(random.nextDouble(-30.0, 30.0), random.nextDouble(-30.0, 30.0), 30.0),
+                    Vector3D.normalize(new Vector3D(
+                            random.nextDouble(-0.5, 0.5), random.nextDouble(-0.5, 0.5), -1.0)));
+
+            HitRecord expected = new HitRecord();
+            for (Sphere sphere : spheres) {
+                sphere.hit(ray, HitRecord.MIN_DISTANCE_VALUE, expected.getDistance(), expected);
+            }
+            HitRecord actual = new HitRecord();
+            batch.hit(ray, HitRecord.MIN_DISTANCE_VALUE, HitRecord.MAX_DISTANCE_VALUE, actual);
+
+            assertEquals(expected.getObjectIndex(), actual.getObjectIndex());
+            assertEquals(expected.getMaterialIndex(), actual.getMaterialIndex());
+            assertEquals(expected.getDistance(), actual.getDistance(), EPSILON);
+        }
+    }
+
+    @Test
+    public void test_batchHit_expectedVectorizedEqualsScalar() {
+        assumeTrue(VectorSupport.isAvailable());
+
+        Random random = new Random(11L);
+        List<Sphere> spheres = new ArrayList<>();
+        // Count not divisible by vector length to test scalar tail too
+        for (int i = 0; i < 203; i++) {
+            spheres.add(sphere(
+                    random.nextDouble(-20.0, 20.0),
+                    random.nextDouble(-20.0, 20.0),
+                    random.nextDouble(-20.0, 20.0),
+                    random.nextDouble(0.2, 4.0), i));
+        }
+        SphereBatch vectorized = new SphereBatch(spheres);
+        SphereBatch scalar = new SphereBatch(spheres);
+        scalar.setVectorized(false);
+        assertTrue(vectorized.isVectorized());
+
+        for (int i = 0; i < 5000; i++) {
+            Ray ray = new Ray(
+                    new Vector3D(random.nextDouble(-25.0, 25.0), random.nextDouble(-25.0, 25.0),
+                            random.nextDouble(-25.0, 25.0)),
+                    Vector3D.normalize(new Vector3D(random.nextDouble(-1.0, 1.0), random.nextDouble(-1.0, 1.0),
+                            random.nextDouble(-1.0, 1.0))));
+
+            HitRecord expected = new HitRecord();
+            scalar.hit(ray, HitRecord.MIN_DISTANCE_VALUE, HitRecord.MAX_DISTANCE_VALUE, expected);
+            HitRecord actual = new HitRecord();
+            vectorized.hit(ray, HitRecord.MIN_DISTANCE_VALUE, HitRecord.MAX_DISTANCE_VALUE, actual);
+
+            assertEquals(expected.getObjectIndex(), actual.getObjectIndex());
+            assertEquals(expected.getDistance(), actual.getDistance());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package cz.pk.tracer.pktracer.engine.shapes;
+
+import cz.pk.traycer.pktracer.engine.HitRecord;
+import cz.pk.traycer.pktracer.engine.IntersectionManager;
+import cz.pk.traycer.pktracer.engine.Ray;
+import cz.pk.traycer.pktracer.engine.math.Vector3D;
+import cz.pk.traycer.pktracer.engine.memory.GeometryArena;
+import cz.pk.traycer.pktracer.engine.shapes.TriangleMesh;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TriangleMeshTest {
+
+    private final double EPSILON = 0.000001d;
+
+    private final GeometryArena arena = new GeometryArena();
+
+    @AfterEach
+    public void closeArena() {
+        arena.close();
+    }
+
+    /**
+     * Height field grid in xz plane with size x size quads.
+     */
+    private TriangleMesh grid(int size, Random random) {
+        float[] vertices = new float[(size + 1) * (size + 1) * 3];
+        for (int z = 0; z <= size; z++) {
+            for (int x = 0; x <= size; x++) {
+                int vertex = (x + z * (size + 1)) * 3;
+                vertices[vertex] = x;
+                vertices[vertex + 1] = random.nextFloat();
+                vertices[vertex + 2] = z;
+            }
+        }
+
+        int[] indices = new int[size * size * 6];
+        int index = 0;
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int corner = x + z * (size + 1);
+                indices[index++] = corner;
+                indices[index++] = corner + 1;
+                indices[index++] = corner + size + 1;
+                indices[index++] = corner + 1;
+                indices[index++] = corner + size + 2;
+                indices[index++] = corner + size + 1;
+            }
+        }
+
+        return new TriangleMesh(arena, vertices, indices, null);
+    }
+
+    @Test
+    public void test_intersect_expectedBarycentricsAndInterpolatedNormal() {
+        TriangleMesh mesh = new TriangleMesh(
+                arena,
+                new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0},
+                new int[]{0, 1, 2},
+                new float[]{0, 0, 1, 0, 0, 1, 1, 0, 0});
+        mesh.setObjectIndex(3);
+        mesh.setMaterialIndex(1);
+
+        Ray ray = new Ray(new Vector3D(0.25, 0.5, 2.0), new Vector3D(0.0, 0.0, -1.0));
+        HitRecord hitRecord = new HitRecord();
+        mesh.intersect(ray, hitRecord);
+
+        assertEquals(3, hitRecord.getObjectIndex());
+        assertEquals(1, hitRecord.getMaterialIndex());
+        assertEquals(0, hitRecord.getPrimitiveIndex());
+        assertEquals(2.0, hitRecord.getDistance(), EPSILON);
+        assertEquals(0.25, hitRecord.getBarycentricU(), EPSILON);
+        assertEquals(0.5, hitRecord.getBarycentricV(), EPSILON);
+
+        Vector3D normal = mesh.getNormal(0, 0.25, 0.5, ray.getDirection());
+        assertEquals(1.0 / Math.sqrt(2.0), normal.getX(), EPSILON);
+        assertEquals(1.0 / Math.sqrt(2.0), normal.getZ(), EPSILON);
+    }
+
+    @Test
+    public void test_intersect_expectedSameHitsAsAllTriangles() {
+        Random random = new Random(99L);
+        TriangleMesh mesh = grid(64, random);
+
+        int hits = 0;
+        for (int i = 0; i < 2000; i++) {
+            Ray ray = new Ray(
+                    new Vector3D(random.nextDouble(0.0, 64.0), 5.0, random.nextDouble(0.0, 64.0)),
+                    Vector3D.normalize(new Vector3D(
+                            random.nextDouble(-1.0, 1.0),
+                            -1.0,
+                            random.nextDouble(-1.0, 1.0))));
+
+            HitRecord expected = new HitRecord();
+            for (int triangle = 0; triangle < mesh.getTriangleCount(); triangle++) {
+                IntersectionManager.rayTriangleIntersection(ray, mesh, triangle, expected);
+            }
+            HitRecord actual = new HitRecord();
+            mesh.intersect(ray, actual);
+
+            assertEquals(expected.getPrimitiveIndex(), actual.getPrimitiveIndex());
+            assertEquals(expected.getDistance(), actual.getDistance());
+            if (expected.getPrimitiveIndex() != HitRecord.EMPTY_PRIMITIVE_INDEX) {
+                hits++;
+            }
+        }
+
+        assertTrue(hits > 1000);
+    }
+}